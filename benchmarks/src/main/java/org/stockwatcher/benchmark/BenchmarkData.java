@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.stockwatcher.data.csv.CsvReader;
+import org.stockwatcher.domain.Price;
+
+/**
+ * Builds synthetic benchmark inputs from the files in the csv folder. Stock 
+ * rows mirror csv/stocks.csv; trade rows are generated for the last trade 
+ * date in csv/dailysummaries.csv, with each trade priced inside the day's 
+ * low/high range of its stock. A fixed seed keeps runs repeatable.
+ * 
+ * The csv folder is located through the stockwatcher.csv.dir system property,
+ * defaulting to the project's csv folder when run from the benchmarks folder.
+ * 
+ * @author Tony Piazza
+ */
+public final class BenchmarkData {
+	public static final long SEED = 42L;
+
+	private static final String CSV_DIR_PROPERTY = "stockwatcher.csv.dir";
+	private static final long TRADING_DAY = TimeUnit.MINUTES.toMillis(390);
+
+	private BenchmarkData() {
+		// prevents instantiation
+	}
+
+	public static List<String[]> readRecords(String fileName) {
+		File file = new File(getCsvDir(), fileName);
+		List<String[]> records = new ArrayList<String[]>();
+		try {
+			CsvReader reader = new CsvReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+			try {
+				String[] record;
+				while((record = reader.readRecord()) != null) {
+					records.add(record);
+				}
+			} finally {
+				reader.close();
+			}
+		} catch(IOException e) {
+			throw new IllegalStateException("unable to read " + file, e);
+		}
+		return records;
+	}
+
+	/**
+	 * Returns one row per line of stocks.csv, with the columns selected by 
+	 * the stock queries in StockDAOImpl.
+	 */
+	public static List<SyntheticRow> getStockRows() {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssZ");
+		List<SyntheticRow> rows = new ArrayList<SyntheticRow>();
+		for(String[] record : readRecords("stocks.csv")) {
+			try {
+				rows.add(new SyntheticRow()
+					.set("stock_symbol", record[0])
+					.set("active", Boolean.valueOf(record[1]))
+					.set("company_name", record[2])
+					.set("current_price", new BigDecimal(record[3]))
+					.set("exchange_id", record[4])
+					.set("industry_id", Integer.valueOf(record[5]))
+					.set("industry_name", record[6])
+					.set("price_updated", format.parse(record[7]))
+					.set("sector_id", Integer.valueOf(record[8]))
+					.set("sector_name", record[9]));
+			} catch(ParseException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Returns the specified number of Trade rows spread across a single 
+	 * trading day (09:30 to 16:00) and across every stock that has a daily 
+	 * summary for the last trade date.
+	 */
+	public static List<SyntheticRow> getTradeRows(int count) {
+		Map<String, String> exchanges = new HashMap<String, String>();
+		for(String[] record : readRecords("stocks.csv")) {
+			exchanges.put(record[0], record[4]);
+		}
+		List<String[]> summaries = getLastDaySummaries();
+		Date tradeDate = parseDate(summaries.get(0)[1]);
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(tradeDate);
+		calendar.set(Calendar.HOUR_OF_DAY, 9);
+		calendar.set(Calendar.MINUTE, 30);
+		long open = calendar.getTimeInMillis();
+
+		Random random = new Random(SEED);
+		List<SyntheticRow> rows = new ArrayList<SyntheticRow>(count);
+		for(int i = 0; i < count; i++) {
+			String[] summary = summaries.get(random.nextInt(summaries.size()));
+			long low = Long.MAX_VALUE;
+			long high = Long.MIN_VALUE;
+			for(int j = 2; j < 6; j++) {
+				long price = Price.parse(summary[j]);
+				low = Math.min(low, price);
+				high = Math.max(high, price);
+			}
+			long price = low + (long)(random.nextDouble() * (high - low));
+			rows.add(new SyntheticRow()
+				.set("stock_symbol", summary[0])
+				.set("trade_date", tradeDate)
+				.set("trade_timestamp", new Date(open + 
+					(long)(random.nextDouble() * TRADING_DAY)))
+				.set("trade_id", new UUID(random.nextLong(), random.nextLong()))
+				.set("exchange_id", exchanges.get(summary[0]))
+				.set("share_price", Price.toBigDecimal(price))
+				.set("share_quantity", 100 * (1 + random.nextInt(50))));
+		}
+		return rows;
+	}
+
+	private static List<String[]> getLastDaySummaries() {
+		List<String[]> records = readRecords("dailysummaries.csv");
+		String lastDate = "";
+		for(String[] record : records) {
+			if(record[1].compareTo(lastDate) > 0) {
+				lastDate = record[1];
+			}
+		}
+		List<String[]> summaries = new ArrayList<String[]>();
+		for(String[] record : records) {
+			if(record[1].equals(lastDate)) {
+				summaries.add(record);
+			}
+		}
+		return summaries;
+	}
+
+	private static Date parseDate(String text) {
+		try {
+			return new SimpleDateFormat("yyyy-MM-dd").parse(text);
+		} catch(ParseException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static File getCsvDir() {
+		String dir = System.getProperty(CSV_DIR_PROPERTY);
+		if(dir != null) {
+			return new File(dir);
+		}
+		File parent = new File("../csv");
+		return parent.isDirectory() ? parent : new File("csv");
+	}
+}
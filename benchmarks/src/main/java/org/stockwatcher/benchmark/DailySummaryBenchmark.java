@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.benchmark;
+
+import static org.stockwatcher.data.cassandra.StockHelper.createTrade;
+import static org.stockwatcher.data.cassandra.StockHelper.getPrice;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stockwatcher.data.cassandra.DailySummaryAccumulator;
+import org.stockwatcher.domain.Trade;
+
+/**
+ * Measures the open/high/low/close/volume aggregation performed by the 
+ * DailySummaryGenerator and IntradaySummaryTracker, both straight from the 
+ * rows (as the generator does) and from already mapped trades.
+ * 
+ * @author Tony Piazza
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DailySummaryBenchmark {
+	@Param("50000")
+	private int tradeCount;
+
+	private List<SyntheticRow> tradeRows;
+	private Trade[] trades;
+	private Date tradeDate;
+
+	@Setup
+	public void setUp() {
+		tradeRows = BenchmarkData.getTradeRows(tradeCount);
+		trades = new Trade[tradeRows.size()];
+		for(int i = 0; i < trades.length; i++) {
+			trades[i] = createTrade(tradeRows.get(i));
+		}
+		tradeDate = tradeRows.get(0).getDate("trade_date");
+	}
+
+	@Benchmark
+	public Map<String, DailySummaryAccumulator> aggregateRows() {
+		Map<String, DailySummaryAccumulator> summaries = 
+			new HashMap<String, DailySummaryAccumulator>();
+		for(SyntheticRow row : tradeRows) {
+			String symbol = row.getString("stock_symbol");
+			DailySummaryAccumulator summary = summaries.get(symbol);
+			if(summary == null) {
+				summary = new DailySummaryAccumulator(symbol, tradeDate);
+				summaries.put(symbol, summary);
+			}
+			summary.add(row.getDate("trade_timestamp").getTime(), 
+				getPrice(row, "share_price"), row.getInt("share_quantity"));
+		}
+		return summaries;
+	}
+
+	@Benchmark
+	public Map<String, DailySummaryAccumulator> aggregateTrades() {
+		Map<String, DailySummaryAccumulator> summaries = 
+			new HashMap<String, DailySummaryAccumulator>();
+		for(Trade trade : trades) {
+			String symbol = trade.getStockSymbol();
+			DailySummaryAccumulator summary = summaries.get(symbol);
+			if(summary == null) {
+				summary = new DailySummaryAccumulator(symbol, tradeDate);
+				summaries.put(symbol, summary);
+			}
+			summary.add(trade.getTimestamp().getTime(), 
+				trade.getSharePriceUnits(), trade.getShareQuantity());
+		}
+		return summaries;
+	}
+}
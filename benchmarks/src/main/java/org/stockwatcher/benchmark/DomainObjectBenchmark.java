@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.benchmark;
+
+import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
+import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stockwatcher.domain.Price;
+import org.stockwatcher.domain.Trade;
+
+/**
+ * Measures equals and hashCode on a full trading day of Trade objects. The 
+ * reflection* benchmarks reproduce the commons-lang reflection builders the 
+ * domain classes used to delegate to, so a single run shows the difference.
+ * 
+ * @author Tony Piazza
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DomainObjectBenchmark {
+	private static final String[] SYMBOLS = {"AAPL", "AMZN", "CSCO", "GOOG", 
+		"IBM", "INTC", "MSFT", "ORCL", "QCOM", "YHOO"};
+
+	@Param("50000")
+	private int tradeCount;
+
+	private Trade[] trades;
+	private Trade[] copies;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		Calendar calendar = Calendar.getInstance();
+		calendar.set(2013, Calendar.AUGUST, 15, 9, 30, 0);
+		long open = calendar.getTimeInMillis();
+		long tradingDay = TimeUnit.MINUTES.toMillis(390);
+		trades = new Trade[tradeCount];
+		copies = new Trade[tradeCount];
+		for(int i = 0; i < tradeCount; i++) {
+			UUID id = new UUID(random.nextLong(), random.nextLong());
+			long timestamp = open + (long)(random.nextDouble() * tradingDay);
+			String symbol = SYMBOLS[random.nextInt(SYMBOLS.length)];
+			long price = (10 + random.nextInt(500)) * Price.UNITS_PER_DOLLAR + 
+				random.nextInt((int)Price.UNITS_PER_DOLLAR);
+			int quantity = 100 * (1 + random.nextInt(50));
+			trades[i] = new Trade(id, new Date(timestamp), "NASDAQ", symbol, 
+				price, quantity);
+			copies[i] = new Trade(id, new Date(timestamp), "NASDAQ", symbol, 
+				price, quantity);
+		}
+	}
+
+	@Benchmark
+	public int reflectionHashCodes() {
+		int result = 0;
+		for(Trade trade : trades) {
+			result += reflectionHashCode(trade, false);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int hashCodes() {
+		int result = 0;
+		for(Trade trade : trades) {
+			result += trade.hashCode();
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int reflectionEqualities() {
+		int result = 0;
+		for(int i = 0; i < trades.length; i++) {
+			if(reflectionEquals(trades[i], copies[i], false)) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int equalities() {
+		int result = 0;
+		for(int i = 0; i < trades.length; i++) {
+			if(trades[i].equals(copies[i])) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	@Benchmark
+	public Set<Trade> hashSet() {
+		Set<Trade> set = new HashSet<Trade>(trades.length * 2);
+		for(Trade trade : trades) {
+			set.add(trade);
+		}
+		for(Trade trade : copies) {
+			set.add(trade);
+		}
+		return set;
+	}
+}
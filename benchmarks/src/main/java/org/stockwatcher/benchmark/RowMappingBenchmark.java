@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.benchmark;
+
+import static org.stockwatcher.data.cassandra.StockHelper.createStock;
+import static org.stockwatcher.data.cassandra.StockHelper.createTrade;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures mapping driver rows to domain objects with StockHelper: every 
+ * stock in stocks.csv, and a trading day's worth of trades.
+ * 
+ * @author Tony Piazza
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class RowMappingBenchmark {
+	@Param("50000")
+	private int tradeCount;
+
+	private List<SyntheticRow> stockRows;
+	private List<SyntheticRow> tradeRows;
+
+	@Setup
+	public void setUp() {
+		stockRows = BenchmarkData.getStockRows();
+		tradeRows = BenchmarkData.getTradeRows(tradeCount);
+	}
+
+	@Benchmark
+	public void createStocks(Blackhole blackhole) {
+		for(SyntheticRow row : stockRows) {
+			blackhole.consume(createStock(row));
+		}
+	}
+
+	@Benchmark
+	public void createTrades(Blackhole blackhole) {
+		for(SyntheticRow row : tradeRows) {
+			blackhole.consume(createTrade(row));
+		}
+	}
+}
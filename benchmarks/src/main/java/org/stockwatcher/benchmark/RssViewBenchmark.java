@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.benchmark;
+
+import static org.stockwatcher.data.cassandra.StockHelper.createStock;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.stockwatcher.domain.Stock;
+import org.stockwatcher.domain.User;
+import org.stockwatcher.domain.WatchList;
+import org.stockwatcher.domain.WatchListItem;
+import org.stockwatcher.web.rss.BaseRssView;
+import org.stockwatcher.web.rss.MostWatchedStocksRssView;
+import org.stockwatcher.web.rss.WatchListRssView;
+
+/**
+ * Measures rendering the two RSS feeds end to end (model to serialized XML) 
+ * using the same view configuration as webContext.xml.
+ * 
+ * @author Tony Piazza
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class RssViewBenchmark {
+	@Param("25")
+	private int itemCount;
+
+	private MostWatchedStocksRssView mostWatchedView;
+	private WatchListRssView watchListView;
+	private Map<String, Object> mostWatchedModel;
+	private Map<String, Object> watchListModel;
+
+	@Setup
+	public void setUp() {
+		mostWatchedView = new MostWatchedStocksRssView();
+		mostWatchedView.setFeedTitle("Most Watched Stocks");
+		mostWatchedView.setFeedDescription("The most watched stocks in $tockWatcher");
+		configure(mostWatchedView);
+		watchListView = new WatchListRssView();
+		configure(watchListView);
+
+		List<Stock> stocks = new ArrayList<Stock>();
+		for(SyntheticRow row : BenchmarkData.getStockRows()) {
+			if(stocks.size() == itemCount) {
+				break;
+			}
+			stocks.add(createStock(row));
+		}
+		mostWatchedModel = new HashMap<String, Object>();
+		mostWatchedModel.put("stocks", stocks);
+
+		User user = new User();
+		user.setId(UUID.randomUUID());
+		user.setFirstName("Tony");
+		user.setLastName("Piazza");
+		user.setDisplayName("tpiazza");
+		WatchList watchList = new WatchList();
+		watchList.setId(UUID.randomUUID());
+		watchList.setUserId(user.getId());
+		watchList.setDisplayName("Benchmark");
+		SortedSet<WatchListItem> items = new TreeSet<WatchListItem>();
+		Date created = new Date();
+		for(Stock stock : stocks) {
+			WatchListItem item = new WatchListItem(stock);
+			item.setWatchListId(watchList.getId());
+			item.setCreated(created);
+			item.setStartPrice(stock.getCurrentPrice().multiply(
+				BigDecimal.valueOf(0.9)));
+			items.add(item);
+		}
+		watchListModel = new HashMap<String, Object>();
+		watchListModel.put("watchList", watchList);
+		watchListModel.put("user", user);
+		watchListModel.put("watchListItems", items);
+	}
+
+	private void configure(BaseRssView view) {
+		view.setFeedGenerator("The $tockWatcher");
+		view.setFeedLink("http://www.stockwatcher.org");
+		view.setItemAuthor("LearningPatterns");
+	}
+
+	@Benchmark
+	public String renderMostWatched() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		mostWatchedView.render(mostWatchedModel, newRequest(), response);
+		return response.getContentAsString();
+	}
+
+	@Benchmark
+	public String renderWatchList() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		watchListView.render(watchListModel, newRequest(), response);
+		return response.getContentAsString();
+	}
+
+	private MockHttpServletRequest newRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", 
+			"/stockwatcher/main/stocks/mostwatched/rss");
+		request.setContextPath("/stockwatcher");
+		return request;
+	}
+}
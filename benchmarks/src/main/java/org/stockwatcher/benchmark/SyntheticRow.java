@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.benchmark;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Row;
+
+/**
+ * A Row backed by a map of column values, used to feed the row mapping code 
+ * without a cluster. Only access by column name is supported, which is all 
+ * the helper classes use. Decimal columns are also kept in their serialized 
+ * form so that getBytesUnsafe returns what the driver would.
+ * 
+ * @author Tony Piazza
+ */
+public class SyntheticRow implements Row {
+	private final Map<String, Object> values = new HashMap<String, Object>();
+	private final Map<String, ByteBuffer> bytes = new HashMap<String, ByteBuffer>();
+
+	public SyntheticRow set(String name, Object value) {
+		values.put(name, value);
+		if(value instanceof BigDecimal) {
+			bytes.put(name, DataType.decimal().serialize(value));
+		}
+		return this;
+	}
+
+	private Object get(String name) {
+		if(!values.containsKey(name)) {
+			throw new IllegalArgumentException(name + " is not a column defined in this row");
+		}
+		return values.get(name);
+	}
+
+	@Override
+	public ColumnDefinitions getColumnDefinitions() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean isNull(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean isNull(String name) {
+		return get(name) == null;
+	}
+
+	@Override
+	public boolean getBool(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean getBool(String name) {
+		Boolean value = (Boolean)get(name);
+		return value == null ? false : value;
+	}
+
+	@Override
+	public int getInt(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int getInt(String name) {
+		Integer value = (Integer)get(name);
+		return value == null ? 0 : value;
+	}
+
+	@Override
+	public long getLong(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public long getLong(String name) {
+		Long value = (Long)get(name);
+		return value == null ? 0L : value;
+	}
+
+	@Override
+	public Date getDate(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Date getDate(String name) {
+		return (Date)get(name);
+	}
+
+	@Override
+	public float getFloat(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public float getFloat(String name) {
+		Float value = (Float)get(name);
+		return value == null ? 0.0f : value;
+	}
+
+	@Override
+	public double getDouble(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public double getDouble(String name) {
+		Double value = (Double)get(name);
+		return value == null ? 0.0 : value;
+	}
+
+	@Override
+	public ByteBuffer getBytesUnsafe(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ByteBuffer getBytesUnsafe(String name) {
+		get(name);
+		ByteBuffer value = bytes.get(name);
+		return value == null ? null : value.duplicate();
+	}
+
+	@Override
+	public ByteBuffer getBytes(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ByteBuffer getBytes(String name) {
+		return getBytesUnsafe(name);
+	}
+
+	@Override
+	public String getString(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public String getString(String name) {
+		return (String)get(name);
+	}
+
+	@Override
+	public BigInteger getVarint(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public BigInteger getVarint(String name) {
+		return (BigInteger)get(name);
+	}
+
+	@Override
+	public BigDecimal getDecimal(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public BigDecimal getDecimal(String name) {
+		return (BigDecimal)get(name);
+	}
+
+	@Override
+	public UUID getUUID(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public UUID getUUID(String name) {
+		return (UUID)get(name);
+	}
+
+	@Override
+	public InetAddress getInet(int i) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public InetAddress getInet(String name) {
+		return (InetAddress)get(name);
+	}
+
+	@Override
+	public <T> List<T> getList(int i, Class<T> elementsClass) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> List<T> getList(String name, Class<T> elementsClass) {
+		return (List<T>)get(name);
+	}
+
+	@Override
+	public <T> Set<T> getSet(int i, Class<T> elementsClass) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> Set<T> getSet(String name, Class<T> elementsClass) {
+		return (Set<T>)get(name);
+	}
+
+	@Override
+	public <K, V> Map<K, V> getMap(int i, Class<K> keysClass, Class<V> valuesClass) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <K, V> Map<K, V> getMap(String name, Class<K> keysClass, 
+		Class<V> valuesClass) {
+		return (Map<K, V>)get(name);
+	}
+}
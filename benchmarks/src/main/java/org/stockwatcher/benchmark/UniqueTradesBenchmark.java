@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.benchmark;
+
+import static org.stockwatcher.data.cassandra.StockHelper.createTrade;
+
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.stockwatcher.domain.Trade;
+import org.stockwatcher.web.StockController;
+
+/**
+ * Measures StockController.getUniqueTrades, which runs on every stock detail 
+ * page and chart refresh, over a single stock's trades for a busy day.
+ * 
+ * @author Tony Piazza
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class UniqueTradesBenchmark {
+	@Param("50000")
+	private int tradeCount;
+
+	private SortedSet<Trade> trades;
+
+	@Setup
+	public void setUp() {
+		trades = new TreeSet<Trade>();
+		for(SyntheticRow row : BenchmarkData.getTradeRows(tradeCount)) {
+			// the controller works on one symbol, so collapse them all
+			row.set("stock_symbol", "AAPL");
+			trades.add(createTrade(row));
+		}
+	}
+
+	@Benchmark
+	public Collection<Trade> getUniqueTrades() {
+		return StockController.getUniqueTrades(trades);
+	}
+}
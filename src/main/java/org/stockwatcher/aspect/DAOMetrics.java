@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.aspect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.MBeanServer;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.stockwatcher.data.cassandra.CassandraDAO;
+import org.stockwatcher.data.cassandra.StatementOptions;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Aspect that times DAO method calls. A timer is kept for every method of 
+ * every DAO class, and for every consistency level the method is called 
+ * with, along with a meter of the calls that failed. The consistency level 
+ * comes from the StatementOptions argument, or from the default options of 
+ * a Cassandra DAO when there is none. Methods that return a ListenableFuture 
+ * are timed until the future completes.
+ * 
+ * Each timer and meter is registered as an MBean in the 
+ * org.stockwatcher.metrics domain with its count, rates and latency 
+ * percentiles. A summary of every method, slowest p99 first, is available 
+ * from the MethodStatistics attribute of this bean.
+ * 
+ * @author Tony Piazza
+ */
+@ManagedResource
+public class DAOMetrics {
+	private static final String DOMAIN = "org.stockwatcher.metrics";
+	private static final String ERRORS = "errors";
+
+	private final MetricRegistry registry = new MetricRegistry();
+	private JmxReporter reporter;
+
+	@Autowired
+	private MBeanServer mbeanServer;
+
+	@PostConstruct
+	public void init() {
+		reporter = JmxReporter.forRegistry(registry)
+			.registerWith(mbeanServer)
+			.inDomain(DOMAIN)
+			.convertDurationsTo(TimeUnit.MILLISECONDS)
+			.convertRatesTo(TimeUnit.SECONDS)
+			.build();
+		reporter.start();
+	}
+
+	@PreDestroy
+	public void destroy() {
+		reporter.stop();
+	}
+
+	public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+		final String name = getMetricName(joinPoint);
+		final Timer.Context context = registry.timer(name).time();
+		Object result;
+		try {
+			result = joinPoint.proceed();
+		} catch(Throwable t) {
+			context.stop();
+			registry.meter(MetricRegistry.name(name, ERRORS)).mark();
+			throw t;
+		}
+		if(result instanceof ListenableFuture) {
+			final ListenableFuture<?> future = (ListenableFuture<?>)result;
+			future.addListener(new Runnable() {
+				@Override
+				public void run() {
+					context.stop();
+					if(!isSuccessful(future)) {
+						registry.meter(MetricRegistry.name(name, ERRORS)).mark();
+					}
+				}
+			}, MoreExecutors.sameThreadExecutor());
+		} else {
+			context.stop();
+		}
+		return result;
+	}
+
+	private static boolean isSuccessful(ListenableFuture<?> future) {
+		try {
+			future.get();
+			return true;
+		} catch(Exception e) {
+			return false;
+		}
+	}
+
+	private static String getMetricName(ProceedingJoinPoint joinPoint) {
+		Object target = joinPoint.getTarget();
+		String name = MetricRegistry.name(target.getClass().getSimpleName(), 
+			joinPoint.getSignature().getName());
+		StatementOptions options = null;
+		for(Object arg : joinPoint.getArgs()) {
+			if(arg instanceof StatementOptions) {
+				options = (StatementOptions)arg;
+				break;
+			}
+		}
+		if(options == null && target instanceof CassandraDAO) {
+			options = ((CassandraDAO)target).getDefaultOptions();
+		}
+		return options == null ? name : 
+			MetricRegistry.name(name, options.getConsistencyLevel().name());
+	}
+
+	@ManagedAttribute(description="Calls, errors and latency of each DAO method, slowest p99 first")
+	public String[] getMethodStatistics() {
+		Map<String, Meter> meters = registry.getMeters();
+		List<MethodStatistics> statistics = new ArrayList<MethodStatistics>();
+		for(Map.Entry<String, Timer> entry : registry.getTimers().entrySet()) {
+			Meter errors = meters.get(MetricRegistry.name(entry.getKey(), ERRORS));
+			statistics.add(new MethodStatistics(entry.getKey(), entry.getValue(), 
+				errors == null ? 0 : errors.getCount()));
+		}
+		Collections.sort(statistics);
+		String[] lines = new String[statistics.size()];
+		for(int i = 0; i < lines.length; i++) {
+			lines[i] = statistics.get(i).toString();
+		}
+		return lines;
+	}
+
+	@ManagedAttribute(description="Number of DAO calls")
+	public long getCallCount() {
+		long count = 0;
+		for(Timer timer : registry.getTimers().values()) {
+			count += timer.getCount();
+		}
+		return count;
+	}
+
+	@ManagedAttribute(description="Number of DAO calls that failed")
+	public long getErrorCount() {
+		long count = 0;
+		for(Meter meter : registry.getMeters().values()) {
+			count += meter.getCount();
+		}
+		return count;
+	}
+
+	@ManagedOperation(description="Discards all of the timers and meters")
+	public void reset() {
+		registry.removeMatching(MetricFilter.ALL);
+	}
+
+	/**
+	 * Point in time view of one timer, ordered by descending p99 latency.
+	 */
+	private static final class MethodStatistics implements 
+		Comparable<MethodStatistics> {
+		private static final double NANOS_PER_MILLI = 1000000.0;
+		private final String name;
+		private final long count;
+		private final long errors;
+		private final double rate;
+		private final Snapshot snapshot;
+
+		private MethodStatistics(String name, Timer timer, long errors) {
+			this.name = name;
+			this.count = timer.getCount();
+			this.errors = errors;
+			this.rate = timer.getOneMinuteRate();
+			this.snapshot = timer.getSnapshot();
+		}
+
+		@Override
+		public int compareTo(MethodStatistics other) {
+			int result = Double.compare(other.snapshot.get99thPercentile(), 
+				snapshot.get99thPercentile());
+			return result == 0 ? name.compareTo(other.name) : result;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s calls=%d errors=%d rate=%.1f/s " + 
+				"mean=%.2fms p50=%.2fms p99=%.2fms p999=%.2fms", name, count, 
+				errors, rate, snapshot.getMean() / NANOS_PER_MILLI, 
+				snapshot.getMedian() / NANOS_PER_MILLI, 
+				snapshot.get99thPercentile() / NANOS_PER_MILLI, 
+				snapshot.get999thPercentile() / NANOS_PER_MILLI);
+		}
+	}
+}
@@ -17,32 +17,215 @@
  */
 package org.stockwatcher.data;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Convenience class that provides methods for reading application properties.
+ * 
+ * The properties change about once a day, so they are read into an immutable 
+ * Snapshot that is shared by every request. Once the snapshot is older than 
+ * the refresh interval the next caller starts reading a new one in the 
+ * background and keeps using the current one until it arrives. A reload can 
+ * also be forced over JMX after the properties have been changed.
  *  
  * @author Tony Piazza
  */
-@Component
+@ManagedResource
 public class ApplicationProperties {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationProperties.class);
 	private static final String APP_VERSION = "1.0";
+	private static final String LAST_TRADE_DATE = "last_trade_date";
+	private static final String TRADING_IS_LIVE = "trading_is_live";
 
 	@Autowired
 	private ApplicationPropertyDAO dao;
 
+	@Autowired
+	private AsyncApplicationPropertyDAO asyncDao;
+
+	private volatile long refreshIntervalSeconds = 60;
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+	private volatile long nextRefresh;
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+
+	/**
+	 * Immutable view of the application properties as they were when it was 
+	 * read.
+	 */
+	public static final class Snapshot {
+		private final long lastTradeDate;
+		private final boolean tradingLive;
+		private final long loaded;
+
+		public Snapshot(Date lastTradeDate, boolean tradingLive) {
+			this(lastTradeDate, tradingLive, System.currentTimeMillis());
+		}
+
+		private Snapshot(Date lastTradeDate, boolean tradingLive, long loaded) {
+			if(lastTradeDate == null) {
+				throw new IllegalArgumentException("lastTradeDate is null");
+			}
+			this.lastTradeDate = lastTradeDate.getTime();
+			this.tradingLive = tradingLive;
+			this.loaded = loaded;
+		}
+
+		public Date getLastTradeDate() {
+			return new Date(lastTradeDate);
+		}
+
+		public boolean isTradingLive() {
+			return tradingLive;
+		}
+
+		public Date getLoaded() {
+			return new Date(loaded);
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		reload();
+	}
+
+	@ManagedAttribute(description="Seconds between background refreshes of the properties")
+	public void setRefreshIntervalSeconds(long refreshIntervalSeconds) {
+		if(refreshIntervalSeconds < 1) {
+			throw new IllegalArgumentException("refreshIntervalSeconds is less than 1");
+		}
+		this.refreshIntervalSeconds = refreshIntervalSeconds;
+		Snapshot current = snapshot.get();
+		nextRefresh = current == null ? 0 : 
+			current.loaded + refreshIntervalSeconds * 1000;
+	}
+
+	@ManagedAttribute(description="Seconds between background refreshes of the properties")
+	public long getRefreshIntervalSeconds() {
+		return refreshIntervalSeconds;
+	}
+
+	/**
+	 * Returns the current snapshot, starting a background refresh if it is 
+	 * due. Never waits on the database.
+	 */
+	public Snapshot getSnapshot() {
+		long now = System.currentTimeMillis();
+		if(now >= nextRefresh && refreshing.compareAndSet(false, true)) {
+			nextRefresh = now + refreshIntervalSeconds * 1000;
+			refresh();
+		}
+		return snapshot.get();
+	}
+
+	private void refresh() {
+		final long started = System.currentTimeMillis();
+		ListenableFuture<List<Object>> values;
+		try {
+			values = Futures.allAsList(Arrays.<ListenableFuture<?>>asList(
+				asyncDao.getDateAsync(LAST_TRADE_DATE), 
+				asyncDao.getBooleanAsync(TRADING_IS_LIVE)));
+		} catch(RuntimeException e) {
+			LOGGER.warn("Unable to refresh application properties", e);
+			refreshing.set(false);
+			return;
+		}
+		Futures.addCallback(values, 
+			new FutureCallback<List<Object>>() {
+				@Override
+				public void onSuccess(List<Object> values) {
+					publish(new Snapshot((Date)values.get(0), 
+						(Boolean)values.get(1), started));
+					refreshing.set(false);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					// Keep serving the current snapshot until the next attempt
+					LOGGER.warn("Unable to refresh application properties", t);
+					refreshing.set(false);
+				}
+			});
+	}
+
+	/**
+	 * Reads the properties and replaces the snapshot before returning.
+	 */
+	@ManagedOperation(description="Reads the application properties from the database")
+	public void reload() {
+		long started = System.currentTimeMillis();
+		publish(new Snapshot(dao.getDate(LAST_TRADE_DATE), 
+			dao.getBoolean(TRADING_IS_LIVE), started));
+	}
+
+	/**
+	 * Replaces the current snapshot unless it was read after the specified 
+	 * one, so a slow background refresh cannot undo a reload.
+	 */
+	private void publish(Snapshot next) {
+		Snapshot current;
+		do {
+			current = snapshot.get();
+			if(current != null && current.loaded > next.loaded) {
+				return;
+			}
+		} while(!snapshot.compareAndSet(current, next));
+		nextRefresh = next.loaded + refreshIntervalSeconds * 1000;
+	}
+
+	/**
+	 * Writes the last trade date and whether trading is live, then reloads 
+	 * the snapshot so that the change is seen right away.
+	 */
+	public void setTradingState(Date lastTradeDate, boolean tradingLive) {
+		if(lastTradeDate == null) {
+			throw new IllegalArgumentException("lastTradeDate is null");
+		}
+		dao.setDate(LAST_TRADE_DATE, lastTradeDate);
+		dao.setBoolean(TRADING_IS_LIVE, tradingLive);
+		reload();
+	}
+
+	@ManagedAttribute(description="Date of the most recent trades")
 	public Date getLastTradeDate() {
-		return dao.getDate("last_trade_date");
+		return getSnapshot().getLastTradeDate();
+	}
+
+	public ListenableFuture<Date> getLastTradeDateAsync() {
+		return Futures.immediateFuture(getLastTradeDate());
 	}
 
 	public String getApplicationVersion() {
 		return APP_VERSION;
 	}
 
+	@ManagedAttribute(description="Whether trades are being recorded for the last trade date")
 	public boolean isTradingLive() {
-		return dao.getBoolean("trading_is_live");
+		return getSnapshot().isTradingLive();
+	}
+
+	public ListenableFuture<Boolean> isTradingLiveAsync() {
+		return Futures.immediateFuture(isTradingLive());
+	}
+
+	@ManagedAttribute(description="Time the properties were last read from the database")
+	public Date getLastLoaded() {
+		return snapshot.get().getLoaded();
 	}
-}
\ No newline at end of file
+}
@@ -22,7 +22,8 @@ import java.util.Date;
 import java.util.UUID;
 
 /**
- * DAO interface that provides methods for reading application properties.
+ * DAO interface that provides methods for reading and writing application 
+ * properties.
  * 
  * @author Tony Piazza
  */
@@ -36,4 +37,6 @@ public interface ApplicationPropertyDAO {
 	BigDecimal getDecimal(String propertyName) throws DAOException;
 	UUID getUUID(String propertyName) throws DAOException;
 	String getString(String propertyName) throws DAOException;
+	void setBoolean(String propertyName, boolean value) throws DAOException;
+	void setDate(String propertyName, Date value) throws DAOException;
 }
\ No newline at end of file
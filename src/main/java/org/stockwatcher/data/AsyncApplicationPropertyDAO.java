@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.UUID;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * DAO interface that provides non-blocking variants of the 
+ * ApplicationPropertyDAO methods.
+ * 
+ * @author Tony Piazza
+ */
+public interface AsyncApplicationPropertyDAO {
+	ListenableFuture<Boolean> getBooleanAsync(String propertyName);
+	ListenableFuture<Integer> getIntAsync(String propertyName);
+	ListenableFuture<Long> getLongAsync(String propertyName);
+	ListenableFuture<Date> getDateAsync(String propertyName);
+	ListenableFuture<Float> getFloatAsync(String propertyName);
+	ListenableFuture<Double> getDoubleAsync(String propertyName);
+	ListenableFuture<BigDecimal> getDecimalAsync(String propertyName);
+	ListenableFuture<UUID> getUUIDAsync(String propertyName);
+	ListenableFuture<String> getStringAsync(String propertyName);
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.UUID;
+
+import org.stockwatcher.domain.Comment;
+import org.stockwatcher.domain.Stock;
+import org.stockwatcher.domain.Trade;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * DAO interface that provides non-blocking variants of the StockDAO read
+ * methods. Invalid arguments are rejected immediately; database errors are
+ * reported through the returned future as a DAOException.
+ * 
+ * @author Tony Piazza
+ */
+public interface AsyncStockDAO {
+	ListenableFuture<Stock> getStockBySymbolAsync(String symbol);
+	ListenableFuture<Map<String, Stock>> getStocksBySymbolsAsync(String... symbols);
+	ListenableFuture<SortedSet<Trade>> getTradesBySymbolAndDateAsync(String symbol, Date tradeDate);
+	ListenableFuture<List<Trade>> getTradesAfterAsync(String symbol, Date tradeDate, Date timestamp, UUID tradeId, int limit);
+	ListenableFuture<BigDecimal> getLastClosePriceForSymbolAsync(String symbol);
+	ListenableFuture<List<Stock>> getMostWatchedStocksAsync(int limit);
+	ListenableFuture<SortedSet<Comment>> getStockCommentsBySymbolAsync(String symbol, int limit);
+}
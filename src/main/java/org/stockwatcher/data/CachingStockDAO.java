@@ -0,0 +1,419 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.stockwatcher.domain.Comment;
+import org.stockwatcher.domain.Exchange;
+import org.stockwatcher.domain.Industry;
+import org.stockwatcher.domain.Stock;
+import org.stockwatcher.domain.Trade;
+
+import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * StockDAO decorator that keeps a read-through cache of stocks, industries 
+ * and exchanges in front of another StockDAO. Stocks are evicted by size and 
+ * age so prices do not go stale for long. Industries and exchanges are 
+ * reference data that practically never change, so they are kept much 
+ * longer.
+ * 
+ * A trade inserted through this DAO moves the price of its stock, so the 
+ * cached stock is invalidated. Changes made elsewhere can be pushed out by 
+ * calling invalidateStock or invalidateAll, which are also exposed over JMX 
+ * along with the cache statistics.
+ * 
+ * The asynchronous methods answer from the cache without blocking when they 
+ * can, so the target must also implement AsyncStockDAO. Their loads bypass 
+ * the LoadingCache, so every invalidation is numbered and a load only 
+ * caches its stocks when none of them were invalidated after it started.
+ * 
+ * @author Tony Piazza
+ */
+@ManagedResource
+public class CachingStockDAO implements StockDAO, AsyncStockDAO {
+	private enum ReferenceData { INDUSTRIES, EXCHANGES }
+
+	private StockDAO target;
+	private AsyncStockDAO asyncTarget;
+	private long maximumStocks = 10000;
+	private long stockExpirySeconds = 60;
+	private long referenceDataExpirySeconds = 3600;
+	private LoadingCache<String, Stock> stocks;
+	private LoadingCache<ReferenceData, SortedSet<?>> referenceData;
+	// Guarded by this; the number of the last invalidation of each stock
+	private final Map<String, Long> stockInvalidations = new HashMap<String, Long>();
+	private long invalidationCount;
+	private long lastInvalidateAll;
+
+	public void setTarget(StockDAO target) {
+		this.target = target;
+	}
+
+	public void setMaximumStocks(long maximumStocks) {
+		this.maximumStocks = maximumStocks;
+	}
+
+	public void setStockExpirySeconds(long stockExpirySeconds) {
+		this.stockExpirySeconds = stockExpirySeconds;
+	}
+
+	public void setReferenceDataExpirySeconds(long referenceDataExpirySeconds) {
+		this.referenceDataExpirySeconds = referenceDataExpirySeconds;
+	}
+
+	@PostConstruct
+	public void init() {
+		if(target == null) {
+			throw new IllegalStateException("target property is null");
+		}
+		if(!(target instanceof AsyncStockDAO)) {
+			throw new IllegalStateException("target does not implement AsyncStockDAO");
+		}
+		asyncTarget = (AsyncStockDAO)target;
+		stocks = CacheBuilder.newBuilder()
+			.maximumSize(maximumStocks)
+			.expireAfterWrite(stockExpirySeconds, TimeUnit.SECONDS)
+			.recordStats()
+			.build(new CacheLoader<String, Stock>() {
+				@Override
+				public Stock load(String symbol) {
+					return target.getStockBySymbol(symbol);
+				}
+			});
+		referenceData = CacheBuilder.newBuilder()
+			.expireAfterWrite(referenceDataExpirySeconds, TimeUnit.SECONDS)
+			.recordStats()
+			.build(new CacheLoader<ReferenceData, SortedSet<?>>() {
+				@Override
+				public SortedSet<?> load(ReferenceData key) {
+					switch(key) {
+					case INDUSTRIES:
+						return Collections.unmodifiableSortedSet(
+							target.getIndustries());
+					default:
+						return Collections.unmodifiableSortedSet(
+							target.getExchanges());
+					}
+				}
+			});
+	}
+
+	@Override
+	public Stock getStockBySymbol(String symbol) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		return get(stocks, symbol);
+	}
+
+	@Override
+	public ListenableFuture<Stock> getStockBySymbolAsync(String symbol) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		Stock stock = stocks.getIfPresent(symbol);
+		if(stock != null) {
+			return Futures.immediateFuture(stock);
+		}
+		final long loadStarted = getInvalidationCount();
+		return Futures.transform(asyncTarget.getStockBySymbolAsync(symbol), 
+			new Function<Stock, Stock>() {
+				@Override
+				public Stock apply(Stock stock) {
+					putStocks(Collections.singletonMap(stock.getSymbol(), stock), 
+						loadStarted);
+					return stock;
+				}
+			});
+	}
+
+	@Override
+	public Map<String, Stock> getStocksBySymbols(String... symbols) {
+		return DAOFutures.getResult(getStocksBySymbolsAsync(symbols));
+	}
+
+	@Override
+	public ListenableFuture<Map<String, Stock>> getStocksBySymbolsAsync(
+		String... symbols) {
+		if(symbols == null || symbols.length == 0) {
+			throw new IllegalArgumentException("symbols argument is null or zero length");
+		}
+		final Map<String, Stock> stockMap = 
+			new TreeMap<String, Stock>(stocks.getAllPresent(Arrays.asList(symbols)));
+		if(stockMap.size() == symbols.length) {
+			return Futures.immediateFuture(stockMap);
+		}
+		// Fetch all of the misses from the target in a single call
+		List<String> misses = new ArrayList<String>();
+		for(String symbol : symbols) {
+			if(!stockMap.containsKey(symbol)) {
+				misses.add(symbol);
+			}
+		}
+		final long loadStarted = getInvalidationCount();
+		return Futures.transform(asyncTarget.getStocksBySymbolsAsync(
+			misses.toArray(new String[misses.size()])), 
+			new Function<Map<String, Stock>, Map<String, Stock>>() {
+				@Override
+				public Map<String, Stock> apply(Map<String, Stock> loaded) {
+					putStocks(loaded, loadStarted);
+					stockMap.putAll(loaded);
+					return stockMap;
+				}
+			});
+	}
+
+	private synchronized long getInvalidationCount() {
+		return invalidationCount;
+	}
+
+	/**
+	 * Caches the stocks loaded by a load that started when the invalidation 
+	 * count was loadStarted, except for those invalidated since then, whose 
+	 * values may be older than the invalidation.
+	 */
+	private synchronized void putStocks(Map<String, Stock> loaded, 
+		long loadStarted) {
+		if(lastInvalidateAll > loadStarted) {
+			return;
+		}
+		for(Map.Entry<String, Stock> entry : loaded.entrySet()) {
+			Long invalidated = stockInvalidations.get(entry.getKey());
+			if(invalidated == null || invalidated <= loadStarted) {
+				stocks.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private synchronized void invalidate(String symbol) {
+		stockInvalidations.put(symbol, ++invalidationCount);
+		stocks.invalidate(symbol);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public SortedSet<Industry> getIndustries() {
+		return (SortedSet<Industry>)get(referenceData, ReferenceData.INDUSTRIES);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public SortedSet<Exchange> getExchanges() {
+		return (SortedSet<Exchange>)get(referenceData, ReferenceData.EXCHANGES);
+	}
+
+	private static <K, V> V get(LoadingCache<K, V> cache, K key) {
+		try {
+			return cache.getUnchecked(key);
+		} catch(UncheckedExecutionException e) {
+			// Surface the DAOException thrown by the target as is
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new DAOException(e.getCause());
+		}
+	}
+
+	@Override
+	public SortedSet<Stock> findStocks(StockCriteria criteria) {
+		return target.findStocks(criteria);
+	}
+
+	@Override
+	public Page<Stock> findStocks(StockCriteria criteria, String pageToken, 
+		int pageSize) {
+		return target.findStocks(criteria, pageToken, pageSize);
+	}
+
+	@Override
+	public List<Stock> searchStocks(String prefix, int limit) {
+		return target.searchStocks(prefix, limit);
+	}
+
+	@Override
+	public SortedSet<Trade> getTradesBySymbolAndDate(String symbol, Date tradeDate) {
+		return target.getTradesBySymbolAndDate(symbol, tradeDate);
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<Trade>> getTradesBySymbolAndDateAsync(
+		String symbol, Date tradeDate) {
+		return asyncTarget.getTradesBySymbolAndDateAsync(symbol, tradeDate);
+	}
+
+	@Override
+	public List<Trade> getTradesAfter(String symbol, Date tradeDate, 
+		Date timestamp, UUID tradeId, int limit) {
+		return target.getTradesAfter(symbol, tradeDate, timestamp, tradeId, 
+			limit);
+	}
+
+	@Override
+	public ListenableFuture<List<Trade>> getTradesAfterAsync(String symbol, 
+		Date tradeDate, Date timestamp, UUID tradeId, int limit) {
+		return asyncTarget.getTradesAfterAsync(symbol, tradeDate, timestamp, 
+			tradeId, limit);
+	}
+
+	@Override
+	public Map<String, BigDecimal> getCurrentPriceForSymbols(String... symbols) {
+		return target.getCurrentPriceForSymbols(symbols);
+	}
+
+	@Override
+	public BigDecimal getLastClosePriceForSymbol(String symbol) {
+		return target.getLastClosePriceForSymbol(symbol);
+	}
+
+	@Override
+	public ListenableFuture<BigDecimal> getLastClosePriceForSymbolAsync(
+		String symbol) {
+		return asyncTarget.getLastClosePriceForSymbolAsync(symbol);
+	}
+
+	@Override
+	public List<Stock> getMostWatchedStocks(int limit) {
+		return target.getMostWatchedStocks(limit);
+	}
+
+	@Override
+	public ListenableFuture<List<Stock>> getMostWatchedStocksAsync(int limit) {
+		return asyncTarget.getMostWatchedStocksAsync(limit);
+	}
+
+	@Override
+	public SortedSet<Comment> getStockCommentsBySymbol(String symbol, int limit) {
+		return target.getStockCommentsBySymbol(symbol, limit);
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<Comment>> getStockCommentsBySymbolAsync(
+		String symbol, int limit) {
+		return asyncTarget.getStockCommentsBySymbolAsync(symbol, limit);
+	}
+
+	@Override
+	public void insertStockComment(String symbol, Comment comment) {
+		target.insertStockComment(symbol, comment);
+	}
+
+	@Override
+	public void deleteStockComment(String symbol, UUID userId, UUID commentId) {
+		target.deleteStockComment(symbol, userId, commentId);
+	}
+
+	@Override
+	public void incrementStockViewCount(String symbol) {
+		target.incrementStockViewCount(symbol);
+	}
+
+	@Override
+	public void insertTrade(Trade trade) {
+		target.insertTrade(trade);
+		invalidate(trade.getStockSymbol());
+	}
+
+	@ManagedOperation(description="Removes a stock from the cache")
+	public void invalidateStock(String symbol) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		invalidate(symbol);
+	}
+
+	@ManagedOperation(description="Removes all stocks, industries and exchanges from the cache")
+	public void invalidateAll() {
+		synchronized(this) {
+			lastInvalidateAll = ++invalidationCount;
+			stockInvalidations.clear();
+			stocks.invalidateAll();
+		}
+		referenceData.invalidateAll();
+	}
+
+	@ManagedAttribute(description="Number of stocks in the cache")
+	public long getStockCacheSize() {
+		return stocks.size();
+	}
+
+	@ManagedAttribute(description="Number of stock lookups served from the cache")
+	public long getStockHitCount() {
+		return stocks.stats().hitCount();
+	}
+
+	@ManagedAttribute(description="Number of stock lookups that read the database")
+	public long getStockMissCount() {
+		return stocks.stats().missCount();
+	}
+
+	@ManagedAttribute(description="Number of stocks evicted from the cache")
+	public long getStockEvictionCount() {
+		return stocks.stats().evictionCount();
+	}
+
+	@ManagedAttribute(description="Fraction of stock lookups served from the cache")
+	public double getStockHitRate() {
+		return stocks.stats().hitRate();
+	}
+
+	@ManagedAttribute(description="Number of industry and exchange lookups served from the cache")
+	public long getReferenceDataHitCount() {
+		return referenceData.stats().hitCount();
+	}
+
+	@ManagedAttribute(description="Number of industry and exchange lookups that read the database")
+	public long getReferenceDataMissCount() {
+		return referenceData.stats().missCount();
+	}
+
+	@ManagedAttribute(description="Number of industry and exchange lists evicted from the cache")
+	public long getReferenceDataEvictionCount() {
+		return referenceData.stats().evictionCount();
+	}
+
+	@ManagedAttribute(description="Average milliseconds spent loading a cache entry")
+	public double getAverageLoadMillis() {
+		CacheStats stats = stocks.stats().plus(referenceData.stats());
+		return stats.averageLoadPenalty() / 1000000.0;
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Utility methods for waiting on the futures returned by the asynchronous 
+ * DAO interfaces.
+ * 
+ * @author Tony Piazza
+ */
+public final class DAOFutures {
+	private DAOFutures() {
+	}
+
+	/**
+	 * Waits for the specified future to complete and returns its value. 
+	 * Unchecked exceptions that caused the future to fail are rethrown as is, 
+	 * so callers see the same exceptions as the equivalent blocking method.
+	 * 
+	 * @param future Future to wait on
+	 * @return value of the future
+	 * @throws DAOException if the future failed with a checked exception
+	 */
+	public static <T> T getResult(Future<T> future) {
+		if(future == null) {
+			throw new IllegalArgumentException("future is null");
+		}
+		try {
+			return Uninterruptibles.getUninterruptibly(future);
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if(cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new DAOException(cause);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * One page of a result that is read a page at a time. The next page token 
+ * is opaque to callers; it is passed back unchanged to the DAO method that 
+ * returned this page to read the page that follows it, and is null on the 
+ * last page.
+ * 
+ * @author Tony Piazza
+ */
+public class Page<T> implements Iterable<T> {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char SEPARATOR = '\n';
+	private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+	private final List<T> items;
+	private final String nextPageToken;
+
+	public Page(List<T> items, String nextPageToken) {
+		if(items == null) {
+			throw new IllegalArgumentException("items is null");
+		}
+		this.items = Collections.unmodifiableList(items);
+		this.nextPageToken = nextPageToken;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
+
+	public boolean isLastPage() {
+		return nextPageToken == null;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return items.iterator();
+	}
+
+	/**
+	 * Creates a page token from the key values of the last item on a page.
+	 */
+	public static String createToken(Object... values) {
+		return ENCODING.encode(Joiner.on(SEPARATOR).join(values).getBytes(UTF8));
+	}
+
+	/**
+	 * Returns the key values held by a token created with createToken.
+	 */
+	public static String[] parseToken(String token, int length) {
+		if(token == null || token.length() == 0) {
+			throw new IllegalArgumentException("token is null or zero length");
+		}
+		String[] values;
+		try {
+			values = Iterables.toArray(Splitter.on(SEPARATOR).split(
+				new String(ENCODING.decode(token), UTF8)), String.class);
+		} catch(IllegalArgumentException e) {
+			throw new IllegalArgumentException("token is invalid", e);
+		}
+		if(values.length != length) {
+			throw new IllegalArgumentException("token is invalid");
+		}
+		return values;
+	}
+}
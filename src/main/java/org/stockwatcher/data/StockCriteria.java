@@ -17,12 +17,11 @@
  */
 package org.stockwatcher.data;
 
-import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
-import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
-import static org.apache.commons.lang.builder.ToStringBuilder.reflectionToString;
-
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Objects;
 
+import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
@@ -73,16 +72,35 @@ public class StockCriteria {
 
 	@Override
 	public boolean equals(Object other) {
-		return reflectionEquals(this, other, false);
+		if(this == other) {
+			return true;
+		}
+		if(other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		StockCriteria that = (StockCriteria)other;
+		return Arrays.equals(exchangeIds, that.exchangeIds) &&
+			Arrays.equals(industryIds, that.industryIds) &&
+			Objects.equals(minimumPrice, that.minimumPrice) &&
+			Objects.equals(maximumPrice, that.maximumPrice);
 	}
 
 	@Override
 	public int hashCode() {
-		return reflectionHashCode(this, false);
+		int result = Arrays.hashCode(exchangeIds);
+		result = 31 * result + Arrays.hashCode(industryIds);
+		result = 31 * result + Objects.hashCode(minimumPrice);
+		result = 31 * result + Objects.hashCode(maximumPrice);
+		return result;
 	}
 
 	@Override
 	public String toString() {
-		return reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE, true);
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+			.append("exchangeIds", exchangeIds)
+			.append("industryIds", industryIds)
+			.append("minimumPrice", minimumPrice)
+			.append("maximumPrice", maximumPrice)
+			.toString();
 	}
 }
\ No newline at end of file
@@ -38,10 +38,14 @@ import org.stockwatcher.domain.Trade;
  */
 public interface StockDAO {
 	Stock getStockBySymbol(String symbol) throws DAOException;
+	Map<String, Stock> getStocksBySymbols(String... symbols) throws DAOException;
 	SortedSet<Industry> getIndustries() throws DAOException;
 	SortedSet<Exchange> getExchanges() throws DAOException;
 	SortedSet<Stock> findStocks(StockCriteria criteria) throws DAOException;
+	Page<Stock> findStocks(StockCriteria criteria, String pageToken, int pageSize) throws DAOException;
+	List<Stock> searchStocks(String prefix, int limit) throws DAOException;
 	SortedSet<Trade> getTradesBySymbolAndDate(String symbol, Date tradeDate) throws DAOException;
+	List<Trade> getTradesAfter(String symbol, Date tradeDate, Date timestamp, UUID tradeId, int limit) throws DAOException;
 	Map<String, BigDecimal> getCurrentPriceForSymbols(String... symbols) throws DAOException;
 	BigDecimal getLastClosePriceForSymbol(String symbol) throws DAOException;
 	List<Stock> getMostWatchedStocks(int limit) throws DAOException;
@@ -49,4 +53,5 @@ public interface StockDAO {
 	void insertStockComment(String symbol, Comment comment) throws DAOException;
 	void deleteStockComment(String symbol, UUID userId, UUID commentId) throws DAOException;
 	void incrementStockViewCount(String symbol) throws DAOException;
+	void insertTrade(Trade trade) throws DAOException;
 }
\ No newline at end of file
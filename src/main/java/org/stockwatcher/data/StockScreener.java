@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.stockwatcher.domain.Price;
+import org.stockwatcher.domain.Stock;
+
+/**
+ * In-memory index that evaluates StockCriteria without reading the 
+ * database. Stocks are held as columns in symbol order: the current prices 
+ * in a primitive array, and a bitset of the active stocks and of the 
+ * stocks of each industry and exchange. A query ORs together the bitsets of 
+ * the requested industries and of the requested exchanges, ANDs the two 
+ * with the active stocks, and then checks the price of each stock that is 
+ * left, so it costs a few word operations per thousand stocks no matter 
+ * how many industries are selected.
+ * 
+ * The index only returns symbols; the DAO reads the stocks themselves. It 
+ * is rebuilt from a full list of stocks, and prices are updated in place 
+ * as trades are recorded in between.
+ * 
+ * @author Tony Piazza
+ */
+public class StockScreener {
+	private volatile Index index = new Index(Collections.<Stock>emptyList());
+
+	/**
+	 * Replaces the contents of the index with the specified stocks.
+	 */
+	public void rebuild(Collection<Stock> stocks) {
+		if(stocks == null) {
+			throw new IllegalArgumentException("stocks is null");
+		}
+		index = new Index(stocks);
+	}
+
+	/**
+	 * Sets the current price of a stock. Symbols that are not in the index 
+	 * are ignored until the next rebuild.
+	 */
+	public void updatePrice(String symbol, long price) {
+		Index current = index;
+		int ordinal = Arrays.binarySearch(current.symbols, symbol);
+		if(ordinal >= 0) {
+			current.prices.set(ordinal, price);
+		}
+	}
+
+	/**
+	 * Returns the symbols of every stock that matches the criteria, in 
+	 * symbol order.
+	 */
+	public List<String> screen(StockCriteria criteria) {
+		Index current = index;
+		BitSet matches = current.getCandidates(criteria);
+		long minPrice = Price.valueOf(criteria.getMinimumPrice());
+		long maxPrice = Price.valueOf(criteria.getMaximumPrice());
+		List<String> symbols = new ArrayList<String>(matches.cardinality());
+		for(int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+			if(current.isPriceInRange(i, minPrice, maxPrice)) {
+				symbols.add(current.symbols[i]);
+			}
+		}
+		return symbols;
+	}
+
+	/**
+	 * Returns a page of the symbols of the stocks that match the criteria, 
+	 * in symbol order. The page token is the last symbol on the previous 
+	 * page, so it stays valid across rebuilds.
+	 */
+	public Page<String> screen(StockCriteria criteria, String pageToken, 
+		int pageSize) {
+		if(pageSize < 1) {
+			throw new IllegalArgumentException("pageSize is less than 1");
+		}
+		Index current = index;
+		BitSet matches = current.getCandidates(criteria);
+		long minPrice = Price.valueOf(criteria.getMinimumPrice());
+		long maxPrice = Price.valueOf(criteria.getMaximumPrice());
+		int start = 0;
+		if(pageToken != null) {
+			String lastSymbol = Page.parseToken(pageToken, 1)[0];
+			int ordinal = Arrays.binarySearch(current.symbols, lastSymbol);
+			start = ordinal >= 0 ? ordinal + 1 : -(ordinal + 1);
+		}
+		List<String> symbols = new ArrayList<String>(pageSize);
+		for(int i = matches.nextSetBit(start); i >= 0; i = matches.nextSetBit(i + 1)) {
+			if(current.isPriceInRange(i, minPrice, maxPrice)) {
+				if(symbols.size() == pageSize) {
+					return new Page<String>(symbols, 
+						Page.createToken(symbols.get(pageSize - 1)));
+				}
+				symbols.add(current.symbols[i]);
+			}
+		}
+		return new Page<String>(symbols, null);
+	}
+
+	/**
+	 * Returns the number of stocks in the index.
+	 */
+	public int size() {
+		return index.symbols.length;
+	}
+
+	private static final class Index {
+		private static final BitSet EMPTY = new BitSet();
+		private final String[] symbols;
+		private final AtomicLongArray prices;
+		private final BitSet active;
+		private final Map<Integer, BitSet> industries = new HashMap<Integer, BitSet>();
+		private final Map<String, BitSet> exchanges = new HashMap<String, BitSet>();
+
+		private Index(Collection<Stock> stocks) {
+			List<Stock> sorted = new ArrayList<Stock>(stocks);
+			Collections.sort(sorted);
+			symbols = new String[sorted.size()];
+			prices = new AtomicLongArray(sorted.size());
+			active = new BitSet(sorted.size());
+			for(int i = 0; i < symbols.length; i++) {
+				Stock stock = sorted.get(i);
+				symbols[i] = stock.getSymbol();
+				prices.set(i, stock.getCurrentPriceUnits());
+				active.set(i, stock.isActive());
+				getBitSet(industries, stock.getIndustry().getId()).set(i);
+				getBitSet(exchanges, stock.getExchangeId()).set(i);
+			}
+		}
+
+		private static <K> BitSet getBitSet(Map<K, BitSet> bitSets, K key) {
+			BitSet bitSet = bitSets.get(key);
+			if(bitSet == null) {
+				bitSet = new BitSet();
+				bitSets.put(key, bitSet);
+			}
+			return bitSet;
+		}
+
+		/**
+		 * Returns the active stocks that are in one of the industries and 
+		 * on one of the exchanges of the criteria.
+		 */
+		private BitSet getCandidates(StockCriteria criteria) {
+			BitSet byIndustry = new BitSet(symbols.length);
+			for(Integer industryId : criteria.getIndustryIds()) {
+				byIndustry.or(get(industries, industryId));
+			}
+			BitSet byExchange = new BitSet(symbols.length);
+			for(String exchangeId : criteria.getExchangeIds()) {
+				byExchange.or(get(exchanges, exchangeId));
+			}
+			byIndustry.and(byExchange);
+			byIndustry.and(active);
+			return byIndustry;
+		}
+
+		private static <K> BitSet get(Map<K, BitSet> bitSets, K key) {
+			BitSet bitSet = bitSets.get(key);
+			return bitSet == null ? EMPTY : bitSet;
+		}
+
+		private boolean isPriceInRange(int ordinal, long minPrice, long maxPrice) {
+			long price = prices.get(ordinal);
+			return minPrice <= price && maxPrice >= price;
+		}
+	}
+}
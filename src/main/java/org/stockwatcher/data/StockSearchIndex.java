@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.stockwatcher.domain.Stock;
+
+/**
+ * In-memory prefix index over the symbols and company names of the active 
+ * stocks, used for typeahead searches. The keys are held in sorted arrays: 
+ * one with the symbols and one with the company names starting at each of 
+ * their words, so "tech" finds "Agilent Technologies". A search is a binary 
+ * search for the first key with the prefix followed by a scan of the keys 
+ * that share it, stopping as soon as there are enough matches.
+ * 
+ * Stocks whose symbol matches come before stocks whose company name 
+ * matches. The index is rebuilt from a full list of stocks, so the prices 
+ * of the stocks it returns are as of the last rebuild.
+ * 
+ * @author Tony Piazza
+ */
+public class StockSearchIndex {
+	private static final Pattern WORD_START = Pattern.compile("(?<![\\p{L}\\p{N}])[\\p{L}\\p{N}]");
+
+	private volatile Index index = new Index(Collections.<Stock>emptyList());
+
+	/**
+	 * Replaces the contents of the index with the specified stocks.
+	 */
+	public void rebuild(Collection<Stock> stocks) {
+		if(stocks == null) {
+			throw new IllegalArgumentException("stocks is null");
+		}
+		index = new Index(stocks);
+	}
+
+	/**
+	 * Returns up to limit active stocks whose symbol, or a word of whose 
+	 * company name, starts with the specified prefix. Case is ignored.
+	 */
+	public List<Stock> search(String prefix, int limit) {
+		if(prefix == null) {
+			throw new IllegalArgumentException("prefix is null");
+		}
+		if(limit < 1) {
+			throw new IllegalArgumentException("limit is less than 1");
+		}
+		List<Stock> result = new ArrayList<Stock>();
+		String key = normalize(prefix);
+		if(key.length() > 0) {
+			Index current = index;
+			BitSet found = new BitSet(current.stocks.length);
+			current.symbolKeys.collect(key, limit, current.stocks, found, result);
+			current.nameKeys.collect(key, limit, current.stocks, found, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of stocks in the index.
+	 */
+	public int size() {
+		return index.stocks.length;
+	}
+
+	private static String normalize(String text) {
+		return text.trim().toLowerCase(Locale.ENGLISH);
+	}
+
+	private static final class Index {
+		private final Stock[] stocks;
+		private final Keys symbolKeys;
+		private final Keys nameKeys;
+
+		private Index(Collection<Stock> all) {
+			List<Stock> active = new ArrayList<Stock>(all.size());
+			for(Stock stock : all) {
+				if(stock.isActive()) {
+					active.add(stock);
+				}
+			}
+			Collections.sort(active);
+			stocks = active.toArray(new Stock[active.size()]);
+			List<Key> symbols = new ArrayList<Key>(stocks.length);
+			List<Key> names = new ArrayList<Key>(stocks.length * 3);
+			for(int i = 0; i < stocks.length; i++) {
+				symbols.add(new Key(normalize(stocks[i].getSymbol()), i));
+				String name = stocks[i].getCompanyName();
+				if(name != null) {
+					name = normalize(name);
+					Matcher matcher = WORD_START.matcher(name);
+					while(matcher.find()) {
+						names.add(new Key(name.substring(matcher.start()), i));
+					}
+				}
+			}
+			symbolKeys = new Keys(symbols);
+			nameKeys = new Keys(names);
+		}
+	}
+
+	private static final class Key implements Comparable<Key> {
+		private final String text;
+		private final int ordinal;
+
+		private Key(String text, int ordinal) {
+			this.text = text;
+			this.ordinal = ordinal;
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			int result = text.compareTo(other.text);
+			return result == 0 ? Integer.compare(ordinal, other.ordinal) : result;
+		}
+	}
+
+	/**
+	 * Sorted keys and the ordinal of the stock each one belongs to.
+	 */
+	private static final class Keys {
+		private final String[] texts;
+		private final int[] ordinals;
+
+		private Keys(List<Key> keys) {
+			Collections.sort(keys);
+			texts = new String[keys.size()];
+			ordinals = new int[keys.size()];
+			for(int i = 0; i < texts.length; i++) {
+				texts[i] = keys.get(i).text;
+				ordinals[i] = keys.get(i).ordinal;
+			}
+		}
+
+		private void collect(String prefix, int limit, Stock[] stocks, 
+			BitSet found, List<Stock> result) {
+			for(int i = lowerBound(prefix); i < texts.length && 
+				result.size() < limit && texts[i].startsWith(prefix); i++) {
+				if(!found.get(ordinals[i])) {
+					found.set(ordinals[i]);
+					result.add(stocks[ordinals[i]]);
+				}
+			}
+		}
+
+		/**
+		 * Returns the index of the first key that is not less than the 
+		 * specified text.
+		 */
+		private int lowerBound(String text) {
+			int low = 0;
+			int high = texts.length;
+			while(low < high) {
+				int middle = (low + high) >>> 1;
+				if(texts[middle].compareTo(text) < 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.stockwatcher.domain.Trade;
+
+/**
+ * Class that fans out newly recorded trades to the clients that are waiting 
+ * for them. A channel is kept per stock symbol with the most recent trades 
+ * and the subscribers that are waiting for the next one, so any number of 
+ * open stock pages share a single in-memory feed instead of each one 
+ * re-reading the day's trades from the database.
+ * 
+ * A subscriber is notified exactly once, with every buffered trade that 
+ * comes after the last one it saw. Trades are ordered by timestamp and then 
+ * by id, so trades recorded in the same millisecond are not skipped.
+ * 
+ * Only trades recorded through a StockDAO in this process are seen by the 
+ * feed, so unless allTradesRecorded is set, isComplete always returns false 
+ * and callers read the database as well. Set it only when every trade is 
+ * recorded by this process, with no external ingest or other web nodes.
+ * 
+ * Channels are only kept for symbols that have trades or subscribers, so 
+ * requests for symbols that are never traded do not add up.
+ * 
+ * @author Tony Piazza
+ */
+@ManagedResource
+public class TradeFeed implements TradeListener {
+	private static final UUID LAST_UUID = 
+		new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+	private static final Comparator<Trade> TRADE_TIME_ORDER = new Comparator<Trade>() {
+		@Override
+		public int compare(Trade t1, Trade t2) {
+			int result = t1.getTimestamp().compareTo(t2.getTimestamp());
+			return result == 0 ? t1.getId().compareTo(t2.getId()) : result;
+		}
+	};
+
+	/**
+	 * Callback interface for clients waiting on a symbol's trades.
+	 */
+	public interface Subscriber {
+		void tradesReceived(SortedSet<Trade> trades);
+	}
+
+	private final ConcurrentMap<String, Channel> channels = 
+		new ConcurrentHashMap<String, Channel>();
+	private final long started = System.currentTimeMillis();
+	private final AtomicLong tradeCount = new AtomicLong();
+	private final AtomicLong deliveryCount = new AtomicLong();
+	private int maximumTradesPerSymbol = 1000;
+	private volatile boolean allTradesRecorded;
+
+	public void setMaximumTradesPerSymbol(int maximumTradesPerSymbol) {
+		if(maximumTradesPerSymbol < 1) {
+			throw new IllegalArgumentException("maximumTradesPerSymbol is less than 1");
+		}
+		this.maximumTradesPerSymbol = maximumTradesPerSymbol;
+	}
+
+	@ManagedAttribute(description="Whether every trade is recorded through this process")
+	public boolean isAllTradesRecorded() {
+		return allTradesRecorded;
+	}
+
+	@ManagedAttribute(description="Whether every trade is recorded through this process")
+	public void setAllTradesRecorded(boolean allTradesRecorded) {
+		this.allTradesRecorded = allTradesRecorded;
+	}
+
+	/**
+	 * Returns true if the feed holds every trade for the specified symbol 
+	 * that is newer than the specified timestamp. When it does not, the 
+	 * caller has to read the trades from the database.
+	 */
+	public boolean isComplete(String symbol, Date after) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		if(after == null) {
+			throw new IllegalArgumentException("after is null");
+		}
+		if(!allTradesRecorded) {
+			return false;
+		}
+		Channel channel = channels.get(symbol);
+		if(channel == null) {
+			return after.getTime() >= started;
+		}
+		synchronized(channel) {
+			return after.getTime() >= channel.complete;
+		}
+	}
+
+	/**
+	 * Notifies the subscriber of the trades for the specified symbol that 
+	 * come after the trade with the specified timestamp and id. Without an 
+	 * id every trade at that timestamp is skipped. If some are buffered the 
+	 * subscriber is notified before this method returns, otherwise when the 
+	 * next trade for the symbol is recorded.
+	 */
+	public void subscribe(String symbol, Date after, UUID tradeId, 
+		Subscriber subscriber) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		if(after == null) {
+			throw new IllegalArgumentException("after is null");
+		}
+		if(subscriber == null) {
+			throw new IllegalArgumentException("subscriber is null");
+		}
+		Trade cursor = new Trade(tradeId == null ? LAST_UUID : tradeId, after, 
+			"-", symbol, 0L, 0);
+		SortedSet<Trade> trades = null;
+		while(trades == null) {
+			Channel channel = getChannel(symbol);
+			synchronized(channel) {
+				if(channel.removed) {
+					continue;
+				}
+				trades = channel.getTradesAfter(cursor);
+				if(trades.isEmpty()) {
+					channel.subscribers.put(subscriber, cursor);
+					return;
+				}
+			}
+		}
+		deliver(subscriber, trades);
+	}
+
+	/**
+	 * Removes a subscriber that no longer needs to be notified, such as 
+	 * when its request has timed out.
+	 */
+	public void unsubscribe(String symbol, Subscriber subscriber) {
+		Channel channel = channels.get(symbol);
+		if(channel != null) {
+			synchronized(channel) {
+				channel.subscribers.remove(subscriber);
+				// The channel was only created to wait for this symbol
+				if(channel.subscribers.isEmpty() && channel.trades.isEmpty()) {
+					channel.removed = true;
+					channels.remove(symbol, channel);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void tradeInserted(Trade trade) {
+		List<Subscriber> subscribers = new ArrayList<Subscriber>();
+		boolean added = false;
+		while(!added) {
+			Channel channel = getChannel(trade.getStockSymbol());
+			synchronized(channel) {
+				if(channel.removed) {
+					continue;
+				}
+				channel.trades.add(trade);
+				added = true;
+				while(channel.trades.size() > maximumTradesPerSymbol) {
+					// Anything at or before the dropped trade has to be re-read
+					Trade dropped = channel.trades.pollFirst();
+					channel.complete = dropped.getTimestamp().getTime() + 1;
+				}
+				// A subscriber that has already seen a later trade keeps waiting
+				Iterator<Map.Entry<Subscriber, Trade>> entries = 
+					channel.subscribers.entrySet().iterator();
+				while(entries.hasNext()) {
+					Map.Entry<Subscriber, Trade> entry = entries.next();
+					if(TRADE_TIME_ORDER.compare(trade, entry.getValue()) > 0) {
+						subscribers.add(entry.getKey());
+						entries.remove();
+					}
+				}
+			}
+		}
+		tradeCount.incrementAndGet();
+		if(!subscribers.isEmpty()) {
+			SortedSet<Trade> trades = Collections.unmodifiableSortedSet(
+				new TreeSet<Trade>(Collections.singleton(trade)));
+			for(Subscriber subscriber : subscribers) {
+				deliver(subscriber, trades);
+			}
+		}
+	}
+
+	private void deliver(Subscriber subscriber, SortedSet<Trade> trades) {
+		subscriber.tradesReceived(trades);
+		deliveryCount.incrementAndGet();
+	}
+
+	private Channel getChannel(String symbol) {
+		Channel channel = channels.get(symbol);
+		if(channel == null) {
+			channel = new Channel(started);
+			Channel existing = channels.putIfAbsent(symbol, channel);
+			if(existing != null) {
+				channel = existing;
+			}
+		}
+		return channel;
+	}
+
+	@ManagedAttribute(description="Number of symbols with a channel")
+	public int getSymbolCount() {
+		return channels.size();
+	}
+
+	@ManagedAttribute(description="Number of subscribers waiting for trades")
+	public int getSubscriberCount() {
+		int count = 0;
+		for(Channel channel : channels.values()) {
+			synchronized(channel) {
+				count += channel.subscribers.size();
+			}
+		}
+		return count;
+	}
+
+	@ManagedAttribute(description="Number of trades published")
+	public long getTradeCount() {
+		return tradeCount.get();
+	}
+
+	@ManagedAttribute(description="Number of trades delivered to subscribers")
+	public long getDeliveryCount() {
+		return deliveryCount.get();
+	}
+
+	private static final class Channel {
+		private final NavigableSet<Trade> trades = 
+			new TreeSet<Trade>(TRADE_TIME_ORDER);
+		// Each subscriber is mapped to the last trade it has seen
+		private final Map<Subscriber, Trade> subscribers = 
+			new LinkedHashMap<Subscriber, Trade>();
+		// Every trade with a timestamp from here on is in the buffer
+		private long complete;
+		// Set once the channel is no longer in the map
+		private boolean removed;
+
+		private Channel(long complete) {
+			this.complete = complete;
+		}
+
+		private SortedSet<Trade> getTradesAfter(Trade cursor) {
+			return Collections.unmodifiableSortedSet(new TreeSet<Trade>(
+				trades.tailSet(cursor, false)));
+		}
+	}
+}
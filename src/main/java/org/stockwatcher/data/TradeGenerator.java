@@ -0,0 +1,422 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import static org.stockwatcher.data.csv.CsvDataSource.parseDate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.stockwatcher.data.csv.CsvDataSource;
+import org.stockwatcher.data.csv.CsvReader;
+import org.stockwatcher.domain.Price;
+import org.stockwatcher.domain.Trade;
+
+import com.datastax.driver.core.utils.UUIDs;
+
+/**
+ * Class that simulates live trading by generating trades at a target rate 
+ * and recording them through the StockDAO, so the trade chart, the trade 
+ * feed, summary generation and the current price updates can be load 
+ * tested on a single machine with either the Cassandra or the in-memory 
+ * DAOs.
+ * 
+ * Each active stock replays the most recent day in dailysummaries.csv. A 
+ * simulated session of sessionSeconds runs from that day's open to its 
+ * close, with a random walk that stays within the day's high and low, and 
+ * trade sizes are drawn so that a session adds up to roughly the day's 
+ * volume. Trades are timestamped with the current time and the session 
+ * starts over when it ends. While the generator runs the last trade date 
+ * is the current date and trading is marked live, so the trade chart shows 
+ * and follows the generated trades.
+ * 
+ * Trades are written by a fixed pool of worker threads. When the workers 
+ * fall more than maxQueuedTrades behind, new trades are dropped and counted 
+ * rather than queued, which shows that the target rate is more than the 
+ * DAO can sustain.
+ * 
+ * @author Tony Piazza
+ */
+@ManagedResource
+public class TradeGenerator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(TradeGenerator.class);
+	private static final long TICK_MILLIS = 100;
+	private static final long CENT = Price.UNITS_PER_DOLLAR / 100;
+	private static final int ROUND_LOT = 100;
+
+	@Autowired
+	private StockDAO stockDAO;
+	@Autowired
+	private CsvDataSource dataSource;
+	@Autowired
+	private ApplicationProperties applicationProperties;
+
+	private volatile double tradesPerSecond = 100;
+	private volatile int sessionSeconds = 23400;
+	private int workerThreads = 8;
+	private int maxQueuedTrades = 10000;
+
+	private final Random random = new Random();
+	private final AtomicLong tradeCount = new AtomicLong();
+	private final AtomicLong failureCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private ScheduledExecutorService ticker;
+	private ThreadPoolExecutor writers;
+	private volatile long started;
+
+	// Only used by the ticker thread
+	private List<Envelope> envelopes;
+	private long sessionStart;
+	private long lastTick;
+	private long tradeDateStart;
+	private long nextTradeDate;
+	private double owed;
+
+	/**
+	 * The prices of one stock for the day being replayed, along with the 
+	 * state of its random walk through the session.
+	 */
+	private static final class Envelope {
+		private final String symbol;
+		private final String exchangeId;
+		private final long open;
+		private final long high;
+		private final long low;
+		private final long close;
+		private final long volume;
+		private long deviation;
+		private long lastTimestamp;
+
+		private Envelope(String symbol, String exchangeId, long open, 
+			long high, long low, long close, long volume) {
+			this.symbol = symbol;
+			this.exchangeId = exchangeId;
+			this.open = open;
+			this.close = close;
+			// Don't trust the file to keep high and low in order
+			this.high = Math.max(Math.max(high, low), Math.max(open, close));
+			this.low = Math.min(Math.min(high, low), Math.min(open, close));
+			this.volume = volume;
+		}
+	}
+
+	@ManagedOperation(description="Starts generating trades")
+	public synchronized void start() {
+		if(ticker != null) {
+			throw new IllegalStateException("generator is already running");
+		}
+		envelopes = readEnvelopes();
+		if(envelopes.isEmpty()) {
+			throw new DAOException("no daily summaries found for active stocks");
+		}
+		writers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, 
+			TimeUnit.MILLISECONDS, 
+			new ArrayBlockingQueue<Runnable>(maxQueuedTrades), 
+			new ThreadPoolExecutor.AbortPolicy());
+		tradeCount.set(0);
+		failureCount.set(0);
+		droppedCount.set(0);
+		owed = 0;
+		started = sessionStart = lastTick = System.currentTimeMillis();
+		startTradeDate(started);
+		ticker = Executors.newSingleThreadScheduledExecutor();
+		ticker.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					tick();
+				} catch(RuntimeException e) {
+					LOGGER.error("Unable to generate trades", e);
+				}
+			}
+		}, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+		LOGGER.info("Started generating {} trades/sec for {} stocks", 
+			tradesPerSecond, envelopes.size());
+	}
+
+	@PreDestroy
+	@ManagedOperation(description="Stops generating trades")
+	public synchronized void stop() {
+		if(ticker == null) {
+			return;
+		}
+		ticker.shutdown();
+		writers.shutdown();
+		try {
+			ticker.awaitTermination(1, TimeUnit.MINUTES);
+			writers.awaitTermination(1, TimeUnit.MINUTES);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		ticker = null;
+		writers = null;
+		try {
+			// Keep the trade date so the generated trades can still be viewed
+			applicationProperties.setTradingState(
+				applicationProperties.getLastTradeDate(), false);
+		} catch(RuntimeException e) {
+			LOGGER.error("Unable to mark trading as not live", e);
+		}
+		LOGGER.info("Stopped generating trades after {} trades ({} trades/sec)", 
+			tradeCount.get(), Math.round(getActualTradesPerSecond()));
+	}
+
+	/**
+	 * Makes the date of the specified time the last trade date and marks 
+	 * trading as live.
+	 */
+	private void startTradeDate(long now) {
+		Date tradeDate = DateUtils.truncate(new Date(now), Calendar.DATE);
+		applicationProperties.setTradingState(tradeDate, true);
+		tradeDateStart = tradeDate.getTime();
+		nextTradeDate = DateUtils.addDays(tradeDate, 1).getTime();
+	}
+
+	private void tick() {
+		long now = System.currentTimeMillis();
+		if(now >= nextTradeDate) {
+			startTradeDate(now);
+		}
+		owed += tradesPerSecond * (now - lastTick) / 1000;
+		// Trades are spread over the time since the last tick, but not 
+		// before the start of the trade date
+		long from = Math.max(lastTick, tradeDateStart);
+		lastTick = now;
+		// Don't try to catch up on more than a second of trades at once
+		owed = Math.min(owed, Math.max(tradesPerSecond, 1));
+		long sessionMillis = sessionSeconds * 1000L;
+		if(now - sessionStart >= sessionMillis) {
+			sessionStart = now;
+			for(Envelope envelope : envelopes) {
+				envelope.deviation = 0;
+			}
+		}
+		double progress = (double)(now - sessionStart) / sessionMillis;
+		double tradesPerStock = Math.max(
+			tradesPerSecond * sessionSeconds / envelopes.size(), 1);
+		for(; owed >= 1; owed--) {
+			Envelope envelope = envelopes.get(random.nextInt(envelopes.size()));
+			submit(new Trade(UUIDs.timeBased(), 
+				new Date(nextTimestamp(envelope, from, now)), 
+				envelope.exchangeId, envelope.symbol, 
+				nextPrice(envelope, progress), 
+				nextQuantity(envelope, tradesPerStock)));
+		}
+	}
+
+	/**
+	 * Picks a random time after from and up to now, kept later than the 
+	 * previous trade of the stock so that its trades stay in the order their 
+	 * prices were generated and never share a millisecond.
+	 */
+	private long nextTimestamp(Envelope envelope, long from, long now) {
+		long span = now - from;
+		long timestamp = from + 1 + 
+			(span > 1 ? random.nextInt((int)Math.min(span, Integer.MAX_VALUE)) : 0);
+		envelope.lastTimestamp = Math.max(timestamp, envelope.lastTimestamp + 1);
+		return envelope.lastTimestamp;
+	}
+
+	/**
+	 * Moves the price along the line from the open to the close, plus a 
+	 * random walk that is damped as the session nears its end so the last 
+	 * trades land on the close.
+	 */
+	private long nextPrice(Envelope envelope, double progress) {
+		long range = Math.max(envelope.high - envelope.low, CENT);
+		envelope.deviation += Math.round(random.nextGaussian() * range / 10);
+		envelope.deviation = Math.max(-range, Math.min(range, envelope.deviation));
+		long price = envelope.open + Math.round(
+			(envelope.close - envelope.open) * progress + 
+			envelope.deviation * (1 - progress));
+		price = Math.max(envelope.low, Math.min(envelope.high, price));
+		return Math.max(Math.round((double)price / CENT) * CENT, CENT);
+	}
+
+	/**
+	 * Draws an exponentially distributed number of round lots, with a mean 
+	 * that spreads the day's volume over the trades expected for the stock.
+	 */
+	private int nextQuantity(Envelope envelope, double tradesPerStock) {
+		double mean = Math.max(envelope.volume / tradesPerStock, ROUND_LOT);
+		double lots = -mean * Math.log(1 - random.nextDouble()) / ROUND_LOT;
+		return (int)Math.min(Math.max(Math.round(lots), 1) * ROUND_LOT, 
+			Integer.MAX_VALUE / ROUND_LOT * ROUND_LOT);
+	}
+
+	private void submit(final Trade trade) {
+		try {
+			writers.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						stockDAO.insertTrade(trade);
+						tradeCount.incrementAndGet();
+					} catch(RuntimeException e) {
+						LOGGER.debug("Unable to insert trade", e);
+						failureCount.incrementAndGet();
+					}
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			droppedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Streams dailysummaries.csv, keeping only the most recent summary of 
+	 * each active stock.
+	 */
+	private List<Envelope> readEnvelopes() {
+		Map<String, String> exchanges = new HashMap<String, String>();
+		for(String[] record : dataSource.readAll("stocks.csv")) {
+			if(Boolean.parseBoolean(record[1])) {
+				exchanges.put(record[0], record[4]);
+			}
+		}
+		Map<String, String[]> latest = new HashMap<String, String[]>();
+		try {
+			CsvReader reader = dataSource.open("dailysummaries.csv");
+			try {
+				String[] record;
+				while((record = reader.readRecord()) != null) {
+					String[] previous = latest.get(record[0]);
+					if(exchanges.containsKey(record[0]) && (previous == null || 
+						parseDate(record[1]).after(parseDate(previous[1])))) {
+						latest.put(record[0], record);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch(IOException e) {
+			throw new DAOException(e);
+		}
+		List<Envelope> result = new ArrayList<Envelope>(latest.size());
+		for(String[] record : latest.values()) {
+			// stock_symbol, trade_date, price_close, price_high, price_low, 
+			// price_open, share_volume
+			result.add(new Envelope(record[0], exchanges.get(record[0]), 
+				Price.parse(record[5]), Price.parse(record[3]), 
+				Price.parse(record[4]), Price.parse(record[2]), 
+				Long.parseLong(record[6])));
+		}
+		return result;
+	}
+
+	@ManagedAttribute(description="True if trades are being generated")
+	public synchronized boolean isRunning() {
+		return ticker != null;
+	}
+
+	@ManagedAttribute(description="Number of trades to generate per second")
+	public double getTradesPerSecond() {
+		return tradesPerSecond;
+	}
+
+	@ManagedAttribute(description="Number of trades to generate per second")
+	public void setTradesPerSecond(double tradesPerSecond) {
+		if(tradesPerSecond <= 0) {
+			throw new IllegalArgumentException("tradesPerSecond must be greater than 0");
+		}
+		this.tradesPerSecond = tradesPerSecond;
+	}
+
+	@ManagedAttribute(description="Length of a simulated trading session in seconds")
+	public int getSessionSeconds() {
+		return sessionSeconds;
+	}
+
+	@ManagedAttribute(description="Length of a simulated trading session in seconds")
+	public void setSessionSeconds(int sessionSeconds) {
+		if(sessionSeconds < 1) {
+			throw new IllegalArgumentException("sessionSeconds must be at least 1");
+		}
+		this.sessionSeconds = sessionSeconds;
+	}
+
+	@ManagedAttribute(description="Number of threads writing trades, used by the next start")
+	public synchronized int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	@ManagedAttribute(description="Number of threads writing trades, used by the next start")
+	public synchronized void setWorkerThreads(int workerThreads) {
+		if(workerThreads < 1) {
+			throw new IllegalArgumentException("workerThreads must be at least 1");
+		}
+		this.workerThreads = workerThreads;
+	}
+
+	@ManagedAttribute(description="Number of trades that can wait for a worker, used by the next start")
+	public synchronized int getMaxQueuedTrades() {
+		return maxQueuedTrades;
+	}
+
+	@ManagedAttribute(description="Number of trades that can wait for a worker, used by the next start")
+	public synchronized void setMaxQueuedTrades(int maxQueuedTrades) {
+		if(maxQueuedTrades < 1) {
+			throw new IllegalArgumentException("maxQueuedTrades must be at least 1");
+		}
+		this.maxQueuedTrades = maxQueuedTrades;
+	}
+
+	@ManagedAttribute(description="Number of trades written since the last start")
+	public long getTradeCount() {
+		return tradeCount.get();
+	}
+
+	@ManagedAttribute(description="Number of trades that could not be written since the last start")
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	@ManagedAttribute(description="Number of trades dropped because the workers fell behind")
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	@ManagedAttribute(description="Trades written per second since the last start")
+	public double getActualTradesPerSecond() {
+		long elapsed = System.currentTimeMillis() - started;
+		return started == 0 || elapsed <= 0 ? 0 : 
+			tradeCount.get() * 1000.0 / elapsed;
+	}
+}
@@ -29,6 +29,7 @@ import org.stockwatcher.domain.User;
  */
 public interface UserDAO {
 	SortedSet<User> getUsers() throws DAOException;
+	Page<User> getUsers(String pageToken, int pageSize) throws DAOException;
 	User getUser(UUID id) throws DAOException;
 	User updateUser(User user) throws DAOException;
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Class that keeps the watch count of every watched stock ranked from most 
+ * to least watched, so the most watched stocks can be read by walking the 
+ * first entries of the ranking rather than scanning every count. 
+ * 
+ * The DAO that records watch list changes applies them here as they happen. 
+ * Counts changed by other application instances are picked up when the 
+ * ranking is reconciled with the stored counts. Since the stored counts are 
+ * read while changes keep arriving, a reconcile leaves alone every count 
+ * that changed after its read started; the next reconcile picks those up.
+ * 
+ * @author Tony Piazza
+ */
+@ManagedResource
+public class WatchCountLeaderboard {
+	private final ConcurrentMap<String, Long> counts = 
+		new ConcurrentHashMap<String, Long>();
+	private final NavigableSet<Entry> ranking = 
+		new ConcurrentSkipListSet<Entry>();
+	private final Map<String, Long> changeVersions = new HashMap<String, Long>();
+	private long version;
+	private volatile Date lastReconciled;
+
+	/**
+	 * Adds delta, which may be negative, to the watch count of a stock.
+	 */
+	public synchronized void add(String symbol, long delta) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		Long count = counts.get(symbol);
+		set(symbol, count == null ? delta : count + delta);
+		changeVersions.put(symbol, ++version);
+	}
+
+	/**
+	 * Returns the version to pass to reconcile. Call this before reading the 
+	 * stored counts.
+	 */
+	public synchronized long startReconcile() {
+		return version;
+	}
+
+	/**
+	 * Replaces the counts with the specified counts, which are expected to 
+	 * be the complete set of stored watch counts. Counts that changed since 
+	 * startReconcile returned the specified version are kept, since the 
+	 * stored counts may have been read before or after the change.
+	 */
+	public synchronized void reconcile(long startVersion, 
+		Map<String, Long> storedCounts) {
+		if(storedCounts == null) {
+			throw new IllegalArgumentException("storedCounts is null");
+		}
+		Set<String> removed = new HashSet<String>(counts.keySet());
+		removed.removeAll(storedCounts.keySet());
+		for(String symbol : removed) {
+			if(!changedSince(symbol, startVersion)) {
+				set(symbol, 0);
+			}
+		}
+		for(Map.Entry<String, Long> entry : storedCounts.entrySet()) {
+			if(!changedSince(entry.getKey(), startVersion)) {
+				set(entry.getKey(), entry.getValue());
+			}
+		}
+		lastReconciled = new Date();
+	}
+
+	private boolean changedSince(String symbol, long startVersion) {
+		Long changeVersion = changeVersions.get(symbol);
+		return changeVersion != null && changeVersion > startVersion;
+	}
+
+	private void set(String symbol, long count) {
+		Long previous = count > 0 ? counts.put(symbol, count) : 
+			counts.remove(symbol);
+		if(previous != null) {
+			ranking.remove(new Entry(symbol, previous));
+		}
+		if(count > 0) {
+			ranking.add(new Entry(symbol, count));
+		}
+	}
+
+	/**
+	 * Returns the symbols of the most watched stocks, most watched first.
+	 * Stocks that nobody is watching are not included.
+	 */
+	public List<String> getMostWatchedSymbols(int limit) {
+		List<String> symbols = new ArrayList<String>(limit);
+		for(Entry entry : ranking) {
+			if(symbols.size() >= limit) {
+				break;
+			}
+			symbols.add(entry.symbol);
+		}
+		return symbols;
+	}
+
+	public long getWatchCount(String symbol) {
+		Long count = counts.get(symbol);
+		return count == null ? 0 : count;
+	}
+
+	@ManagedAttribute(description="Number of stocks on at least one watch list")
+	public int getWatchedStockCount() {
+		return counts.size();
+	}
+
+	@ManagedAttribute(description="Time the counts were last reconciled with the database")
+	public Date getLastReconciled() {
+		return lastReconciled;
+	}
+
+	@ManagedAttribute(description="Ten most watched stock symbols")
+	public List<String> getTopTen() {
+		return getMostWatchedSymbols(10);
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+		private final String symbol;
+		private final long count;
+
+		private Entry(String symbol, long count) {
+			this.symbol = symbol;
+			this.count = count;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			if(count != other.count) {
+				return count > other.count ? -1 : 1;
+			}
+			return symbol.compareTo(other.symbol);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(this == other) {
+				return true;
+			}
+			if(!(other instanceof Entry)) {
+				return false;
+			}
+			Entry entry = (Entry)other;
+			return count == entry.count && symbol.equals(entry.symbol);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * symbol.hashCode() + (int)(count ^ (count >>> 32));
+		}
+	}
+}
@@ -24,8 +24,8 @@ import java.util.UUID;
 import org.stockwatcher.data.DAOException;
 
 /**
- * Cassandra-specific DAO interface that provides methods for reading 
- * application properties.
+ * Cassandra-specific DAO interface that provides methods for reading and 
+ * writing application properties.
  * 
  * @author Tony Piazza
  */
@@ -39,4 +39,6 @@ public interface ApplicationPropertyDAO extends org.stockwatcher.data.Applicatio
 	BigDecimal getDecimal(StatementOptions options, String propertyName) throws DAOException;
 	UUID getUUID(StatementOptions options, String propertyName) throws DAOException;
 	String getString(StatementOptions options, String propertyName) throws DAOException;
+	void setBoolean(StatementOptions options, String propertyName, boolean value) throws DAOException;
+	void setDate(StatementOptions options, String propertyName, Date value) throws DAOException;
 }
\ No newline at end of file
@@ -17,16 +17,25 @@
  */
 package org.stockwatcher.data.cassandra;
 
+import static org.stockwatcher.data.DAOFutures.getResult;
+
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.UUID;
 
 import javax.annotation.PostConstruct;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
+import org.stockwatcher.data.AsyncApplicationPropertyDAO;
+import org.stockwatcher.data.DAOException;
 
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Implementation of the ApplicationPropertyDAO interface for Apache Cassandra.
@@ -34,7 +43,9 @@ import com.datastax.driver.core.Row;
  * @author Tony Piazza
  */
 @Repository
-public class ApplicationPropertyDAOImpl extends CassandraDAO implements ApplicationPropertyDAO {
+@Profile("cassandra")
+public class ApplicationPropertyDAOImpl extends CassandraDAO implements 
+	ApplicationPropertyDAO, AsyncApplicationPropertyDAO {
 	public String[] DATE_FORMATS = {"yyyy-MM-dd", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm:ssZ"};
 
 	private PreparedStatement selectBooleanProperty;
@@ -46,6 +57,8 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 	private PreparedStatement selectUUIDProperty;
 	private PreparedStatement selectTextProperty;
 	private PreparedStatement selectTimestampProperty;
+	private PreparedStatement updateBooleanProperty;
+	private PreparedStatement updateTimestampProperty;
 
 	@PostConstruct
 	public void init() {
@@ -58,11 +71,24 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 		selectUUIDProperty = prepare("SELECT property_value_uuid FROM ApplicationProperty WHERE property_name=?");
 		selectTextProperty = prepare("SELECT property_value_varchar FROM ApplicationProperty WHERE property_name=?");
 		selectTimestampProperty = prepare("SELECT property_value_timestamp FROM ApplicationProperty WHERE property_name=?");
+		updateBooleanProperty = prepare("UPDATE ApplicationProperty SET property_value_boolean=?, updated=? WHERE property_name=?");
+		updateTimestampProperty = prepare("UPDATE ApplicationProperty SET property_value_timestamp=?, updated=? WHERE property_name=?");
 	}
 
-	private Row getRow(StatementOptions options, PreparedStatement statement, 
-		String propertyName) {
-		return execute(statement.bind(propertyName), options).one();
+	private <T> ListenableFuture<T> getValueAsync(StatementOptions options, 
+		PreparedStatement statement, String propertyName, 
+		final Function<Row, T> function) {
+		return executeAsync(statement.bind(propertyName), options, 
+			new Function<ResultSet, T>() {
+				@Override
+				public T apply(ResultSet resultSet) {
+					Row row = resultSet.one();
+					if(row == null) {
+						throw new DAOException("no property found with specified name");
+					}
+					return function.apply(row);
+				}
+			});
 	}
 
 	@Override
@@ -72,7 +98,23 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 
 	@Override
 	public boolean getBoolean(StatementOptions options, String propertyName) {
-		return getRow(options, selectBooleanProperty, propertyName).getBool(0);
+		return getResult(getBooleanAsync(options, propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Boolean> getBooleanAsync(String propertyName) {
+		return getBooleanAsync(getDefaultOptions(), propertyName);
+	}
+
+	private ListenableFuture<Boolean> getBooleanAsync(StatementOptions options, 
+		String propertyName) {
+		return getValueAsync(options, selectBooleanProperty, propertyName, 
+			new Function<Row, Boolean>() {
+				@Override
+				public Boolean apply(Row row) {
+					return row.getBool(0);
+				}
+			});
 	}
 
 	@Override
@@ -82,7 +124,23 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 
 	@Override
 	public int getInt(StatementOptions options, String propertyName) {
-		return getRow(options, selectIntProperty, propertyName).getInt(0);
+		return getResult(getIntAsync(options, propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Integer> getIntAsync(String propertyName) {
+		return getIntAsync(getDefaultOptions(), propertyName);
+	}
+
+	private ListenableFuture<Integer> getIntAsync(StatementOptions options, 
+		String propertyName) {
+		return getValueAsync(options, selectIntProperty, propertyName, 
+			new Function<Row, Integer>() {
+				@Override
+				public Integer apply(Row row) {
+					return row.getInt(0);
+				}
+			});
 	}
 
 	@Override
@@ -92,7 +150,23 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 
 	@Override
 	public long getLong(StatementOptions options, String propertyName) {
-		return getRow(options, selectBigIntProperty, propertyName).getLong(0);
+		return getResult(getLongAsync(options, propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Long> getLongAsync(String propertyName) {
+		return getLongAsync(getDefaultOptions(), propertyName);
+	}
+
+	private ListenableFuture<Long> getLongAsync(StatementOptions options, 
+		String propertyName) {
+		return getValueAsync(options, selectBigIntProperty, propertyName, 
+			new Function<Row, Long>() {
+				@Override
+				public Long apply(Row row) {
+					return row.getLong(0);
+				}
+			});
 	}
 
 	@Override
@@ -102,7 +176,23 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 
 	@Override
 	public Date getDate(StatementOptions options, String propertyName) {
-		return getRow(options, selectTimestampProperty, propertyName).getDate(0);
+		return getResult(getDateAsync(options, propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Date> getDateAsync(String propertyName) {
+		return getDateAsync(getDefaultOptions(), propertyName);
+	}
+
+	private ListenableFuture<Date> getDateAsync(StatementOptions options, 
+		String propertyName) {
+		return getValueAsync(options, selectTimestampProperty, propertyName, 
+			new Function<Row, Date>() {
+				@Override
+				public Date apply(Row row) {
+					return row.getDate(0);
+				}
+			});
 	}
 
 	@Override
@@ -112,7 +202,23 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 
 	@Override
 	public float getFloat(StatementOptions options, String propertyName) {
-		return getRow(options, selectFloatProperty, propertyName).getFloat(0);
+		return getResult(getFloatAsync(options, propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Float> getFloatAsync(String propertyName) {
+		return getFloatAsync(getDefaultOptions(), propertyName);
+	}
+
+	private ListenableFuture<Float> getFloatAsync(StatementOptions options, 
+		String propertyName) {
+		return getValueAsync(options, selectFloatProperty, propertyName, 
+			new Function<Row, Float>() {
+				@Override
+				public Float apply(Row row) {
+					return row.getFloat(0);
+				}
+			});
 	}
 
 	@Override
@@ -122,7 +228,23 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 
 	@Override
 	public double getDouble(StatementOptions options, String propertyName) {
-		return getRow(options, selectDoubleProperty, propertyName).getDouble(0);
+		return getResult(getDoubleAsync(options, propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Double> getDoubleAsync(String propertyName) {
+		return getDoubleAsync(getDefaultOptions(), propertyName);
+	}
+
+	private ListenableFuture<Double> getDoubleAsync(StatementOptions options, 
+		String propertyName) {
+		return getValueAsync(options, selectDoubleProperty, propertyName, 
+			new Function<Row, Double>() {
+				@Override
+				public Double apply(Row row) {
+					return row.getDouble(0);
+				}
+			});
 	}
 
 	@Override
@@ -132,7 +254,23 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 
 	@Override
 	public BigDecimal getDecimal(StatementOptions options, String propertyName) {
-		return getRow(options, selectDecimalProperty, propertyName).getDecimal(0);
+		return getResult(getDecimalAsync(options, propertyName));
+	}
+
+	@Override
+	public ListenableFuture<BigDecimal> getDecimalAsync(String propertyName) {
+		return getDecimalAsync(getDefaultOptions(), propertyName);
+	}
+
+	private ListenableFuture<BigDecimal> getDecimalAsync(StatementOptions options, 
+		String propertyName) {
+		return getValueAsync(options, selectDecimalProperty, propertyName, 
+			new Function<Row, BigDecimal>() {
+				@Override
+				public BigDecimal apply(Row row) {
+					return row.getDecimal(0);
+				}
+			});
 	}
 
 	@Override
@@ -142,7 +280,23 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 
 	@Override
 	public UUID getUUID(StatementOptions options, String propertyName) {
-		return getRow(options, selectUUIDProperty, propertyName).getUUID(0);
+		return getResult(getUUIDAsync(options, propertyName));
+	}
+
+	@Override
+	public ListenableFuture<UUID> getUUIDAsync(String propertyName) {
+		return getUUIDAsync(getDefaultOptions(), propertyName);
+	}
+
+	private ListenableFuture<UUID> getUUIDAsync(StatementOptions options, 
+		String propertyName) {
+		return getValueAsync(options, selectUUIDProperty, propertyName, 
+			new Function<Row, UUID>() {
+				@Override
+				public UUID apply(Row row) {
+					return row.getUUID(0);
+				}
+			});
 	}
 
 	@Override
@@ -152,6 +306,59 @@ public class ApplicationPropertyDAOImpl extends CassandraDAO implements Applicat
 
 	@Override
 	public String getString(StatementOptions options, String propertyName) {
-		return getRow(options, selectTextProperty, propertyName).getString(0);
+		return getResult(getStringAsync(options, propertyName));
+	}
+
+	@Override
+	public ListenableFuture<String> getStringAsync(String propertyName) {
+		return getStringAsync(getDefaultOptions(), propertyName);
+	}
+
+	private ListenableFuture<String> getStringAsync(StatementOptions options, 
+		String propertyName) {
+		return getValueAsync(options, selectTextProperty, propertyName, 
+			new Function<Row, String>() {
+				@Override
+				public String apply(Row row) {
+					return row.getString(0);
+				}
+			});
+	}
+
+	@Override
+	public void setBoolean(String propertyName, boolean value) {
+		setBoolean(getDefaultOptions(), propertyName, value);
+	}
+
+	@Override
+	public void setBoolean(StatementOptions options, String propertyName, 
+		boolean value) {
+		setValue(options, updateBooleanProperty, propertyName, value);
+	}
+
+	@Override
+	public void setDate(String propertyName, Date value) {
+		setDate(getDefaultOptions(), propertyName, value);
+	}
+
+	@Override
+	public void setDate(StatementOptions options, String propertyName, 
+		Date value) {
+		if(value == null) {
+			throw new IllegalArgumentException("value is null");
+		}
+		setValue(options, updateTimestampProperty, propertyName, value);
+	}
+
+	private void setValue(StatementOptions options, PreparedStatement statement, 
+		String propertyName, Object value) {
+		if(propertyName == null || propertyName.length() == 0) {
+			throw new IllegalArgumentException("propertyName is null or zero length");
+		}
+		try {
+			execute(statement.bind(value, new Date(), propertyName), options);
+		} catch(DriverException e) {
+			throw new DAOException(e);
+		}
 	}
 }
\ No newline at end of file
@@ -17,27 +17,49 @@
  */
 package org.stockwatcher.data.cassandra;
 
+import static org.stockwatcher.data.DAOFutures.getResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.stockwatcher.data.DAOException;
 
-import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
-import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
-import com.datastax.driver.core.policies.RetryPolicy;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Base class that provides common functionality for DAO classes that 
  * access an Apache Cassandra cluster.
  * 
+ * The default options come from the defaultStatementOptions bean when one 
+ * is defined. Their tracing sample rate can be changed over JMX, so that 
+ * tracing can be turned on in production without a restart.
+ * 
  * @author Tony Piazza
  */
+@ManagedResource
 public abstract class CassandraDAO {
 	@Autowired
 	private SessionFactory sessionFactory;
+	@Autowired
+	private StatementRegistry statementRegistry;
 	private Session session;
-	private StatementOptions options = new StatementOptions();
+	private volatile StatementOptions options = StatementOptions.DEFAULT;
 
 	protected Session getSession() {
 		if(session == null) {
@@ -47,41 +69,221 @@ public abstract class CassandraDAO {
 	}
 
 	protected ResultSet execute(Statement statement, StatementOptions options) {
-		return getSession().execute(setOptions(statement, options));
+		options = setOptions(statement, options);
+		if(options.getTimeoutMillis() == 0 && !speculate(statement, options)) {
+			return getSession().execute(statement);
+		}
+		return getResult(submit(statement, options));
 	}
 
-	protected ResultSetFuture executeAsync(Statement statement, StatementOptions options) {
-		return getSession().executeAsync(setOptions(statement, options));
+	/**
+	 * Executes the specified statement asynchronously. Idempotent statements 
+	 * may be sent more than once when the SessionFactory has speculative 
+	 * execution enabled.
+	 * 
+	 * @param statement Statement to execute
+	 * @param options StatementOptions to use for executing the statement
+	 * @return future that fails with the DriverException on a driver error
+	 */
+	protected ListenableFuture<ResultSet> executeAsync(Statement statement, 
+		StatementOptions options) {
+		return submit(statement, setOptions(statement, options));
 	}
 
-	protected PreparedStatement prepare(String statement) {
-		return getSession().prepare(statement);
+	private ListenableFuture<ResultSet> submit(Statement statement, 
+		StatementOptions options) {
+		ListenableFuture<ResultSet> future = speculate(statement, options) ? 
+			sessionFactory.executeSpeculatively(statement) : 
+			getSession().executeAsync(statement);
+		long timeoutMillis = options.getTimeoutMillis();
+		return timeoutMillis == 0 ? future : 
+			sessionFactory.withTimeout(future, timeoutMillis);
 	}
 
-	private Statement setOptions(Statement statement, StatementOptions options) {
-		if(options != null) {
-			ConsistencyLevel consistencyLevel = options.getConsistencyLevel();
-			if(consistencyLevel != null) {
-				statement.setConsistencyLevel(consistencyLevel);
-			}
-			if(options.isTracing()) {
-				statement.enableTracing();
-			} else {
-				statement.disableTracing();
-			}
-			RetryPolicy retryPolicy = options.getRetryPolicy();
-			if(retryPolicy != null) {
-				statement.setRetryPolicy(retryPolicy);
+	/**
+	 * Executes the specified statement asynchronously and converts its 
+	 * ResultSet using the specified function once it is available.
+	 * 
+	 * @param statement Statement to execute
+	 * @param options StatementOptions to use for executing the statement
+	 * @param function Function used to convert the ResultSet
+	 * @return future that fails with a DAOException on a driver error
+	 */
+	protected <T> ListenableFuture<T> executeAsync(Statement statement, 
+		StatementOptions options, Function<? super ResultSet, ? extends T> function) {
+		return translateExceptions(transform(
+			executeAsync(statement, options), function));
+	}
+
+	/**
+	 * Converts the result of the specified future on the result executor of 
+	 * the SessionFactory. Iterating a ResultSet past its first page waits 
+	 * for the next page, which would deadlock on the driver I/O thread that 
+	 * completes the future.
+	 * 
+	 * @param future ListenableFuture to convert
+	 * @param function Function used to convert the result
+	 * @return ListenableFuture
+	 */
+	protected <I, O> ListenableFuture<O> transform(ListenableFuture<I> future, 
+		Function<? super I, ? extends O> function) {
+		return Futures.transform(future, function, 
+			sessionFactory.getResultExecutor());
+	}
+
+	/**
+	 * Converts the result of the specified future on the result executor of 
+	 * the SessionFactory using a function that returns a future.
+	 * 
+	 * @param future ListenableFuture to convert
+	 * @param function AsyncFunction used to convert the result
+	 * @return ListenableFuture
+	 */
+	protected <I, O> ListenableFuture<O> transform(ListenableFuture<I> future, 
+		AsyncFunction<? super I, ? extends O> function) {
+		return Futures.transform(future, function, 
+			sessionFactory.getResultExecutor());
+	}
+
+	/**
+	 * Wraps the specified future so that driver exceptions are reported as 
+	 * DAOExceptions, like they are by the blocking DAO methods.
+	 * 
+	 * @param future ListenableFuture to wrap
+	 * @return ListenableFuture
+	 */
+	protected static <T> ListenableFuture<T> translateExceptions(
+		ListenableFuture<T> future) {
+		return Futures.withFallback(future, new FutureFallback<T>() {
+			@Override
+			public ListenableFuture<T> create(Throwable t) {
+				if(t instanceof DriverException) {
+					t = new DAOException(t);
+				}
+				return Futures.immediateFailedFuture(t);
 			}
+		});
+	}
+
+	private boolean speculate(Statement statement, StatementOptions options) {
+		return sessionFactory.getSpeculativeExecutionDelayMillis() > 0 && 
+			(options.isIdempotent() || isRead(statement));
+	}
+
+	/**
+	 * SELECT statements are always safe to execute more than once; writes 
+	 * with counters, collections or lightweight transactions are not, so 
+	 * other statements need their options to say they are idempotent.
+	 */
+	private static boolean isRead(Statement statement) {
+		String query = null;
+		if(statement instanceof BoundStatement) {
+			query = ((BoundStatement)statement).preparedStatement().getQueryString();
+		} else if(statement instanceof RegularStatement) {
+			query = ((RegularStatement)statement).getQueryString();
+		}
+		return query != null && 
+			query.trim().regionMatches(true, 0, "SELECT", 0, 6);
+	}
+
+	protected PreparedStatement prepare(String statement) {
+		return statementRegistry.prepare(statement);
+	}
+
+	/**
+	 * Binds the specified values to the IN clause of the specified query. 
+	 * More values than the StatementRegistry allows in one IN clause are 
+	 * split across several statements.
+	 * 
+	 * @param query CQL statement containing %s in place of the IN values
+	 * @param values values of the IN clause
+	 * @return one BoundStatement per group of values
+	 */
+	protected List<BoundStatement> bindIn(String query, Object... values) {
+		if(values == null || values.length == 0) {
+			throw new IllegalArgumentException("values argument is null or zero length");
+		}
+		int maxArity = statementRegistry.getMaxInArity();
+		List<BoundStatement> statements = new ArrayList<BoundStatement>(
+			(values.length + maxArity - 1) / maxArity);
+		for(int from = 0; from < values.length; from += maxArity) {
+			Object[] group = Arrays.copyOfRange(values, from, 
+				Math.min(from + maxArity, values.length));
+			statements.add(statementRegistry.prepareIn(query, group.length)
+				.bind(group));
+		}
+		return statements;
+	}
+
+	/**
+	 * Applies the specified options, or the default options when null, to 
+	 * the specified statement.
+	 * 
+	 * @return options that were applied
+	 */
+	private StatementOptions setOptions(Statement statement, 
+		StatementOptions options) {
+		if(options == null) {
+			options = this.options;
 		}
-		return statement;
+		statement.setConsistencyLevel(options.getConsistencyLevel());
+		statement.setRetryPolicy(options.getRetryPolicy());
+		// A fetch size chosen for this statement, like a page size, wins
+		if(options.getFetchSize() > 0 && statement.getFetchSize() <= 0) {
+			statement.setFetchSize(options.getFetchSize());
+		}
+		if(options.sampleTracing()) {
+			statement.enableTracing();
+		} else {
+			statement.disableTracing();
+		}
+		return options;
+	}
+
+	/**
+	 * Returns the specified options, or the default options when null, 
+	 * marked as safe to execute more than once. Only use this for writes 
+	 * that leave the same data no matter how often they are applied.
+	 */
+	protected StatementOptions idempotent(StatementOptions options) {
+		return (options == null ? this.options : options).withIdempotent(true);
 	}
 
 	public StatementOptions getDefaultOptions() {
 		return options;
 	}
 
+	@Autowired(required=false)
+	@Qualifier("defaultStatementOptions")
 	public void setDefaultOptions(StatementOptions options) {
+		if(options == null) {
+			throw new IllegalArgumentException("options is null");
+		}
 		this.options = options;
 	}
+
+	@ManagedAttribute(description="Fraction of statements that are traced, from 0 to 1")
+	public double getTracingSampleRate() {
+		return options.getTracingSampleRate();
+	}
+
+	@ManagedAttribute(description="Fraction of statements that are traced, from 0 to 1")
+	public void setTracingSampleRate(double tracingSampleRate) {
+		options = options.withTracingSampleRate(tracingSampleRate);
+	}
+
+	@ManagedAttribute(description="Default consistency level of statements")
+	public String getConsistencyLevel() {
+		return options.getConsistencyLevel().name();
+	}
+
+	@ManagedAttribute(description="Default number of rows fetched per page, 0 for the driver default")
+	public int getFetchSize() {
+		return options.getFetchSize();
+	}
+
+	@ManagedAttribute(description="Default milliseconds to wait for a response, 0 for no limit")
+	public long getTimeoutMillis() {
+		return options.getTimeoutMillis();
+	}
 }
\ No newline at end of file
@@ -25,6 +25,7 @@ import java.util.SortedSet;
 import java.util.UUID;
 
 import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.Page;
 import org.stockwatcher.data.StockCriteria;
 import org.stockwatcher.domain.Comment;
 import org.stockwatcher.domain.Exchange;
@@ -40,10 +41,13 @@ import org.stockwatcher.domain.Trade;
  */
 public interface CassandraStockDAO extends org.stockwatcher.data.StockDAO {
 	Stock getStockBySymbol(StatementOptions options, String symbol) throws DAOException;
+	Map<String, Stock> getStocksBySymbols(StatementOptions options, String... symbols) throws DAOException;
 	SortedSet<Industry> getIndustries(StatementOptions options) throws DAOException;
 	SortedSet<Exchange> getExchanges(StatementOptions options) throws DAOException;
 	SortedSet<Stock> findStocks(StatementOptions options, StockCriteria criteria) throws DAOException;
+	Page<Stock> findStocks(StatementOptions options, StockCriteria criteria, String pageToken, int pageSize) throws DAOException;
 	SortedSet<Trade> getTradesBySymbolAndDate(StatementOptions options, String symbol, Date tradeDate) throws DAOException;
+	List<Trade> getTradesAfter(StatementOptions options, String symbol, Date tradeDate, Date timestamp, UUID tradeId, int limit) throws DAOException;
 	Map<String, BigDecimal> getCurrentPriceForSymbols(StatementOptions options, String... symbols) throws DAOException;
 	BigDecimal getLastClosePriceForSymbol(StatementOptions options, String symbol) throws DAOException;
 	List<Stock> getMostWatchedStocks(StatementOptions options, int limit) throws DAOException;
@@ -51,4 +55,5 @@ public interface CassandraStockDAO extends org.stockwatcher.data.StockDAO {
 	void insertStockComment(StatementOptions options, String symbol, Comment comment) throws DAOException;
 	void deleteStockComment(StatementOptions options, String symbol, UUID userId, UUID commentId) throws DAOException;
 	void incrementStockViewCount(StatementOptions options, String symbol) throws DAOException;
+	void insertTrade(StatementOptions options, Trade trade) throws DAOException;
 }
\ No newline at end of file
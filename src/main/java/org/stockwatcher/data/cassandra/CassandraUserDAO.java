@@ -21,6 +21,7 @@ import java.util.SortedSet;
 import java.util.UUID;
 
 import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.Page;
 import org.stockwatcher.domain.User;
 
 /**
@@ -31,6 +32,7 @@ import org.stockwatcher.domain.User;
  */
 public interface CassandraUserDAO extends org.stockwatcher.data.UserDAO {
 	SortedSet<User> getUsers(StatementOptions options) throws DAOException;
+	Page<User> getUsers(StatementOptions options, String pageToken, int pageSize) throws DAOException;
 	User getUser(StatementOptions options, UUID id) throws DAOException;
 	User updateUser(StatementOptions options, User user) throws DAOException;
 }
\ No newline at end of file
@@ -24,6 +24,8 @@ import org.stockwatcher.data.DAOException;
 import org.stockwatcher.domain.WatchList;
 import org.stockwatcher.domain.WatchListItem;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 /**
  * Cassandra-specific DAO interface that provides methods for creating, 
  * reading, updating and deleting watch lists and watch list items. 
@@ -42,4 +44,5 @@ public interface CassandraWatchListDAO extends org.stockwatcher.data.WatchListDA
 	void removeWatchListStock(StatementOptions options, UUID id, String stockSymbol) throws DAOException;
 	int getWatchCount(StatementOptions options, String symbol) throws DAOException;
 	int getWatchListCountByUserId(StatementOptions options, UUID userId) throws DAOException;
+	ListenableFuture<Integer> getWatchListCountByUserIdAsync(StatementOptions options, UUID userId);
 }
\ No newline at end of file
@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.cassandra;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.csv.CsvDataSource;
+import org.stockwatcher.data.csv.CsvReader;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Class that loads the seed files in the csv folder into Cassandra, as an 
+ * alternative to the cqlsh COPY commands in cql/stockwatcher.cql that is 
+ * fast enough for reseeding and for backfilling years of daily summaries.
+ * 
+ * Each file is streamed one record at a time and every record is bound to a 
+ * prepared INSERT, converting the text of each field to the type of its 
+ * column. Consecutive records for the same partition are sent together as 
+ * an unlogged batch (up to maxBatchSize statements), which is a single 
+ * mutation on the replicas. A semaphore caps the number of requests in 
+ * flight, so memory use does not grow with the size of the file.
+ * 
+ * @author Tony Piazza
+ */
+@ManagedResource
+public class CsvLoader {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CsvLoader.class);
+	private static final int DEFAULT_MAX_REQUESTS_IN_FLIGHT = 128;
+	private static final int DEFAULT_MAX_BATCH_SIZE = 50;
+	private static final Map<String, Table> TABLES;
+
+	static {
+		// Columns are in the same order as the fields in each file
+		Map<String, Table> tables = new LinkedHashMap<String, Table>();
+		tables.put("industries", new Table("industries.csv", 
+			"INSERT INTO Industry (industry_id, industry_name, sector_id, sector_name) VALUES (?, ?, ?, ?)", 1));
+		tables.put("stocks", new Table("stocks.csv", 
+			"INSERT INTO Stock (stock_symbol, active, company_name, current_price, exchange_id, industry_id, industry_name, price_updated, sector_id, sector_name) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", 1));
+		tables.put("stocksearch", new Table("stocksearch.csv", 
+			"INSERT INTO StockSearch (industry_id, exchange_id, stock_symbol) VALUES (?, ?, ?)", 1));
+		tables.put("dailysummaries", new Table("dailysummaries.csv", 
+			"INSERT INTO DailySummary (stock_symbol, trade_date, price_close, price_high, price_low, price_open, share_volume) VALUES (?, ?, ?, ?, ?, ?, ?)", 1));
+		TABLES = Collections.unmodifiableMap(tables);
+	}
+
+	private volatile int maxRequestsInFlight = DEFAULT_MAX_REQUESTS_IN_FLIGHT;
+	private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+	private volatile Date lastExecution = new Date(0);
+	private volatile String lastTable;
+	private volatile long lastRowCount;
+	private volatile long lastFailureCount;
+	private volatile double lastRowsPerSecond;
+	private Session session;
+	private final Map<String, PreparedStatement> statements = 
+		new LinkedHashMap<String, PreparedStatement>();
+
+	@Autowired
+	private SessionFactory sessionFactory;
+
+	@Autowired
+	private CsvDataSource dataSource;
+
+	/**
+	 * Describes how the records in one file are written.
+	 */
+	private static class Table {
+		private final String fileName;
+		private final String insert;
+		private final int partitionKeyFields;
+
+		Table(String fileName, String insert, int partitionKeyFields) {
+			this.fileName = fileName;
+			this.insert = insert;
+			this.partitionKeyFields = partitionKeyFields;
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		session = sessionFactory.getSession();
+		for(Map.Entry<String, Table> entry : TABLES.entrySet()) {
+			statements.put(entry.getKey(), 
+				session.prepare(entry.getValue().insert));
+		}
+	}
+
+	@ManagedOperation(description="Loads industries, stocks, stocksearch and dailysummaries")
+	public void loadAll() {
+		for(String name : TABLES.keySet()) {
+			load(name);
+		}
+	}
+
+	@ManagedOperation(description="Loads one of industries, stocks, stocksearch or dailysummaries")
+	public synchronized void load(String name) {
+		Table table = TABLES.get(name);
+		if(table == null) {
+			throw new IllegalArgumentException("name must be one of " + 
+				TABLES.keySet());
+		}
+		PreparedStatement insert = statements.get(name);
+		LOGGER.info("Started loading {}", table.fileName);
+		long start = System.nanoTime();
+		LoadRun run = new LoadRun(maxRequestsInFlight);
+		int batchSize = maxBatchSize;
+		try {
+			CsvReader reader = dataSource.open(table.fileName);
+			try {
+				List<BoundStatement> batch = new ArrayList<BoundStatement>();
+				String[] partitionKey = null;
+				String[] record;
+				while((record = reader.readRecord()) != null) {
+					String[] key = Arrays.copyOf(record, table.partitionKeyFields);
+					if(!batch.isEmpty() && (batch.size() == batchSize || 
+						!Arrays.equals(key, partitionKey))) {
+						run.submit(batch);
+						batch = new ArrayList<BoundStatement>();
+					}
+					batch.add(bind(insert, record, reader.getRecordNumber()));
+					partitionKey = key;
+				}
+				if(!batch.isEmpty()) {
+					run.submit(batch);
+				}
+			} finally {
+				reader.close();
+			}
+		} catch(IOException e) {
+			throw new DAOException(e);
+		} finally {
+			run.awaitCompletion();
+		}
+		double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+		lastTable = name;
+		lastRowCount = run.rows.get();
+		lastFailureCount = run.failures.get();
+		lastRowsPerSecond = lastRowCount / seconds;
+		lastExecution = new Date();
+		if(lastFailureCount > 0) {
+			LOGGER.error("Unable to load {} rows from {}", lastFailureCount, 
+				table.fileName);
+		}
+		LOGGER.info("Finished loading {} rows from {} in {} ms ({} rows/sec)", 
+			lastRowCount, table.fileName, Math.round(seconds * 1000), 
+			Math.round(lastRowsPerSecond));
+	}
+
+	private static BoundStatement bind(PreparedStatement statement, 
+		String[] record, long recordNumber) {
+		ColumnDefinitions variables = statement.getVariables();
+		if(record.length != variables.size()) {
+			throw new DAOException("record " + recordNumber + " has " + 
+				record.length + " fields but " + variables.size() + 
+				" were expected");
+		}
+		Object[] values = new Object[record.length];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = parse(variables.getType(i), record[i]);
+		}
+		return statement.bind(values);
+	}
+
+	/**
+	 * Converts the text of a field to the Java type used for its column.
+	 */
+	private static Object parse(DataType type, String text) {
+		if(text.length() == 0 && type.getName() != DataType.Name.VARCHAR) {
+			return null;
+		}
+		switch(type.getName()) {
+		case INT:
+			return Integer.valueOf(text);
+		case BIGINT:
+			return Long.valueOf(text);
+		case BOOLEAN:
+			return Boolean.valueOf(text);
+		case DECIMAL:
+			return new BigDecimal(text);
+		case DOUBLE:
+			return Double.valueOf(text);
+		case FLOAT:
+			return Float.valueOf(text);
+		case TIMESTAMP:
+			return CsvDataSource.parseDate(text);
+		case UUID:
+		case TIMEUUID:
+			return UUID.fromString(text);
+		default:
+			return text;
+		}
+	}
+
+	@ManagedAttribute(description="Last time a file was loaded")
+	public Date getLastExecution() {
+		return lastExecution;
+	}
+
+	@ManagedAttribute(description="Name of the last file that was loaded")
+	public String getLastTable() {
+		return lastTable;
+	}
+
+	@ManagedAttribute(description="Number of rows written by the last load")
+	public long getLastRowCount() {
+		return lastRowCount;
+	}
+
+	@ManagedAttribute(description="Number of rows that failed during the last load")
+	public long getLastFailureCount() {
+		return lastFailureCount;
+	}
+
+	@ManagedAttribute(description="Rows written per second by the last load")
+	public double getLastRowsPerSecond() {
+		return lastRowsPerSecond;
+	}
+
+	@ManagedAttribute(description="Maximum number of write requests in flight")
+	public int getMaxRequestsInFlight() {
+		return maxRequestsInFlight;
+	}
+
+	@ManagedAttribute(description="Maximum number of write requests in flight")
+	public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+		if(maxRequestsInFlight < 1) {
+			throw new IllegalArgumentException("maxRequestsInFlight must be at least 1");
+		}
+		this.maxRequestsInFlight = maxRequestsInFlight;
+	}
+
+	@ManagedAttribute(description="Maximum number of rows in a batch for one partition")
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	@ManagedAttribute(description="Maximum number of rows in a batch for one partition")
+	public void setMaxBatchSize(int maxBatchSize) {
+		if(maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be at least 1");
+		}
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Tracks the state of a single load. Each request holds one permit until 
+	 * it completes, so the reader blocks once maxRequestsInFlight requests 
+	 * are outstanding.
+	 */
+	private class LoadRun {
+		private final int permitCount;
+		private final Semaphore permits;
+		private final AtomicLong rows = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+
+		LoadRun(int permitCount) {
+			this.permitCount = permitCount;
+			this.permits = new Semaphore(permitCount);
+		}
+
+		void submit(List<BoundStatement> batch) {
+			final int size = batch.size();
+			Statement statement;
+			if(size == 1) {
+				statement = batch.get(0);
+			} else {
+				BatchStatement bs = new BatchStatement(BatchStatement.Type.UNLOGGED);
+				for(BoundStatement bound : batch) {
+					bs.add(bound);
+				}
+				statement = bs;
+			}
+			permits.acquireUninterruptibly();
+			try {
+				Futures.addCallback(session.executeAsync(statement), 
+					new FutureCallback<ResultSet>() {
+					@Override
+					public void onSuccess(ResultSet resultSet) {
+						rows.addAndGet(size);
+						permits.release();
+					}
+
+					@Override
+					public void onFailure(Throwable t) {
+						fail(size, t);
+					}
+				});
+			} catch(RuntimeException e) {
+				fail(size, e);
+			}
+		}
+
+		private void fail(int size, Throwable t) {
+			LOGGER.error("Unable to write " + size + " rows", t);
+			failures.addAndGet(size);
+			permits.release();
+		}
+
+		/**
+		 * Blocks until every submitted request has completed, which is the 
+		 * case once all of the permits have been returned.
+		 */
+		void awaitCompletion() {
+			permits.acquireUninterruptibly(permitCount);
+			permits.release(permitCount);
+		}
+	}
+}
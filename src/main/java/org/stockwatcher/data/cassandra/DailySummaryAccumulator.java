@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.cassandra;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.stockwatcher.domain.Price;
+
+/**
+ * Running open/high/low/close/volume for the trades of a single stock on a 
+ * single trade date. Trades may be added in any order; the open and close 
+ * prices are taken from the earliest and latest trade timestamps seen. 
+ * Prices are fixed-point units (see Price), so adding a trade does not 
+ * allocate.
+ * 
+ * @author Tony Piazza
+ */
+public class DailySummaryAccumulator {
+	private final String symbol;
+	private final Date tradeDate;
+	private long open = Price.NONE;
+	private long high = Long.MIN_VALUE;
+	private long low = Long.MAX_VALUE;
+	private long close = Price.NONE;
+	private long openTimestamp = Long.MAX_VALUE;
+	private long closeTimestamp = Long.MIN_VALUE;
+	private int volume;
+	private boolean dirty;
+	private boolean seeding;
+	private boolean seeded;
+	private int writesInFlight;
+	private long lastWriteTimestamp;
+	private boolean closed;
+
+	public DailySummaryAccumulator(String symbol, Date tradeDate) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		if(tradeDate == null) {
+			throw new IllegalArgumentException("tradeDate is null");
+		}
+		this.symbol = symbol;
+		this.tradeDate = tradeDate;
+	}
+
+	/**
+	 * Adds a trade to this accumulator.
+	 * 
+	 * @return false if the accumulator has been closed and the trade was 
+	 * not added
+	 */
+	public synchronized boolean add(long timestamp, long sharePrice, 
+		int shareQuantity) {
+		if(closed) {
+			return false;
+		}
+		if(sharePrice > high) {
+			high = sharePrice;
+		}
+		if(sharePrice < low) {
+			low = sharePrice;
+		}
+		if(timestamp < openTimestamp) {
+			openTimestamp = timestamp;
+			open = sharePrice;
+		}
+		if(timestamp >= closeTimestamp) {
+			closeTimestamp = timestamp;
+			close = sharePrice;
+		}
+		volume += shareQuantity;
+		dirty = true;
+		return true;
+	}
+
+	/**
+	 * Returns true if the caller should read the previously written summary 
+	 * for this accumulator, which is the case until it has been seeded and 
+	 * while no other read is in progress.
+	 */
+	public synchronized boolean startSeeding() {
+		if(seeded || seeding) {
+			return false;
+		}
+		seeding = true;
+		return true;
+	}
+
+	/**
+	 * Allows the previously written summary to be read again after a read 
+	 * has failed.
+	 */
+	public synchronized void seedingFailed() {
+		seeding = false;
+	}
+
+	/**
+	 * Merges a previously written summary, which covers trades recorded 
+	 * before the ones added to this accumulator, into this accumulator. 
+	 * The existing open price is kept, and the existing close price is only 
+	 * kept if no trade has been added yet.
+	 */
+	public synchronized void seed(long open, long high, long low, long close, 
+		int volume) {
+		if(seeded) {
+			throw new IllegalStateException("accumulator has already been seeded");
+		}
+		this.open = open;
+		openTimestamp = Long.MIN_VALUE;
+		if(high > this.high) {
+			this.high = high;
+		}
+		if(low < this.low) {
+			this.low = low;
+		}
+		if(this.close == Price.NONE) {
+			this.close = close;
+			closeTimestamp = Long.MIN_VALUE;
+		}
+		this.volume += volume;
+		seeded();
+	}
+
+	/**
+	 * Marks this accumulator as seeded when there is no previously written 
+	 * summary.
+	 */
+	public synchronized void seeded() {
+		seeding = false;
+		seeded = true;
+	}
+
+	public synchronized boolean isSeeded() {
+		return seeded;
+	}
+
+	public String getSymbol() {
+		return symbol;
+	}
+
+	public Date getTradeDate() {
+		return tradeDate;
+	}
+
+	public synchronized long getOpen() {
+		return open;
+	}
+
+	public synchronized long getHigh() {
+		return high;
+	}
+
+	public synchronized long getLow() {
+		return low;
+	}
+
+	public synchronized long getClose() {
+		return close;
+	}
+
+	public synchronized int getVolume() {
+		return volume;
+	}
+
+	public synchronized boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Records that the current values are being written, which makes this 
+	 * accumulator clean until another trade is added.
+	 * 
+	 * @return write timestamp in microseconds, greater than the one returned 
+	 * for any earlier write so that the latest values win
+	 */
+	public synchronized long writeStarted() {
+		dirty = false;
+		writesInFlight++;
+		lastWriteTimestamp = Math.max(lastWriteTimestamp + 1, 
+			TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+		return lastWriteTimestamp;
+	}
+
+	/**
+	 * Records the outcome of a write; a failed write makes this accumulator 
+	 * dirty again so that it is retried.
+	 */
+	public synchronized void writeCompleted(boolean succeeded) {
+		writesInFlight--;
+		if(!succeeded) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Stops this accumulator from accepting trades if everything added to 
+	 * it has been written.
+	 * 
+	 * @return true if the accumulator is closed
+	 */
+	public synchronized boolean close() {
+		if(!closed && (dirty || writesInFlight > 0)) {
+			return false;
+		}
+		closed = true;
+		return true;
+	}
+}
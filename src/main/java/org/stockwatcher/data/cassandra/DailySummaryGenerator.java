@@ -17,12 +17,21 @@
  */
 package org.stockwatcher.data.cassandra;
 
-import java.math.BigDecimal;
+import static org.stockwatcher.data.cassandra.StockHelper.getPrice;
+import static org.stockwatcher.domain.Price.toBigDecimal;
+
+import java.math.BigInteger;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
 
@@ -35,26 +44,50 @@ import org.springframework.jmx.export.annotation.ManagedResource;
 
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 
 /**
  * Class that contains functionality for generating the daily stock summaries 
  * based on trade data for the most recent trade date. This class makes use of 
  * asynchronous query execution to spread the work across nodes in the cluster.
  * 
+ * Symbols are streamed from the Stock table one page at a time and each 
+ * symbol is handed to a chain of callbacks (select trades, aggregate, insert 
+ * summary). A semaphore caps the number of chains in flight, so the calling 
+ * thread blocks once that limit is reached and neither heap usage nor the 
+ * number of outstanding requests grows with the number of stocks.
+ * 
+ * When the parallelism is greater than one and the cluster uses the 
+ * Murmur3Partitioner, the token ring is split into slices (parallelism 
+ * slices per node) and each slice of the Stock table is scanned by its own 
+ * worker thread. The request cap applies across all of the workers.
+ * 
  * @author Tony Piazza
  */
 @ManagedResource
 public class DailySummaryGenerator {
 	private static final Logger LOGGER = LoggerFactory.getLogger(DailySummaryGenerator.class);
 	private static final DateFormat TRADE_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
-	private static final int BATCH_SIZE = 250;
+	private static final int DEFAULT_MAX_REQUESTS_IN_FLIGHT = 128;
+	private static final int FETCH_SIZE = 1000;
+	private static final String MURMUR3_PARTITIONER = "Murmur3Partitioner";
+	private static final BigInteger MIN_TOKEN = BigInteger.valueOf(Long.MIN_VALUE);
+	private static final BigInteger MAX_TOKEN = BigInteger.valueOf(Long.MAX_VALUE);
 
 	private Date lastExecution = new Date(0);
+	private volatile int maxRequestsInFlight = DEFAULT_MAX_REQUESTS_IN_FLIGHT;
+	private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+	private boolean tokenRangeScanSupported;
+	private volatile int lastSummaryCount;
+	private volatile int lastFailureCount;
 	private Session session;
 	private PreparedStatement selectActiveStockSymbols;
+	private PreparedStatement selectStockSymbolsByTokenRange;
 	private PreparedStatement selectTradesBySymbolAndDate;
 	private PreparedStatement insertDailySummary;
 	private PreparedStatement selectLastTradeDate;
@@ -66,97 +99,267 @@ public class DailySummaryGenerator {
 	public void init() {
 		session = sessionFactory.getSession();
 		selectActiveStockSymbols = session.prepare("SELECT stock_symbol FROM Stock WHERE active=true");
+		selectStockSymbolsByTokenRange = session.prepare("SELECT stock_symbol, active FROM Stock WHERE token(stock_symbol) > ? AND token(stock_symbol) <= ?");
 		selectTradesBySymbolAndDate = session.prepare("SELECT stock_symbol, trade_id, trade_date, trade_timestamp, exchange_id, share_price, share_quantity FROM Trade WHERE stock_symbol = ? AND trade_date = ?");
 		insertDailySummary = session.prepare("INSERT INTO DailySummary (stock_symbol, trade_date, price_open, price_close, price_high, price_low, share_volume) VALUES (?, ?, ?, ?, ?, ?, ?)");
 		selectLastTradeDate = session.prepare("SELECT property_value_timestamp FROM ApplicationProperty WHERE property_name='last_trade_date'");
+		String partitioner = session.execute("SELECT partitioner FROM system.local")
+			.one().getString("partitioner");
+		tokenRangeScanSupported = partitioner.endsWith(MURMUR3_PARTITIONER);
+		if(!tokenRangeScanSupported) {
+			LOGGER.warn("Parallel summary generation disabled for {}", partitioner);
+		}
 	}
 
 	@ManagedOperation(description="Generates daily summaries for all active stocks")
-	public void generateDailySummaries() {
+	public synchronized void generateDailySummaries() {
 		Date tradeDate = session.execute(selectLastTradeDate.bind())
 			.one().getDate("property_value_timestamp");
 
 		LOGGER.info("Started generating daily summaries for {}", 
 			TRADE_DATE_FORMAT.format(tradeDate));
 
-		List<ResultSetFuture> selectFutures = new ArrayList<ResultSetFuture>();
-		List<ResultSetFuture> insertFutures = new ArrayList<ResultSetFuture>();
-		int count = 0;
-		for(Row row : session.execute(selectActiveStockSymbols.bind())) {		
-			BoundStatement bs = selectTradesBySymbolAndDate.bind();
-			bs.setString("stock_symbol", row.getString("stock_symbol"));
-			bs.setDate("trade_date", tradeDate);
-			selectFutures.add(session.executeAsync(bs));
-			if(++count % BATCH_SIZE == 0) {
-				insertFutures.addAll(processTradesForSymbol(selectFutures));
+		SummaryRun run = new SummaryRun(tradeDate, maxRequestsInFlight);
+		int workers = parallelism;
+		if(workers > 1 && tokenRangeScanSupported) {
+			submitByTokenRange(run, workers);
+		} else {
+			BoundStatement bs = selectActiveStockSymbols.bind();
+			bs.setFetchSize(FETCH_SIZE);
+			for(Row row : session.execute(bs)) {
+				run.submit(row.getString("stock_symbol"));
 			}
 		}
-		// Process any remaining futures
-		insertFutures.addAll(processTradesForSymbol(selectFutures));
+		run.awaitCompletion();
 
-		// Confirm the inserts were successful
-		for(ResultSetFuture future : insertFutures) {
-			future.getUninterruptibly();
+		lastSummaryCount = run.summaries.get();
+		lastFailureCount = run.failures.get();
+		if(lastFailureCount > 0) {
+			LOGGER.error("Unable to generate {} daily summaries for {}", 
+				lastFailureCount, TRADE_DATE_FORMAT.format(tradeDate));
 		}
-
-		LOGGER.info("Finished generating daily summaries for {}", 
-			TRADE_DATE_FORMAT.format(tradeDate));
+		LOGGER.info("Finished generating {} daily summaries for {}", 
+			lastSummaryCount, TRADE_DATE_FORMAT.format(tradeDate));
 		lastExecution = new Date();
 	}
 
+	/**
+	 * Scans the Stock table one token range at a time on a pool of worker 
+	 * threads, submitting the active symbols found in each range.
+	 */
+	private void submitByTokenRange(final SummaryRun run, int workers) {
+		int sliceCount = workers * sessionFactory.getAllHosts().size();
+		List<Future<?>> futures = new ArrayList<Future<?>>(sliceCount);
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			BigInteger sliceSize = MAX_TOKEN.subtract(MIN_TOKEN)
+				.divide(BigInteger.valueOf(sliceCount));
+			for(int i = 0; i < sliceCount; i++) {
+				final long start = MIN_TOKEN.add(sliceSize.multiply(
+					BigInteger.valueOf(i))).longValue();
+				final long end = i == sliceCount - 1 ? Long.MAX_VALUE : 
+					MIN_TOKEN.add(sliceSize.multiply(BigInteger.valueOf(i + 1)))
+					.longValue();
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						submitTokenRange(run, start, end);
+					}
+				}));
+			}
+			for(Future<?> future : futures) {
+				try {
+					future.get();
+				} catch(ExecutionException e) {
+					LOGGER.error("Unable to scan token range", e.getCause());
+					run.failures.incrementAndGet();
+				}
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while generating daily summaries", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void submitTokenRange(SummaryRun run, long start, long end) {
+		LOGGER.debug("Scanning token range ({}, {}]", start, end);
+		BoundStatement bs = selectStockSymbolsByTokenRange.bind();
+		bs.setLong(0, start);
+		bs.setLong(1, end);
+		bs.setFetchSize(FETCH_SIZE);
+		for(Row row : session.execute(bs)) {
+			if(row.getBool("active")) {
+				run.submit(row.getString("stock_symbol"));
+			}
+		}
+	}
+
 	@ManagedAttribute(description="Last time this task was executed")
 	public Date getLastExecution() {
 		return lastExecution;
 	}
 
-	private List<ResultSetFuture> processTradesForSymbol(List<ResultSetFuture> selectFutures) {
-		List<ResultSetFuture> insertFutures = new ArrayList<ResultSetFuture>();
-		for(ResultSetFuture future : selectFutures) {
-			String symbol = null;
-			Date tradeDate = null;
-			BigDecimal open = BigDecimal.ZERO;
-			BigDecimal high = BigDecimal.ZERO;
-			BigDecimal low = BigDecimal.valueOf(Long.MAX_VALUE);
-			BigDecimal close = BigDecimal.ZERO;
-			BigDecimal sharePrice = null;
-			int volume = 0;
-			for(Row row : future.getUninterruptibly()) {
-				if(symbol == null) {
-					symbol = row.getString("stock_symbol");
-					tradeDate = row.getDate("trade_date");
-					open = row.getDecimal("share_price");
-					LOGGER.debug("Processing trades for symbol {} on {}", 
-						symbol, tradeDate);
+	@ManagedAttribute(description="Number of summaries written by the last execution")
+	public int getLastSummaryCount() {
+		return lastSummaryCount;
+	}
+
+	@ManagedAttribute(description="Number of symbols that failed during the last execution")
+	public int getLastFailureCount() {
+		return lastFailureCount;
+	}
+
+	@ManagedAttribute(description="Maximum number of symbols being processed concurrently")
+	public int getMaxRequestsInFlight() {
+		return maxRequestsInFlight;
+	}
+
+	@ManagedAttribute(description="Maximum number of symbols being processed concurrently")
+	public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+		if(maxRequestsInFlight < 1) {
+			throw new IllegalArgumentException("maxRequestsInFlight must be at least 1");
+		}
+		this.maxRequestsInFlight = maxRequestsInFlight;
+	}
+
+	@ManagedAttribute(description="Number of worker threads scanning token ranges (1 = serial)")
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	@ManagedAttribute(description="Number of worker threads scanning token ranges (1 = serial)")
+	public void setParallelism(int parallelism) {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Tracks the state of a single execution. Each submitted symbol holds one 
+	 * permit from the time its trades are requested until its summary has 
+	 * been written (or it fails), so at most one request per permit is ever 
+	 * outstanding.
+	 */
+	private class SummaryRun {
+		private final Date tradeDate;
+		private final int permitCount;
+		private final Semaphore permits;
+		private final AtomicInteger summaries = new AtomicInteger();
+		private final AtomicInteger failures = new AtomicInteger();
+
+		SummaryRun(Date tradeDate, int permitCount) {
+			this.tradeDate = tradeDate;
+			this.permitCount = permitCount;
+			this.permits = new Semaphore(permitCount);
+		}
+
+		void submit(String symbol) {
+			permits.acquireUninterruptibly();
+			try {
+				BoundStatement bs = selectTradesBySymbolAndDate.bind();
+				bs.setString("stock_symbol", symbol);
+				bs.setDate("trade_date", tradeDate);
+				bs.setFetchSize(FETCH_SIZE);
+				LOGGER.debug("Processing trades for symbol {} on {}", symbol, 
+					tradeDate);
+				consume(symbol, session.executeAsync(bs), 
+					new DailySummaryAccumulator(symbol, tradeDate));
+			} catch(RuntimeException e) {
+				fail(symbol, e);
+			}
+		}
+
+		/**
+		 * Folds the rows that are already available into the summary, then 
+		 * either requests the next page or writes the summary. Never blocks, 
+		 * so it is safe to run on the driver's I/O threads.
+		 */
+		private void consume(final String symbol, ResultSetFuture future, 
+			final DailySummaryAccumulator summary) {
+			Futures.addCallback(future, new FutureCallback<ResultSet>() {
+				@Override
+				public void onSuccess(ResultSet resultSet) {
+					process(symbol, resultSet, summary);
 				}
-				sharePrice = row.getDecimal("share_price");
-				if(sharePrice.compareTo(high) > 0) {
-					high = sharePrice;
+
+				@Override
+				public void onFailure(Throwable t) {
+					fail(symbol, t);
+				}
+			});
+		}
+
+		private void process(final String symbol, final ResultSet resultSet, 
+			final DailySummaryAccumulator summary) {
+			try {
+				for(int i = resultSet.getAvailableWithoutFetching(); i > 0; i--) {
+					Row row = resultSet.one();
+					summary.add(row.getDate("trade_timestamp").getTime(), 
+						getPrice(row, "share_price"), row.getInt("share_quantity"));
 				}
-				if(sharePrice.compareTo(low) < 0) {
-					low = sharePrice;
+				if(!resultSet.isFullyFetched()) {
+					Futures.addCallback(resultSet.fetchMoreResults(), 
+						new FutureCallback<Void>() {
+						@Override
+						public void onSuccess(Void result) {
+							process(symbol, resultSet, summary);
+						}
+
+						@Override
+						public void onFailure(Throwable t) {
+							fail(symbol, t);
+						}
+					});
+				} else if(summary.getVolume() > 0) {
+					insert(symbol, summary);
+				} else {
+					permits.release();
 				}
-				close = sharePrice;
-				volume += row.getInt("share_quantity");				
-			}
-			if(volume > 0) {
-				insertFutures.add(insert(symbol, tradeDate, open, high, low, close, volume));
+			} catch(RuntimeException e) {
+				fail(symbol, e);
 			}
 		}
-		selectFutures.clear();
-		return insertFutures;
-	}
 
-	private ResultSetFuture insert(String symbol, Date tradeDate, 
-		BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close, 
-		int volume) {
-		BoundStatement bs = insertDailySummary.bind();
-		bs.setString("stock_symbol", symbol);
-		bs.setDate("trade_date", tradeDate);
-		bs.setDecimal("price_open", open);
-		bs.setDecimal("price_high", high);
-		bs.setDecimal("price_low", low);
-		bs.setDecimal("price_close", close);
-		bs.setInt("share_volume", volume);
-		return session.executeAsync(bs);
+		private void insert(final String symbol, DailySummaryAccumulator summary) {
+			BoundStatement bs = insertDailySummary.bind();
+			bs.setString("stock_symbol", symbol);
+			bs.setDate("trade_date", tradeDate);
+			bs.setDecimal("price_open", toBigDecimal(summary.getOpen()));
+			bs.setDecimal("price_high", toBigDecimal(summary.getHigh()));
+			bs.setDecimal("price_low", toBigDecimal(summary.getLow()));
+			bs.setDecimal("price_close", toBigDecimal(summary.getClose()));
+			bs.setInt("share_volume", summary.getVolume());
+			ResultSetFuture future = session.executeAsync(bs);
+			Futures.addCallback(future, new FutureCallback<ResultSet>() {
+				@Override
+				public void onSuccess(ResultSet resultSet) {
+					summaries.incrementAndGet();
+					permits.release();
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					fail(symbol, t);
+				}
+			});
+		}
+
+		private void fail(String symbol, Throwable t) {
+			LOGGER.error("Unable to generate daily summary for " + symbol, t);
+			failures.incrementAndGet();
+			permits.release();
+		}
+
+		/**
+		 * Blocks until every submitted symbol has completed, which is the 
+		 * case once all of the permits have been returned.
+		 */
+		void awaitCompletion() {
+			permits.acquireUninterruptibly(permitCount);
+			permits.release(permitCount);
+		}
 	}
 }
\ No newline at end of file
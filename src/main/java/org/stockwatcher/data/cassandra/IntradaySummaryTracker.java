@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.cassandra;
+
+import static org.stockwatcher.data.cassandra.StockHelper.getPrice;
+import static org.stockwatcher.domain.Price.toBigDecimal;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.stockwatcher.data.TradeListener;
+import org.stockwatcher.domain.Trade;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Class that maintains the daily summary for the current trade date as 
+ * trades are recorded, instead of recomputing it from the Trade table at the 
+ * end of the day. A running accumulator is kept per stock symbol and the 
+ * summaries that changed since the last flush are written periodically.
+ * 
+ * The first time a symbol is seen for a trade date, any summary that has 
+ * already been written for it is read back so that restarting the 
+ * application does not lose the trades recorded earlier in the day. The 
+ * read is asynchronous; trades are accumulated while it is in progress and 
+ * the summary is not written until the read has succeeded, so a failed read 
+ * is retried on the next flush instead of losing trades.
+ * 
+ * When a symbol moves on to a new trade date, the accumulator for the 
+ * previous date is kept and flushed until everything added to it has been 
+ * written, since a trade may still be added to it by a thread that fetched 
+ * it before it was replaced.
+ * 
+ * Each write replaces the whole summary row with what this process has 
+ * accumulated, so only one application instance may record trades with the 
+ * tracker enabled; set enabled to false on the others. Writes are 
+ * timestamped so that an earlier write of an accumulator that completes 
+ * late cannot replace a later one.
+ * 
+ * @author Tony Piazza
+ */
+@ManagedResource
+public class IntradaySummaryTracker implements TradeListener {
+	private static final Logger LOGGER = LoggerFactory.getLogger(IntradaySummaryTracker.class);
+	private static final int MAX_REQUESTS_IN_FLIGHT = 64;
+
+	private final ConcurrentMap<String, DailySummaryAccumulator> accumulators = 
+		new ConcurrentHashMap<String, DailySummaryAccumulator>();
+	private final Set<DailySummaryAccumulator> retired = 
+		Collections.newSetFromMap(
+			new ConcurrentHashMap<DailySummaryAccumulator, Boolean>());
+	private final Semaphore permits = new Semaphore(MAX_REQUESTS_IN_FLIGHT);
+	private final AtomicLong tradeCount = new AtomicLong();
+	private final AtomicLong flushCount = new AtomicLong();
+	private final AtomicLong failureCount = new AtomicLong();
+	private volatile boolean enabled = true;
+	private volatile Date lastFlush = new Date(0);
+	private Session session;
+	private PreparedStatement selectDailySummary;
+	private PreparedStatement insertDailySummary;
+
+	@Autowired
+	private SessionFactory sessionFactory;
+
+	@PostConstruct
+	public void init() {
+		session = sessionFactory.getSession();
+		selectDailySummary = session.prepare("SELECT price_open, price_close, price_high, price_low, share_volume FROM DailySummary WHERE stock_symbol = ? AND trade_date = ?");
+		insertDailySummary = session.prepare("INSERT INTO DailySummary (stock_symbol, trade_date, price_open, price_close, price_high, price_low, share_volume) VALUES (?, ?, ?, ?, ?, ?, ?) USING TIMESTAMP ?");
+	}
+
+	@Override
+	public void tradeInserted(Trade trade) {
+		if(!enabled) {
+			return;
+		}
+		Date tradeDate = trade.getTradeDate();
+		DailySummaryAccumulator accumulator = 
+			getAccumulator(trade.getStockSymbol(), tradeDate);
+		if(accumulator.getTradeDate().equals(tradeDate) && 
+			accumulator.add(trade.getTimestamp().getTime(), 
+				trade.getSharePriceUnits(), trade.getShareQuantity())) {
+			tradeCount.incrementAndGet();
+		} else {
+			// Late trade for a previous day, generateDailySummaries covers it
+			LOGGER.debug("Ignoring trade {} for previous trade date", 
+				trade.getId());
+		}
+	}
+
+	private DailySummaryAccumulator getAccumulator(String symbol, Date tradeDate) {
+		DailySummaryAccumulator accumulator = accumulators.get(symbol);
+		while(accumulator == null || 
+			accumulator.getTradeDate().before(tradeDate)) {
+			DailySummaryAccumulator created = 
+				createAccumulator(symbol, tradeDate);
+			boolean replaced = accumulator == null ? 
+				accumulators.putIfAbsent(symbol, created) == null : 
+				accumulators.replace(symbol, accumulator, created);
+			if(replaced) {
+				if(accumulator != null) {
+					// Make sure the last changes for the previous day are written
+					retired.add(accumulator);
+					write(accumulator);
+				}
+				return created;
+			}
+			accumulator = accumulators.get(symbol);
+		}
+		return accumulator;
+	}
+
+	private DailySummaryAccumulator createAccumulator(String symbol, 
+		Date tradeDate) {
+		DailySummaryAccumulator accumulator = 
+			new DailySummaryAccumulator(symbol, tradeDate);
+		seed(accumulator);
+		return accumulator;
+	}
+
+	/**
+	 * Reads the summary that has already been written for the accumulator's 
+	 * symbol and trade date, if it has not been read yet.
+	 */
+	private void seed(final DailySummaryAccumulator accumulator) {
+		if(!accumulator.startSeeding()) {
+			return;
+		}
+		BoundStatement bs = selectDailySummary.bind();
+		bs.setString("stock_symbol", accumulator.getSymbol());
+		bs.setDate("trade_date", accumulator.getTradeDate());
+		try {
+			Futures.addCallback(session.executeAsync(bs), 
+				new FutureCallback<ResultSet>() {
+				@Override
+				public void onSuccess(ResultSet result) {
+					Row row = result.one();
+					if(row == null) {
+						accumulator.seeded();
+					} else {
+						accumulator.seed(getPrice(row, "price_open"), 
+							getPrice(row, "price_high"), getPrice(row, "price_low"), 
+							getPrice(row, "price_close"), row.getInt("share_volume"));
+					}
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					seedFailed(accumulator, t);
+				}
+			});
+		} catch(RuntimeException e) {
+			seedFailed(accumulator, e);
+		}
+	}
+
+	private void seedFailed(DailySummaryAccumulator accumulator, Throwable t) {
+		LOGGER.error("Unable to read daily summary for " + 
+			accumulator.getSymbol(), t);
+		// Try again on the next flush
+		accumulator.seedingFailed();
+		failureCount.incrementAndGet();
+	}
+
+	@ManagedOperation(description="Writes all summaries that changed since the last flush")
+	public void flush() {
+		for(DailySummaryAccumulator accumulator : accumulators.values()) {
+			write(accumulator);
+		}
+		for(DailySummaryAccumulator accumulator : retired) {
+			write(accumulator);
+			if(accumulator.close()) {
+				retired.remove(accumulator);
+			}
+		}
+		lastFlush = new Date();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flush();
+		// Wait for the outstanding writes to complete
+		permits.acquireUninterruptibly(MAX_REQUESTS_IN_FLIGHT);
+		permits.release(MAX_REQUESTS_IN_FLIGHT);
+	}
+
+	private void write(final DailySummaryAccumulator accumulator) {
+		if(!accumulator.isSeeded()) {
+			// Writing now would replace the trades recorded earlier
+			seed(accumulator);
+			return;
+		}
+		BoundStatement bs = insertDailySummary.bind();
+		synchronized(accumulator) {
+			if(!accumulator.isDirty()) {
+				return;
+			}
+			bs.setString("stock_symbol", accumulator.getSymbol());
+			bs.setDate("trade_date", accumulator.getTradeDate());
+			bs.setDecimal("price_open", toBigDecimal(accumulator.getOpen()));
+			bs.setDecimal("price_high", toBigDecimal(accumulator.getHigh()));
+			bs.setDecimal("price_low", toBigDecimal(accumulator.getLow()));
+			bs.setDecimal("price_close", toBigDecimal(accumulator.getClose()));
+			bs.setInt("share_volume", accumulator.getVolume());
+			// The USING TIMESTAMP value is the last bind variable
+			bs.setLong(7, accumulator.writeStarted());
+		}
+		permits.acquireUninterruptibly();
+		try {
+			Futures.addCallback(session.executeAsync(bs), 
+				new FutureCallback<ResultSet>() {
+				@Override
+				public void onSuccess(ResultSet result) {
+					accumulator.writeCompleted(true);
+					flushCount.incrementAndGet();
+					permits.release();
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					fail(accumulator, t);
+				}
+			});
+		} catch(RuntimeException e) {
+			fail(accumulator, e);
+		}
+	}
+
+	private void fail(DailySummaryAccumulator accumulator, Throwable t) {
+		LOGGER.error("Unable to write daily summary for " + 
+			accumulator.getSymbol(), t);
+		// Try again on the next flush
+		accumulator.writeCompleted(false);
+		failureCount.incrementAndGet();
+		permits.release();
+	}
+
+	@ManagedAttribute(description="Whether trades are being accumulated")
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@ManagedAttribute(description="Whether trades are being accumulated")
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@ManagedAttribute(description="Number of symbols being tracked")
+	public int getSymbolCount() {
+		return accumulators.size();
+	}
+
+	@ManagedAttribute(description="Number of summaries for previous trade dates waiting to be written")
+	public int getRetiredCount() {
+		return retired.size();
+	}
+
+	@ManagedAttribute(description="Number of trades accumulated")
+	public long getTradeCount() {
+		return tradeCount.get();
+	}
+
+	@ManagedAttribute(description="Number of summaries written")
+	public long getFlushCount() {
+		return flushCount.get();
+	}
+
+	@ManagedAttribute(description="Number of summary reads and writes that failed")
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	@ManagedAttribute(description="Last time the summaries were flushed")
+	public Date getLastFlush() {
+		return lastFlush;
+	}
+}
@@ -17,9 +17,23 @@
  */
 package org.stockwatcher.data.cassandra;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -27,28 +41,83 @@ import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Component;
 
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.Cluster.Builder;
 import com.datastax.driver.core.Host;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.ProtocolOptions.Compression;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SocketOptions;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.RoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 /**
  * Factory class that creates instances of the Session class. class requires an
  * existing keyspace and at least one node to access the cluster. 
+ * 
+ * The connection pool, load balancing, compression and socket options of 
+ * the cluster can be set before startup and are readable over JMX. Queries 
+ * are routed to a replica of the partition they read (token aware) in the 
+ * local data center when one is set (DC aware), round robin otherwise.
+ * 
+ * The driver has no speculative execution, so executeSpeculatively sends an 
+ * idempotent statement again when it has not completed within 
+ * speculativeExecutionDelayMillis, up to maxSpeculativeExecutions times, 
+ * and completes with whichever response arrives first. This trims the tail 
+ * latency caused by a single slow replica, at the cost of extra requests. 
+ * Each speculative execution starts further along the query plan than the 
+ * one before it, so it goes to another replica than the first execution.
  *  
  * @author Tony Piazza
  */
 @Component
+@Profile("cassandra")
+@ManagedResource
 public class SessionFactory {
 	private static final Logger LOGGER = LoggerFactory.getLogger(SessionFactory.class);
 	private static final long SHUTDOWN_TIMEOUT = 10;
 
 	private String[] nodes;
 	private String keyspace;
+	private String localDataCenter;
+	private int usedHostsPerRemoteDataCenter;
+	private boolean tokenAware = true;
+	private int coreConnectionsPerHost = 2;
+	private int maxConnectionsPerHost = 8;
+	private int maxRequestsPerConnection = 100;
+	private Compression compression = Compression.NONE;
+	private int connectTimeoutMillis = SocketOptions.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+	private int readTimeoutMillis = SocketOptions.DEFAULT_READ_TIMEOUT_MILLIS;
+	private boolean tcpNoDelay = true;
+	private boolean keepAlive = true;
+	private long speculativeExecutionDelayMillis;
+	private int maxSpeculativeExecutions = 1;
 	private Cluster cluster;
 	private Session session;
+	private ScheduledExecutorService timer;
+	private int resultThreads = 8;
+	private ExecutorService resultExecutor;
+	private final AtomicLong speculativeExecutionCount = new AtomicLong();
+	private final AtomicLong speculativeWinCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
 
 	@Required
 	public void setNodes(String[] nodes) {
@@ -60,24 +129,164 @@ public class SessionFactory {
 		this.keyspace = keyspace;
 	}
 
+	public void setLocalDataCenter(String localDataCenter) {
+		this.localDataCenter = localDataCenter;
+	}
+
+	public void setUsedHostsPerRemoteDataCenter(int usedHostsPerRemoteDataCenter) {
+		if(usedHostsPerRemoteDataCenter < 0) {
+			throw new IllegalArgumentException("usedHostsPerRemoteDataCenter is less than 0");
+		}
+		this.usedHostsPerRemoteDataCenter = usedHostsPerRemoteDataCenter;
+	}
+
+	public void setTokenAware(boolean tokenAware) {
+		this.tokenAware = tokenAware;
+	}
+
+	public void setCoreConnectionsPerHost(int coreConnectionsPerHost) {
+		if(coreConnectionsPerHost < 1) {
+			throw new IllegalArgumentException("coreConnectionsPerHost is less than 1");
+		}
+		this.coreConnectionsPerHost = coreConnectionsPerHost;
+	}
+
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		if(maxConnectionsPerHost < 1) {
+			throw new IllegalArgumentException("maxConnectionsPerHost is less than 1");
+		}
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	/**
+	 * Sets the number of simultaneous requests on a connection above which 
+	 * another connection is opened, up to maxConnectionsPerHost. The native 
+	 * protocol allows at most 128.
+	 */
+	public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+		if(maxRequestsPerConnection < 1 || maxRequestsPerConnection > 128) {
+			throw new IllegalArgumentException("maxRequestsPerConnection is not between 1 and 128");
+		}
+		this.maxRequestsPerConnection = maxRequestsPerConnection;
+	}
+
+	/**
+	 * Sets the compression used for the native protocol. SNAPPY and LZ4 
+	 * need snappy-java or lz4 on the classpath.
+	 */
+	public void setCompression(Compression compression) {
+		if(compression == null) {
+			throw new IllegalArgumentException("compression is null");
+		}
+		this.compression = compression;
+	}
+
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		if(connectTimeoutMillis < 1) {
+			throw new IllegalArgumentException("connectTimeoutMillis is less than 1");
+		}
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public void setReadTimeoutMillis(int readTimeoutMillis) {
+		if(readTimeoutMillis < 1) {
+			throw new IllegalArgumentException("readTimeoutMillis is less than 1");
+		}
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	public void setTcpNoDelay(boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	/**
+	 * Sets how long an idempotent statement may go without a response 
+	 * before it is sent again. Zero, the default, disables speculative 
+	 * execution.
+	 */
+	public void setSpeculativeExecutionDelayMillis(long speculativeExecutionDelayMillis) {
+		if(speculativeExecutionDelayMillis < 0) {
+			throw new IllegalArgumentException("speculativeExecutionDelayMillis is less than 0");
+		}
+		this.speculativeExecutionDelayMillis = speculativeExecutionDelayMillis;
+	}
+
+	public void setMaxSpeculativeExecutions(int maxSpeculativeExecutions) {
+		if(maxSpeculativeExecutions < 1) {
+			throw new IllegalArgumentException("maxSpeculativeExecutions is less than 1");
+		}
+		this.maxSpeculativeExecutions = maxSpeculativeExecutions;
+	}
+
+	/**
+	 * Sets the number of threads that process result sets. Reading past the 
+	 * first page of a result set blocks, so it must not happen on a driver 
+	 * I/O thread, which is where future callbacks run by default.
+	 */
+	public void setResultThreads(int resultThreads) {
+		if(resultThreads < 1) {
+			throw new IllegalArgumentException("resultThreads is less than 1");
+		}
+		this.resultThreads = resultThreads;
+	}
+
 	@PostConstruct
 	public void startup() {
 		if(cluster == null) {
 			if(nodes == null || nodes.length == 0) {
 				throw new IllegalStateException("no nodes specified");
 			}
+			if(coreConnectionsPerHost > maxConnectionsPerHost) {
+				throw new IllegalStateException("coreConnectionsPerHost is greater than maxConnectionsPerHost");
+			}
 			Builder builder = Cluster.builder();
 			builder.addContactPoints(nodes);
+			builder.withLoadBalancingPolicy(createLoadBalancingPolicy());
+			// Remote hosts are only a fallback and keep the driver defaults
+			builder.withPoolingOptions(new PoolingOptions()
+				.setCoreConnectionsPerHost(HostDistance.LOCAL, coreConnectionsPerHost)
+				.setMaxConnectionsPerHost(HostDistance.LOCAL, maxConnectionsPerHost)
+				.setMaxSimultaneousRequestsPerConnectionThreshold(
+					HostDistance.LOCAL, maxRequestsPerConnection));
+			builder.withSocketOptions(new SocketOptions()
+				.setConnectTimeoutMillis(connectTimeoutMillis)
+				.setReadTimeoutMillis(readTimeoutMillis)
+				.setTcpNoDelay(tcpNoDelay)
+				.setKeepAlive(keepAlive));
+			builder.withCompression(compression);
 			cluster = builder.build();
 			session = cluster.connect(keyspace);
 			for(Host host : getAllHosts()) {
 				LOGGER.info("Cluster node: {}", host);
 			}
+			timer = Executors.newSingleThreadScheduledExecutor();
+			resultExecutor = Executors.newFixedThreadPool(resultThreads);
 		}
 	}
 
+	private LoadBalancingPolicy createLoadBalancingPolicy() {
+		LoadBalancingPolicy policy = localDataCenter == null ? 
+			new RoundRobinPolicy() : new DCAwareRoundRobinPolicy(
+				localDataCenter, usedHostsPerRemoteDataCenter);
+		if(tokenAware) {
+			policy = new TokenAwarePolicy(policy);
+		}
+		return speculativeExecutionDelayMillis > 0 ? 
+			new SpeculativeRoutingPolicy(policy) : policy;
+	}
+
 	@PreDestroy
 	public void shutdown() {
+		if(timer != null) {
+			timer.shutdownNow();
+		}
+		if(resultExecutor != null) {
+			resultExecutor.shutdown();
+		}
 		if(cluster != null) {
 			try {
 				// Close asynchronously, then get with our timeout value
@@ -89,6 +298,184 @@ public class SessionFactory {
 		}
 	}
 
+	/**
+	 * Executes a statement that is safe to send more than once, such as a 
+	 * read, sending it again each time speculativeExecutionDelayMillis 
+	 * passes without a response, up to maxSpeculativeExecutions times. The 
+	 * future completes with the first response; it only fails when every 
+	 * execution that was sent has failed. Statements are simply executed 
+	 * when speculative execution is disabled.
+	 */
+	public ListenableFuture<ResultSet> executeSpeculatively(final Statement statement) {
+		if(speculativeExecutionDelayMillis == 0) {
+			return session.executeAsync(statement);
+		}
+		final SettableFuture<ResultSet> result = SettableFuture.create();
+		final List<Future<?>> executions = new CopyOnWriteArrayList<Future<?>>();
+		final AtomicInteger pending = new AtomicInteger(1);
+		execute(statement, 0, result, executions, pending);
+		for(int i = 1; i <= maxSpeculativeExecutions; i++) {
+			final int attempt = i;
+			executions.add(timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if(!result.isDone()) {
+						pending.incrementAndGet();
+						speculativeExecutionCount.incrementAndGet();
+						execute(statement, attempt, result, executions, pending);
+					}
+				}
+			}, speculativeExecutionDelayMillis * i, MILLISECONDS));
+		}
+		// Stop whatever is still running or scheduled once there is an answer
+		result.addListener(new Runnable() {
+			@Override
+			public void run() {
+				for(Future<?> execution : executions) {
+					execution.cancel(true);
+				}
+			}
+		}, MoreExecutors.sameThreadExecutor());
+		return result;
+	}
+
+	/**
+	 * Returns a future that fails with a DriverException when the specified 
+	 * future has not completed within timeoutMillis. The specified future 
+	 * is cancelled when that happens.
+	 */
+	public <T> ListenableFuture<T> withTimeout(final ListenableFuture<T> future, 
+		final long timeoutMillis) {
+		if(timeoutMillis < 1) {
+			throw new IllegalArgumentException("timeoutMillis is less than 1");
+		}
+		final SettableFuture<T> result = SettableFuture.create();
+		Futures.addCallback(future, new FutureCallback<T>() {
+			@Override
+			public void onSuccess(T value) {
+				result.set(value);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				result.setException(t);
+			}
+		});
+		final ScheduledFuture<?> timeout = timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if(result.setException(new DriverException(
+					"no response received within " + timeoutMillis + " ms"))) {
+					timeoutCount.incrementAndGet();
+					future.cancel(true);
+				}
+			}
+		}, timeoutMillis, MILLISECONDS);
+		result.addListener(new Runnable() {
+			@Override
+			public void run() {
+				timeout.cancel(false);
+			}
+		}, MoreExecutors.sameThreadExecutor());
+		return result;
+	}
+
+	private void execute(Statement statement, final int attempt, 
+		final SettableFuture<ResultSet> result, 
+		List<Future<?>> executions, final AtomicInteger pending) {
+		ResultSetFuture execution;
+		SpeculativeRoutingPolicy.ATTEMPT.set(attempt);
+		try {
+			execution = session.executeAsync(statement);
+		} finally {
+			SpeculativeRoutingPolicy.ATTEMPT.remove();
+		}
+		executions.add(execution);
+		// The result may have been set after the caller checked, in which 
+		// case the listener that cancels the executions has already run
+		if(result.isDone()) {
+			execution.cancel(true);
+			return;
+		}
+		Futures.addCallback(execution, new FutureCallback<ResultSet>() {
+			@Override
+			public void onSuccess(ResultSet resultSet) {
+				if(result.set(resultSet) && attempt > 0) {
+					speculativeWinCount.incrementAndGet();
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				if(pending.decrementAndGet() == 0) {
+					result.setException(t);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Load balancing policy that starts the query plan of the nth 
+	 * speculative execution n hosts further along the plan of its child. 
+	 * TokenAwarePolicy lists the replicas of a partition in the same order 
+	 * every time, so otherwise each execution would go to the replica that 
+	 * has not answered the first one. The driver builds the query plan 
+	 * before executeAsync returns, so the attempt is passed in a ThreadLocal.
+	 */
+	private static class SpeculativeRoutingPolicy implements LoadBalancingPolicy {
+		static final ThreadLocal<Integer> ATTEMPT = new ThreadLocal<Integer>();
+
+		private final LoadBalancingPolicy child;
+
+		SpeculativeRoutingPolicy(LoadBalancingPolicy child) {
+			this.child = child;
+		}
+
+		@Override
+		public void init(Cluster cluster, Collection<Host> hosts) {
+			child.init(cluster, hosts);
+		}
+
+		@Override
+		public HostDistance distance(Host host) {
+			return child.distance(host);
+		}
+
+		@Override
+		public Iterator<Host> newQueryPlan(String keyspace, Statement statement) {
+			Iterator<Host> plan = child.newQueryPlan(keyspace, statement);
+			Integer attempt = ATTEMPT.get();
+			if(attempt == null || attempt == 0) {
+				return plan;
+			}
+			List<Host> hosts = Lists.newArrayList(plan);
+			if(!hosts.isEmpty()) {
+				Collections.rotate(hosts, -(attempt % hosts.size()));
+			}
+			return hosts.iterator();
+		}
+
+		@Override
+		public void onAdd(Host host) {
+			child.onAdd(host);
+		}
+
+		@Override
+		public void onUp(Host host) {
+			child.onUp(host);
+		}
+
+		@Override
+		public void onDown(Host host) {
+			child.onDown(host);
+		}
+
+		@Override
+		public void onRemove(Host host) {
+			child.onRemove(host);
+		}
+	}
+
 	public String getKeyspace() {
 		return keyspace;
 	}
@@ -100,4 +487,102 @@ public class SessionFactory {
 	public Session getSession() {
 		return session;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns the executor that result sets should be processed on, rather 
+	 * than the driver I/O thread that completed their future.
+	 */
+	public Executor getResultExecutor() {
+		return resultExecutor;
+	}
+
+	@ManagedAttribute(description="Number of threads that process result sets")
+	public int getResultThreads() {
+		return resultThreads;
+	}
+
+	@ManagedAttribute(description="Data center treated as local, or none for round robin")
+	public String getLocalDataCenter() {
+		return localDataCenter;
+	}
+
+	@ManagedAttribute(description="Number of hosts used in each remote data center")
+	public int getUsedHostsPerRemoteDataCenter() {
+		return usedHostsPerRemoteDataCenter;
+	}
+
+	@ManagedAttribute(description="Whether statements are routed to a replica of their partition")
+	public boolean isTokenAware() {
+		return tokenAware;
+	}
+
+	@ManagedAttribute(description="Number of connections kept open to each local host")
+	public int getCoreConnectionsPerHost() {
+		return coreConnectionsPerHost;
+	}
+
+	@ManagedAttribute(description="Maximum number of connections to each local host")
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	@ManagedAttribute(description="Requests in flight on a connection before another is opened")
+	public int getMaxRequestsPerConnection() {
+		return maxRequestsPerConnection;
+	}
+
+	@ManagedAttribute(description="Compression used by the native protocol")
+	public String getCompression() {
+		return compression.name();
+	}
+
+	@ManagedAttribute(description="Milliseconds to wait for a connection to a host")
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	@ManagedAttribute(description="Milliseconds to wait for a host to respond")
+	public int getReadTimeoutMillis() {
+		return readTimeoutMillis;
+	}
+
+	@ManagedAttribute(description="Whether Nagle's algorithm is disabled on connections")
+	public boolean isTcpNoDelay() {
+		return tcpNoDelay;
+	}
+
+	@ManagedAttribute(description="Whether TCP keep-alive is enabled on connections")
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+	@ManagedAttribute(description="Milliseconds before a read is sent to another replica, 0 to disable")
+	public long getSpeculativeExecutionDelayMillis() {
+		return speculativeExecutionDelayMillis;
+	}
+
+	@ManagedAttribute(description="Maximum number of extra executions for one statement")
+	public int getMaxSpeculativeExecutions() {
+		return maxSpeculativeExecutions;
+	}
+
+	@ManagedAttribute(description="Number of speculative executions sent")
+	public long getSpeculativeExecutionCount() {
+		return speculativeExecutionCount.get();
+	}
+
+	@ManagedAttribute(description="Number of speculative executions that answered first")
+	public long getSpeculativeWinCount() {
+		return speculativeWinCount.get();
+	}
+
+	@ManagedAttribute(description="Number of statements that timed out on the client")
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	@ManagedAttribute(description="Number of hosts in the cluster")
+	public int getHostCount() {
+		return cluster == null ? 0 : getAllHosts().size();
+	}
+}
@@ -17,6 +17,8 @@
  */
 package org.stockwatcher.data.cassandra;
 
+import java.util.concurrent.ThreadLocalRandom;
+
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.policies.DefaultRetryPolicy;
 import com.datastax.driver.core.policies.RetryPolicy;
@@ -24,67 +26,155 @@ import com.datastax.driver.core.policies.RetryPolicy;
 /**
  * Class that encapsulates the options that can be specified when executing
  * a statement with the DataStax Java Driver.
+ * 
+ * Instances are immutable so they can be shared by concurrent requests; 
+ * the with methods return a copy with one option changed. Tracing is 
+ * sampled: a statement is traced with probability tracingSampleRate, so 
+ * tracing can be left on in production without flooding system_traces.
  *  
  * @author Tony Piazza
  */
-public class StatementOptions {
-	private boolean tracing;
-	private ConsistencyLevel consistencyLevel = ConsistencyLevel.ONE;
-	private RetryPolicy retryPolicy = DefaultRetryPolicy.INSTANCE;
+public final class StatementOptions {
+	public static final StatementOptions DEFAULT = new StatementOptions();
+
+	private final ConsistencyLevel consistencyLevel;
+	private final RetryPolicy retryPolicy;
+	private final int fetchSize;
+	private final long timeoutMillis;
+	private final boolean idempotent;
+	private final double tracingSampleRate;
 
 	public StatementOptions() {
-		// nothing here
+		this(ConsistencyLevel.ONE, DefaultRetryPolicy.INSTANCE);
 	}
 
 	public StatementOptions(boolean tracing) {
-		this.tracing = tracing;
+		this(ConsistencyLevel.ONE, DefaultRetryPolicy.INSTANCE, 0, 0, false, 
+			tracing ? 1 : 0);
 	}
 
 	public StatementOptions(ConsistencyLevel consistencyLevel) {
-		setConsistencyLevel(consistencyLevel);
+		this(consistencyLevel, DefaultRetryPolicy.INSTANCE);
 	}
 
 	public StatementOptions(RetryPolicy retryPolicy) {
-		setRetryPolicy(retryPolicy);
+		this(ConsistencyLevel.ONE, retryPolicy);
 	}
 
 	public StatementOptions(ConsistencyLevel consistencyLevel, 
 		RetryPolicy retryPolicy) {
-		setConsistencyLevel(consistencyLevel);
-		setRetryPolicy(retryPolicy);
-	}
-
-	public void enableTracing() {
-		tracing = true;
-	}
-
-	public void disableTracing() {
-		tracing = false;
+		this(consistencyLevel, retryPolicy, 0, 0, false, 0);
 	}
 
-	public boolean isTracing() {
-		return tracing;
+	/**
+	 * Creates options with every value specified, for example from a bean 
+	 * definition. A fetchSize or timeoutMillis of 0 leaves that option to the 
+	 * driver.
+	 */
+	public StatementOptions(ConsistencyLevel consistencyLevel, 
+		RetryPolicy retryPolicy, int fetchSize, long timeoutMillis, 
+		boolean idempotent, double tracingSampleRate) {
+		if(consistencyLevel == null) {
+			throw new IllegalArgumentException("consistencyLevel is null");
+		}
+		if(retryPolicy == null) {
+			throw new IllegalArgumentException("retryPolicy is null");
+		}
+		if(fetchSize < 0) {
+			throw new IllegalArgumentException("fetchSize is less than 0");
+		}
+		if(timeoutMillis < 0) {
+			throw new IllegalArgumentException("timeoutMillis is less than 0");
+		}
+		if(tracingSampleRate < 0 || tracingSampleRate > 1) {
+			throw new IllegalArgumentException("tracingSampleRate is not between 0 and 1");
+		}
+		this.consistencyLevel = consistencyLevel;
+		this.retryPolicy = retryPolicy;
+		this.fetchSize = fetchSize;
+		this.timeoutMillis = timeoutMillis;
+		this.idempotent = idempotent;
+		this.tracingSampleRate = tracingSampleRate;
 	}
 
 	public ConsistencyLevel getConsistencyLevel() {
 		return consistencyLevel;
 	}
 
-	public void setConsistencyLevel(ConsistencyLevel consistencyLevel) {
-		if(consistencyLevel == null) {
-			throw new IllegalArgumentException("consistencyLevel is null");
-		}
-		this.consistencyLevel = consistencyLevel;
+	public StatementOptions withConsistencyLevel(ConsistencyLevel consistencyLevel) {
+		return new StatementOptions(consistencyLevel, retryPolicy, fetchSize, 
+			timeoutMillis, idempotent, tracingSampleRate);
 	}
 
 	public RetryPolicy getRetryPolicy() {
 		return retryPolicy;
 	}
 
-	public void setRetryPolicy(RetryPolicy retryPolicy) {
-		if(retryPolicy == null) {
-			throw new IllegalArgumentException("retryPolicy is null");
-		}
-		this.retryPolicy = retryPolicy;
+	public StatementOptions withRetryPolicy(RetryPolicy retryPolicy) {
+		return new StatementOptions(consistencyLevel, retryPolicy, fetchSize, 
+			timeoutMillis, idempotent, tracingSampleRate);
+	}
+
+	/**
+	 * Returns the number of rows fetched per page, or 0 when the driver 
+	 * default is used. A fetch size set on the statement itself wins.
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	public StatementOptions withFetchSize(int fetchSize) {
+		return new StatementOptions(consistencyLevel, retryPolicy, fetchSize, 
+			timeoutMillis, idempotent, tracingSampleRate);
+	}
+
+	/**
+	 * Returns how long the caller waits for a response before the statement 
+	 * fails, or 0 to wait as long as the driver does.
+	 */
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public StatementOptions withTimeoutMillis(long timeoutMillis) {
+		return new StatementOptions(consistencyLevel, retryPolicy, fetchSize, 
+			timeoutMillis, idempotent, tracingSampleRate);
+	}
+
+	/**
+	 * Returns true if the statement is safe to execute more than once, 
+	 * which allows it to be executed speculatively. Reads are always 
+	 * treated as idempotent.
+	 */
+	public boolean isIdempotent() {
+		return idempotent;
+	}
+
+	public StatementOptions withIdempotent(boolean idempotent) {
+		return new StatementOptions(consistencyLevel, retryPolicy, fetchSize, 
+			timeoutMillis, idempotent, tracingSampleRate);
+	}
+
+	/**
+	 * Returns the fraction of statements that are traced, between 0 (none) 
+	 * and 1 (all).
+	 */
+	public double getTracingSampleRate() {
+		return tracingSampleRate;
+	}
+
+	public StatementOptions withTracingSampleRate(double tracingSampleRate) {
+		return new StatementOptions(consistencyLevel, retryPolicy, fetchSize, 
+			timeoutMillis, idempotent, tracingSampleRate);
+	}
+
+	/**
+	 * Decides whether the statement about to be executed is traced.
+	 * 
+	 * @return true for a tracingSampleRate fraction of the calls
+	 */
+	public boolean sampleTracing() {
+		return tracingSampleRate >= 1 || (tracingSampleRate > 0 && 
+			ThreadLocalRandom.current().nextDouble() < tracingSampleRate);
 	}
 }
\ No newline at end of file
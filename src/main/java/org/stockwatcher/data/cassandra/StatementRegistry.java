@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.cassandra;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.datastax.driver.core.PreparedStatement;
+
+/**
+ * Class that prepares each CQL statement once and hands out the same 
+ * PreparedStatement to every caller, so that neither the client nor the 
+ * coordinator parses a query more than once.
+ * 
+ * Statements with an IN clause are prepared once per number of values. 
+ * Their query contains %s where the bind markers of the IN clause go, 
+ * and the number of values is limited to maxInArity so that the number 
+ * of prepared variants stays small.
+ * 
+ * @author Tony Piazza
+ */
+@ManagedResource
+public class StatementRegistry {
+	private final ConcurrentMap<String, PreparedStatement> statements = 
+		new ConcurrentHashMap<String, PreparedStatement>();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong inStatementCount = new AtomicLong();
+	private int maxInArity = 100;
+
+	@Autowired
+	private SessionFactory sessionFactory;
+
+	public void setMaxInArity(int maxInArity) {
+		if(maxInArity < 1) {
+			throw new IllegalArgumentException("maxInArity is less than 1");
+		}
+		this.maxInArity = maxInArity;
+	}
+
+	/**
+	 * Returns the PreparedStatement for the specified query, preparing it 
+	 * the first time it is requested.
+	 * 
+	 * @param query CQL statement
+	 * @return PreparedStatement
+	 */
+	public PreparedStatement prepare(String query) {
+		if(query == null || query.length() == 0) {
+			throw new IllegalArgumentException("query is null or zero length");
+		}
+		PreparedStatement statement = statements.get(query);
+		if(statement != null) {
+			hitCount.incrementAndGet();
+			return statement;
+		}
+		missCount.incrementAndGet();
+		// Two threads may both prepare a new query; the first one is kept
+		statement = sessionFactory.getSession().prepare(query);
+		PreparedStatement existing = statements.putIfAbsent(query, statement);
+		return existing == null ? statement : existing;
+	}
+
+	/**
+	 * Returns the PreparedStatement for the specified query with arity bind 
+	 * markers in its IN clause.
+	 * 
+	 * @param query CQL statement containing %s in place of the IN values
+	 * @param arity number of values in the IN clause
+	 * @return PreparedStatement
+	 */
+	public PreparedStatement prepareIn(String query, int arity) {
+		if(arity < 1) {
+			throw new IllegalArgumentException("arity is less than 1");
+		}
+		if(arity > maxInArity) {
+			throw new IllegalArgumentException("arity is greater than maxInArity");
+		}
+		StringBuilder markers = new StringBuilder("?");
+		for(int i = 1; i < arity; i++) {
+			markers.append(", ?");
+		}
+		String expanded = String.format(query, markers);
+		if(!statements.containsKey(expanded)) {
+			inStatementCount.incrementAndGet();
+		}
+		return prepare(expanded);
+	}
+
+	@ManagedAttribute(description="Largest number of values in a prepared IN clause")
+	public int getMaxInArity() {
+		return maxInArity;
+	}
+
+	@ManagedAttribute(description="Number of prepared statements")
+	public int getStatementCount() {
+		return statements.size();
+	}
+
+	@ManagedAttribute(description="Number of IN clause variants prepared")
+	public long getInStatementCount() {
+		return inStatementCount.get();
+	}
+
+	@ManagedAttribute(description="Number of requests for an already prepared statement")
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	@ManagedAttribute(description="Number of requests that prepared a statement")
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	@ManagedAttribute(description="Fraction of requests for an already prepared statement")
+	public double getHitRatio() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double)hits / total;
+	}
+
+	@ManagedAttribute(description="Prepared CQL statements")
+	public String[] getStatements() {
+		List<String> queries = new ArrayList<String>(statements.keySet());
+		Collections.sort(queries);
+		return queries.toArray(new String[queries.size()]);
+	}
+}
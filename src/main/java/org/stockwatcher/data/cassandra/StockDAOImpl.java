@@ -17,9 +17,7 @@
  */
 package org.stockwatcher.data.cassandra;
 
-import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static org.stockwatcher.data.DAOFutures.getResult;
 import static org.stockwatcher.data.cassandra.StockHelper.createComment;
 import static org.stockwatcher.data.cassandra.StockHelper.createExchange;
 import static org.stockwatcher.data.cassandra.StockHelper.createIndustry;
@@ -28,25 +26,32 @@ import static org.stockwatcher.data.cassandra.StockHelper.createTrade;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
+import org.stockwatcher.data.AsyncStockDAO;
 import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.Page;
 import org.stockwatcher.data.StockCriteria;
+import org.stockwatcher.data.StockScreener;
+import org.stockwatcher.data.StockSearchIndex;
+import org.stockwatcher.data.TradeListener;
+import org.stockwatcher.data.WatchCountLeaderboard;
 import org.stockwatcher.domain.Comment;
 import org.stockwatcher.domain.Exchange;
 import org.stockwatcher.domain.Industry;
@@ -57,12 +62,12 @@ import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
-import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
-import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.exceptions.DriverException;
-import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Implementation of the StockDAO interface for Apache Cassandra.
@@ -70,13 +75,31 @@ import com.datastax.driver.core.utils.UUIDs;
  * @author Tony Piazza
  */
 @Repository
-public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
+@Profile("cassandra")
+public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO, 
+	AsyncStockDAO {
+	private static final Logger LOGGER = LoggerFactory.getLogger(StockDAOImpl.class);
+	private static final int STOCK_FETCH_SIZE = 1000;
+	private static final String SELECT_CURRENT_PRICES = "SELECT stock_symbol, current_price, active FROM Stock WHERE stock_symbol IN (%s)";
+
 	@Autowired
 	private CassandraUserDAO userDAO;
+	@Autowired(required=false)
+	private List<TradeListener> tradeListeners = Collections.emptyList();
+	@Autowired
+	private WatchCountLeaderboard leaderboard;
+	@Autowired(required=false)
+	private ViewCountAggregator viewCountAggregator;
+
+	private final StockScreener screener = new StockScreener();
+	private final StockSearchIndex searchIndex = new StockSearchIndex();
 
+	private PreparedStatement selectIndustries;
+	private PreparedStatement selectActiveExchanges;
 	private PreparedStatement selectTradesBySymbolAndDate;
 	private PreparedStatement selectStockWatchCounts;
 	private PreparedStatement selectStockBySymbol;
+	private PreparedStatement selectStocks;
 	private PreparedStatement selectStockCommentsBySymbol;
 	private PreparedStatement deleteStockCommentBySymbol;
 	private PreparedStatement deleteStockCommentByUser;
@@ -84,12 +107,19 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 	private PreparedStatement insertStockCommentByUser;
 	private PreparedStatement selectLastClosePrice;
 	private PreparedStatement updateStockViewCount;
+	private PreparedStatement insertTrade;
+	private PreparedStatement updateStockPrice;
+	private PreparedStatement selectTradesAfterTimestamp;
+	private PreparedStatement selectTradesAfterTradeId;
 
 	@PostConstruct
 	public void init() {
+		selectIndustries = prepare("SELECT industry_id, industry_name, sector_id, sector_name FROM Industry");
+		selectActiveExchanges = prepare("SELECT exchange_id, exchange_name, currency_code FROM Exchange WHERE active=true");
 		selectTradesBySymbolAndDate = prepare("SELECT stock_symbol, trade_id, trade_date, trade_timestamp, exchange_id, share_price, share_quantity FROM Trade WHERE stock_symbol = ? AND trade_date = ?");
 		selectStockWatchCounts = prepare("SELECT stock_symbol, watch_count FROM StockCount");
 		selectStockBySymbol = prepare("SELECT stock_symbol, company_name, exchange_id, current_price, price_updated, active, industry_id, industry_name, sector_id, sector_name FROM Stock WHERE stock_symbol = ?");
+		selectStocks = prepare("SELECT stock_symbol, company_name, exchange_id, current_price, price_updated, active, industry_id, industry_name, sector_id, sector_name FROM Stock");
 		selectStockCommentsBySymbol = prepare("SELECT stock_symbol, comment_id, user_id, user_display_name, comment, active FROM StockCommentBySymbol WHERE stock_symbol = ?");
 		deleteStockCommentBySymbol = prepare("UPDATE StockCommentBySymbol SET active=false WHERE stock_symbol=? AND comment_id=?");
 		deleteStockCommentByUser = prepare("UPDATE StockCommentByUser SET active=false WHERE user_id=? AND comment_id=?");
@@ -97,6 +127,12 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 		insertStockCommentByUser = prepare("INSERT INTO StockCommentByUser (stock_symbol, comment_id, user_id, user_display_name, comment, active) VALUES (?, ?, ?, ?, ?, ?)");
 		selectLastClosePrice = prepare("SELECT price_close FROM DailySummary WHERE stock_symbol=? LIMIT 1");
 		updateStockViewCount = prepare("UPDATE StockCount SET view_count=view_count+1 WHERE stock_symbol=?");
+		selectTradesAfterTimestamp = prepare("SELECT stock_symbol, trade_id, trade_date, trade_timestamp, exchange_id, share_price, share_quantity FROM Trade WHERE stock_symbol = ? AND trade_date = ? AND trade_timestamp > ? LIMIT ?");
+		selectTradesAfterTradeId = prepare("SELECT stock_symbol, trade_id, trade_date, trade_timestamp, exchange_id, share_price, share_quantity FROM Trade WHERE stock_symbol = ? AND trade_date = ? AND trade_timestamp = ? AND trade_id > ? LIMIT ?");
+		insertTrade = prepare("INSERT INTO Trade (stock_symbol, trade_id, trade_date, trade_timestamp, exchange_id, share_price, share_quantity) VALUES (?, ?, ?, ?, ?, ?, ?)");
+		updateStockPrice = prepare("UPDATE Stock USING TIMESTAMP ? SET current_price=?, price_updated=? WHERE stock_symbol=?");
+		reconcileWatchCounts();
+		rebuildStockIndexes();
 	}
 
 	@Override
@@ -108,13 +144,7 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 	public SortedSet<Industry> getIndustries(StatementOptions options) {
 		SortedSet<Industry> industries = new TreeSet<Industry>();
 		try{
-			Statement statement = select()
-					.column("industry_id")
-					.column("industry_name")
-					.column("sector_id")
-					.column("sector_name")
-				.from("Industry");
-			for(Row row : execute(statement, options)) {
+			for(Row row : execute(selectIndustries.bind(), options)) {
 				industries.add(createIndustry(row));
 			}
 		} catch(DriverException e) {
@@ -133,19 +163,78 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 
 	@Override
 	public Stock getStockBySymbol(StatementOptions options, String symbol) {
+		return getResult(getStockBySymbolAsync(options, symbol));
+	}
+
+	@Override
+	public ListenableFuture<Stock> getStockBySymbolAsync(String symbol) {
+		return getStockBySymbolAsync(getDefaultOptions(), symbol);
+	}
+
+	private ListenableFuture<Stock> getStockBySymbolAsync(
+		StatementOptions options, String symbol) {
 		if(symbol == null) {
 			throw new IllegalArgumentException("symbol is null");
 		}
-		try {
-			Clause where = eq("stock_symbol", symbol);
-			Row row = getStockResultSet(options, where).one();
-			if(row == null) {
-				throw new DAOException("no stock found with specified symbol");
+		BoundStatement bs = selectStockBySymbol.bind();
+		bs.setString("stock_symbol", symbol);
+		return executeAsync(bs, options, new Function<ResultSet, Stock>() {
+			@Override
+			public Stock apply(ResultSet resultSet) {
+				Row row = resultSet.one();
+				if(row == null) {
+					throw new DAOException("no stock found with specified symbol");
+				}
+				return createStock(row);
 			}
-			return createStock(row);
-		} catch(DriverException e) {
-			throw new DAOException(e);
+		});
+	}
+
+	@Override
+	public Map<String, Stock> getStocksBySymbols(String... symbols) {
+		return getStocksBySymbols(getDefaultOptions(), symbols);
+	}
+
+	@Override
+	public Map<String, Stock> getStocksBySymbols(StatementOptions options, String... symbols) {
+		return getResult(getStocksBySymbolsAsync(options, symbols));
+	}
+
+	@Override
+	public ListenableFuture<Map<String, Stock>> getStocksBySymbolsAsync(
+		String... symbols) {
+		return getStocksBySymbolsAsync(getDefaultOptions(), symbols);
+	}
+
+	private ListenableFuture<Map<String, Stock>> getStocksBySymbolsAsync(
+		StatementOptions options, String... symbols) {
+		if(symbols == null || symbols.length == 0) {
+			throw new IllegalArgumentException("symbols argument is null or zero length");
+		}
+		// One single-partition query per symbol issued concurrently rather 
+		// than an IN query, so no coordinator has to wait on every replica
+		List<ListenableFuture<ResultSet>> futures = 
+			new ArrayList<ListenableFuture<ResultSet>>(symbols.length);
+		for(String symbol : symbols) {
+			BoundStatement bs = selectStockBySymbol.bind();
+			bs.setString("stock_symbol", symbol);
+			futures.add(executeAsync(bs, options));
 		}
+		return translateExceptions(Futures.transform(Futures.allAsList(futures), 
+			new Function<List<ResultSet>, Map<String, Stock>>() {
+				@Override
+				public Map<String, Stock> apply(List<ResultSet> resultSets) {
+					Map<String, Stock> stocks = new TreeMap<String, Stock>();
+					for(ResultSet resultSet : resultSets) {
+						Row row = resultSet.one();
+						if(row != null) {
+							Stock stock = createStock(row);
+							stocks.put(stock.getSymbol(), stock);
+						}
+					}
+					return stocks;
+				}
+			}));
 	}
 
 	@Override
@@ -160,15 +249,11 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 		}
 		Map<String, BigDecimal> priceMap = new TreeMap<String, BigDecimal>();
 		try {
-			Statement statement = select()
-					.column("stock_symbol")
-					.column("current_price")
-					.column("active")
-				.from("Stock")
-				.where(in("stock_symbol", (Object[])symbols));
-			for(Row row : execute(statement, options)) {
-				if(row.getBool("active")) {
-					priceMap.put(row.getString("stock_symbol"), row.getDecimal("current_price"));
+			for(BoundStatement bs : bindIn(SELECT_CURRENT_PRICES, (Object[])symbols)) {
+				for(Row row : execute(bs, options)) {
+					if(row.getBool("active")) {
+						priceMap.put(row.getString("stock_symbol"), row.getDecimal("current_price"));
+					}
 				}
 			}
 		} catch(DriverException e) {
@@ -177,31 +262,6 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 		return priceMap;
 	}
 
-	/**
-	 * Internal method used to execute a query for Stocks that match the 
-	 * specified where clause.
-	 * 
-	 * @param cl ConsistencyLevel to use for executing the query
-	 * @param where Clause to use for filtering the rows
-	 * @return ResultSet
-	 */
-	private ResultSet getStockResultSet(StatementOptions options, Clause whereClause) {
-		Statement statement = select()
-				.column("stock_symbol")
-				.column("company_name")
-				.column("exchange_id")
-				.column("current_price")
-				.column("price_updated")
-				.column("active")
-				.column("industry_id")
-				.column("industry_name")
-				.column("sector_id")
-				.column("sector_name")
-			.from("Stock")
-			.where(whereClause);
-		return execute(statement, options);
-	}
-
 	@Override
 	public SortedSet<Exchange> getExchanges() {
 		return getExchanges(getDefaultOptions());
@@ -211,13 +271,7 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 	public SortedSet<Exchange> getExchanges(StatementOptions options) {
 		SortedSet<Exchange> exchanges = new TreeSet<Exchange>();
 		try {
-			Statement statement = select()
-					.column("exchange_id")
-					.column("exchange_name")
-					.column("currency_code")
-				.from("Exchange")
-				.where(eq("active", true));
-			for(Row row : execute(statement, options)) {
+			for(Row row : execute(selectActiveExchanges.bind(), options)) {
 				exchanges.add(createExchange(row));
 			}
 		} catch(DriverException e) {
@@ -238,42 +292,58 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 	public SortedSet<Stock> findStocks(StatementOptions options,
 		StockCriteria criteria) {
 		validateCriteria(criteria);
-		Integer[] industries = criteria.getIndustryIds();
-		Set<String> exchanges = 
-			new HashSet<String>(Arrays.asList(criteria.getExchangeIds()));
-		BigDecimal minPrice = criteria.getMinimumPrice();
-		BigDecimal maxPrice = criteria.getMaximumPrice();
-		SortedSet<Stock> stocks = new TreeSet<Stock>();
+		// The screener picks the symbols, only the matching stocks are read
+		List<String> symbols = screener.screen(criteria);
+		if(symbols.isEmpty()) {
+			return new TreeSet<Stock>();
+		}
+		return new TreeSet<Stock>(getStocksBySymbols(options, 
+			symbols.toArray(new String[symbols.size()])).values());
+	}
+
+	@Override
+	public Page<Stock> findStocks(StockCriteria criteria, String pageToken, 
+		int pageSize) {
+		return findStocks(getDefaultOptions(), criteria, pageToken, pageSize);
+	}
+
+	@Override
+	public Page<Stock> findStocks(StatementOptions options, 
+		StockCriteria criteria, String pageToken, int pageSize) {
+		validateCriteria(criteria);
+		Page<String> symbols = screener.screen(criteria, pageToken, pageSize);
+		List<Stock> stocks = new ArrayList<Stock>(symbols.getItems().size());
+		if(!symbols.getItems().isEmpty()) {
+			stocks.addAll(getStocksBySymbols(options, symbols.getItems().toArray(
+				new String[symbols.getItems().size()])).values());
+		}
+		return new Page<Stock>(stocks, symbols.getNextPageToken());
+	}
+
+	@Override
+	public List<Stock> searchStocks(String prefix, int limit) {
+		return searchIndex.search(prefix, limit);
+	}
+
+	/**
+	 * Rebuilds the screener used by findStocks and the index used by 
+	 * searchStocks from the Stock table, which picks up stocks and prices 
+	 * changed by other instances.
+	 */
+	public void rebuildStockIndexes() {
+		List<Stock> stocks = new ArrayList<Stock>();
 		try {
-			Set<String> symbols = getMatchingSymbols(options, industries, exchanges);
-			Clause where = in("stock_symbol", symbols.toArray());
-			for(Row row : getStockResultSet(options, where)) {
-				BigDecimal curPrice = row.getDecimal("current_price");
-				if(row.getBool("active") && (minPrice.compareTo(curPrice) <= 0) && 
-					(maxPrice.compareTo(curPrice) >= 0)) {
-					stocks.add(createStock(row));
-				}
+			BoundStatement bs = selectStocks.bind();
+			bs.setFetchSize(STOCK_FETCH_SIZE);
+			for(Row row : execute(bs, getDefaultOptions())) {
+				stocks.add(createStock(row));
 			}
 		} catch(DriverException e) {
 			throw new DAOException(e);
 		}
-		return stocks;
-	}
-
-	private Set<String> getMatchingSymbols(StatementOptions options, 
-		Integer[] industries, Set<String> exchanges) {
-		Set<String> symbols = new HashSet<String>();
-		Statement statement = select()
-				.column("stock_symbol")
-				.column("exchange_id")
-			.from("StockSearch")
-			.where(in("industry_id", (Object[])industries));
-		for(Row row : execute(statement, options)) {
-			if(exchanges.contains(row.getString("exchange_id"))) {
-				symbols.add(row.getString("stock_symbol"));
-			}
-		}
-		return symbols;
+		screener.rebuild(stocks);
+		searchIndex.rebuild(stocks);
+		LOGGER.debug("Rebuilt stock indexes with {} stocks", stocks.size());
 	}
 
 	private void validateCriteria(StockCriteria criteria) {
@@ -298,24 +368,103 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 	@Override
 	public SortedSet<Trade> getTradesBySymbolAndDate(StatementOptions options,
 			String symbol, Date tradeDate) {
+		return getResult(getTradesBySymbolAndDateAsync(options, symbol, tradeDate));
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<Trade>> getTradesBySymbolAndDateAsync(
+		String symbol, Date tradeDate) {
+		return getTradesBySymbolAndDateAsync(getDefaultOptions(), symbol, 
+			tradeDate);
+	}
+
+	private ListenableFuture<SortedSet<Trade>> getTradesBySymbolAndDateAsync(
+		StatementOptions options, String symbol, Date tradeDate) {
 		if(symbol == null || symbol.length() == 0) {
 			throw new IllegalArgumentException("symbol is null or zero length");
 		}
 		if(tradeDate == null) {
 			throw new IllegalArgumentException("tradeDate is null");
 		}
-		SortedSet<Trade> trades = new TreeSet<Trade>();
-		try {
-			BoundStatement bs = selectTradesBySymbolAndDate.bind();
-			bs.setString("stock_symbol", symbol);
-			bs.setDate("trade_date", tradeDate);
-			for(Row row : execute(bs, options)) {
-				trades.add(createTrade(row));
-			}
-		} catch(DriverException e) {
-			throw new DAOException(e);
+		BoundStatement bs = selectTradesBySymbolAndDate.bind();
+		bs.setString("stock_symbol", symbol);
+		bs.setDate("trade_date", tradeDate);
+		return executeAsync(bs, options, 
+			new Function<ResultSet, SortedSet<Trade>>() {
+				@Override
+				public SortedSet<Trade> apply(ResultSet resultSet) {
+					SortedSet<Trade> trades = new TreeSet<Trade>();
+					for(Row row : resultSet) {
+						trades.add(createTrade(row));
+					}
+					return trades;
+				}
+			});
+	}
+
+	@Override
+	public List<Trade> getTradesAfter(String symbol, Date tradeDate, 
+		Date timestamp, UUID tradeId, int limit) {
+		return getTradesAfter(getDefaultOptions(), symbol, tradeDate, 
+			timestamp, tradeId, limit);
+	}
+
+	@Override
+	public List<Trade> getTradesAfter(StatementOptions options, String symbol, 
+		Date tradeDate, Date timestamp, UUID tradeId, int limit) {
+		return getResult(getTradesAfterAsync(options, symbol, tradeDate, 
+			timestamp, tradeId, limit));
+	}
+
+	@Override
+	public ListenableFuture<List<Trade>> getTradesAfterAsync(String symbol, 
+		Date tradeDate, Date timestamp, UUID tradeId, int limit) {
+		return getTradesAfterAsync(getDefaultOptions(), symbol, tradeDate, 
+			timestamp, tradeId, limit);
+	}
+
+	private ListenableFuture<List<Trade>> getTradesAfterAsync(
+		StatementOptions options, String symbol, Date tradeDate, 
+		Date timestamp, UUID tradeId, final int limit) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		if(tradeDate == null) {
+			throw new IllegalArgumentException("tradeDate is null");
+		}
+		if(timestamp == null) {
+			throw new IllegalArgumentException("timestamp is null");
+		}
+		if(limit < 1) {
+			throw new IllegalArgumentException("limit is less than 1");
+		}
+		// The partition is clustered by (trade_timestamp, trade_id), so the 
+		// rest of the cursor's millisecond and everything after it are two 
+		// slices that can be read at the same time
+		List<ListenableFuture<ResultSet>> futures = 
+			new ArrayList<ListenableFuture<ResultSet>>(2);
+		if(tradeId != null) {
+			futures.add(executeAsync(selectTradesAfterTradeId.bind(
+				symbol, tradeDate, timestamp, tradeId, limit), options));
 		}
-		return trades;
+		futures.add(executeAsync(selectTradesAfterTimestamp.bind(symbol, 
+			tradeDate, timestamp, limit), options));
+		return translateExceptions(transform(Futures.allAsList(futures), 
+			new Function<List<ResultSet>, List<Trade>>() {
+				@Override
+				public List<Trade> apply(List<ResultSet> resultSets) {
+					List<Trade> trades = new ArrayList<Trade>();
+					for(ResultSet resultSet : resultSets) {
+						for(Row row : resultSet) {
+							if(trades.size() == limit) {
+								break;
+							}
+							trades.add(createTrade(row));
+						}
+					}
+					return trades;
+				}
+			}));
 	}
 
 	@Override
@@ -325,39 +474,55 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 
 	@Override
 	public List<Stock> getMostWatchedStocks(StatementOptions options, int limit) {
-		List<Stock> stocks = new ArrayList<Stock>(limit);
-		try {
-			BoundStatement bs = selectStockWatchCounts.bind();
-			Map<Long, Set<String>> map = 
-				new TreeMap<Long, Set<String>>(Collections.reverseOrder());
-			for(Row row : execute(bs, options)) { 
-				long watchCount = row.getLong("watch_count");
-				if(watchCount > 0) {
-					Set<String> values = map.get(watchCount);
-					if(values == null) {
-						values = new HashSet<String>();
-						map.put(watchCount, values);
+		return getResult(getMostWatchedStocksAsync(options, limit));
+	}
+
+	@Override
+	public ListenableFuture<List<Stock>> getMostWatchedStocksAsync(int limit) {
+		return getMostWatchedStocksAsync(getDefaultOptions(), limit);
+	}
+
+	private ListenableFuture<List<Stock>> getMostWatchedStocksAsync(
+		StatementOptions options, int limit) {
+		final List<String> symbols = leaderboard.getMostWatchedSymbols(limit);
+		if(symbols.isEmpty()) {
+			return Futures.immediateFuture((List<Stock>)new ArrayList<Stock>());
+		}
+		return Futures.transform(getStocksBySymbolsAsync(options, 
+			symbols.toArray(new String[symbols.size()])), 
+			new Function<Map<String, Stock>, List<Stock>>() {
+				@Override
+				public List<Stock> apply(Map<String, Stock> stockMap) {
+					List<Stock> stocks = new ArrayList<Stock>(symbols.size());
+					for(String symbol : symbols) {
+						Stock stock = stockMap.get(symbol);
+						if(stock != null) {
+							stocks.add(stock);
+						}
 					}
-					values.add(row.getString("stock_symbol"));
+					return stocks;
 				}
-			}
-			int count = 0;
-			List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>(limit);
-			for(long i : map.keySet()) {
-				Iterator<String> iter = map.get(i).iterator();
-				while(iter.hasNext() && count++ < limit) {
-					bs = selectStockBySymbol.bind();
-					bs.setString("stock_symbol", iter.next());
-					futures.add(executeAsync(bs, options));
-				}
-			}
-			for(ResultSetFuture future : futures) {
-				stocks.add(createStock(future.getUninterruptibly().one()));
+			});
+	}
+
+	/**
+	 * Replaces the counts in the leaderboard with the ones in the StockCount 
+	 * table, which picks up watch list changes made by other instances.
+	 */
+	public void reconcileWatchCounts() {
+		long startVersion = leaderboard.startReconcile();
+		Map<String, Long> counts = new HashMap<String, Long>();
+		try {
+			for(Row row : execute(selectStockWatchCounts.bind(), 
+				getDefaultOptions())) { 
+				counts.put(row.getString("stock_symbol"), 
+					row.getLong("watch_count"));
 			}
 		} catch(DriverException e) {
 			throw new DAOException(e);
 		}
-		return stocks;
+		leaderboard.reconcile(startVersion, counts);
+		LOGGER.debug("Reconciled {} watch counts", counts.size());
 	}
 
 	@Override
@@ -390,7 +555,7 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 			BatchStatement batch = new BatchStatement();
 			batch.add(bs1);
 			batch.add(bs2);
-			execute(batch,options);
+			execute(batch, idempotent(options));
 
 			/*
 			// Example Without batch			
@@ -420,7 +585,7 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 			BatchStatement batch = new BatchStatement();
 			batch.add(bs1);
 			batch.add(bs2);
-			execute(batch,options);
+			execute(batch, idempotent(options));
 /*			
 			// Example Without batch			
 			execute(bs1, options);
@@ -439,24 +604,37 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 	@Override
 	public SortedSet<Comment> getStockCommentsBySymbol(StatementOptions options, 
 		String symbol, int limit) {
-		SortedSet<Comment> comments = new TreeSet<Comment>();
-		try {
-			BoundStatement bs = selectStockCommentsBySymbol.bind();
-			bs.setString("stock_symbol", symbol);
-			int count = 0;
-			for(Row row : execute(bs, options)) {
-				if(row.getBool("active")) {
-					Comment comment = createComment(row);
-					comments.add(comment);
-					if(++count >= limit) {
-						break;
+		return getResult(getStockCommentsBySymbolAsync(options, symbol, limit));
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<Comment>> getStockCommentsBySymbolAsync(
+		String symbol, int limit) {
+		return getStockCommentsBySymbolAsync(getDefaultOptions(), symbol, limit);
+	}
+
+	private ListenableFuture<SortedSet<Comment>> getStockCommentsBySymbolAsync(
+		StatementOptions options, String symbol, final int limit) {
+		BoundStatement bs = selectStockCommentsBySymbol.bind();
+		bs.setString("stock_symbol", symbol);
+		return executeAsync(bs, options, 
+			new Function<ResultSet, SortedSet<Comment>>() {
+				@Override
+				public SortedSet<Comment> apply(ResultSet resultSet) {
+					SortedSet<Comment> comments = new TreeSet<Comment>();
+					int count = 0;
+					for(Row row : resultSet) {
+						if(row.getBool("active")) {
+							Comment comment = createComment(row);
+							comments.add(comment);
+							if(++count >= limit) {
+								break;
+							}
+						}
 					}
+					return comments;
 				}
-			}
-		} catch(DriverException e) {
-			throw new DAOException(e);
-		}
-		return comments;
+			});
 	}
 
 	@Override
@@ -467,13 +645,29 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 	@Override
 	public BigDecimal getLastClosePriceForSymbol(StatementOptions options,
 			String symbol) {
-		try {
-			BoundStatement bs = selectLastClosePrice.bind();
-			bs.setString("stock_symbol", symbol);
-			return execute(bs, options).one().getDecimal("price_close");
-		} catch(DriverException e) {
-			throw new DAOException(e);
-		}
+		return getResult(getLastClosePriceForSymbolAsync(options, symbol));
+	}
+
+	@Override
+	public ListenableFuture<BigDecimal> getLastClosePriceForSymbolAsync(
+		String symbol) {
+		return getLastClosePriceForSymbolAsync(getDefaultOptions(), symbol);
+	}
+
+	private ListenableFuture<BigDecimal> getLastClosePriceForSymbolAsync(
+		StatementOptions options, String symbol) {
+		BoundStatement bs = selectLastClosePrice.bind();
+		bs.setString("stock_symbol", symbol);
+		return executeAsync(bs, options, new Function<ResultSet, BigDecimal>() {
+			@Override
+			public BigDecimal apply(ResultSet resultSet) {
+				Row row = resultSet.one();
+				if(row == null) {
+					throw new DAOException("no daily summary found for specified symbol");
+				}
+				return row.getDecimal("price_close");
+			}
+		});
 	}
 
 	@Override
@@ -483,6 +677,11 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 
 	@Override
 	public void incrementStockViewCount(StatementOptions options, String symbol) {
+		if(viewCountAggregator != null) {
+			// Written behind, with the other views of the same stock
+			viewCountAggregator.increment(symbol);
+			return;
+		}
 		try {
 			BoundStatement bs = updateStockViewCount.bind();
 			bs.setString("stock_symbol", symbol);
@@ -491,4 +690,48 @@ public class StockDAOImpl extends CassandraDAO implements CassandraStockDAO {
 			throw new DAOException(e);
 		}
 	}
+
+	@Override
+	public void insertTrade(Trade trade) {
+		insertTrade(getDefaultOptions(), trade);
+	}
+
+	@Override
+	public void insertTrade(StatementOptions options, Trade trade) {
+		if(trade == null) {
+			throw new IllegalArgumentException("trade is null");
+		}
+		try {
+			BoundStatement bs = insertTrade.bind();
+			bs.setString("stock_symbol", trade.getStockSymbol());
+			bs.setUUID("trade_id", trade.getId());
+			bs.setDate("trade_date", trade.getTradeDate());
+			bs.setDate("trade_timestamp", trade.getTimestamp());
+			bs.setString("exchange_id", trade.getExchangeId());
+			bs.setDecimal("share_price", trade.getSharePrice());
+			bs.setInt("share_quantity", trade.getShareQuantity());
+			// The trade is also the new current price of the stock; the two 
+			// writes go to different partitions so they are sent together. 
+			// The write is timestamped with the trade so that a trade written 
+			// late cannot replace the price of a newer one.
+			StatementOptions writeOptions = idempotent(options);
+			ListenableFuture<ResultSet> priceUpdate = executeAsync(updateStockPrice.bind(
+				TimeUnit.MILLISECONDS.toMicros(trade.getTimestamp().getTime()), 
+				trade.getSharePrice(), trade.getTimestamp(), 
+				trade.getStockSymbol()), writeOptions);
+			execute(bs, writeOptions);
+			getResult(priceUpdate);
+		} catch(DriverException e) {
+			throw new DAOException(e);
+		}
+		screener.updatePrice(trade.getStockSymbol(), trade.getSharePriceUnits());
+		for(TradeListener listener : tradeListeners) {
+			try {
+				listener.tradeInserted(trade);
+			} catch(RuntimeException e) {
+				LOGGER.warn("TradeListener threw exception for trade " + 
+					trade.getId(), e);
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -17,6 +17,7 @@
  */
 package org.stockwatcher.data.cassandra;
 
+import java.nio.ByteBuffer;
 import java.util.Currency;
 import java.util.Date;
 import java.util.UUID;
@@ -24,6 +25,7 @@ import java.util.UUID;
 import org.stockwatcher.domain.Comment;
 import org.stockwatcher.domain.Exchange;
 import org.stockwatcher.domain.Industry;
+import org.stockwatcher.domain.Price;
 import org.stockwatcher.domain.Sector;
 import org.stockwatcher.domain.Stock;
 import org.stockwatcher.domain.Trade;
@@ -48,8 +50,9 @@ public final class StockHelper {
 			row.getString("company_name"),
 			row.getString("exchange_id"),
 			createIndustry(row),
-			row.getDecimal("current_price"),
-			row.getDate("price_updated"));
+			getPrice(row, "current_price"),
+			row.getDate("price_updated"),
+			true);
 	}
 
 	public static Industry createIndustry(Row row) {
@@ -78,7 +81,7 @@ public final class StockHelper {
 			row.getDate("trade_timestamp"),
 			row.getString("exchange_id"),
 			row.getString("stock_symbol"),
-			row.getDecimal("share_price"),
+			getPrice(row, "share_price"),
 			row.getInt("share_quantity"));
 	}
 
@@ -92,4 +95,34 @@ public final class StockHelper {
 		comment.setText(row.getString("comment"));
 		return comment;
 	}
+
+	/**
+	 * Reads a DECIMAL column as a fixed-point price. The serialized value (a 
+	 * four byte scale followed by the two's complement unscaled value) is 
+	 * decoded directly, so no BigDecimal is created unless the unscaled 
+	 * value is too large to rescale safely (more than six bytes).
+	 * 
+	 * @return price in fixed-point units, or Price.NONE if the column is null
+	 */
+	public static long getPrice(Row row, String name) {
+		ByteBuffer bytes = row.getBytesUnsafe(name);
+		if(bytes == null || bytes.remaining() == 0) {
+			return Price.NONE;
+		}
+		int length = bytes.remaining() - 4;
+		if(length < 1 || length > 6) {
+			return Price.valueOf(row.getDecimal(name));
+		}
+		int position = bytes.position();
+		int scale = bytes.getInt(position);
+		// sign extend from the first byte, then shift in the rest
+		long unscaled = bytes.get(position + 4);
+		for(int i = 5; i < length + 4; i++) {
+			unscaled = (unscaled << 8) | (bytes.get(position + i) & 0xFF);
+		}
+		if(scale < 0) {
+			return Price.valueOf(row.getDecimal(name));
+		}
+		return Price.valueOf(unscaled, scale);
+	}
 }
\ No newline at end of file
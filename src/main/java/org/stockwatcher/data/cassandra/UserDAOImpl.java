@@ -17,12 +17,12 @@
  */
 package org.stockwatcher.data.cassandra;
 
-import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.set;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.update;
+import static org.stockwatcher.data.DAOFutures.getResult;
 import static org.stockwatcher.data.cassandra.UserHelper.createUser;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -30,15 +30,22 @@ import java.util.UUID;
 import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
+import org.stockwatcher.data.AsyncUserDAO;
 import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.Page;
 import org.stockwatcher.domain.User;
 
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
-import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.exceptions.DriverException;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Implementation of the UserDAO interface for Apache Cassandra.
@@ -46,17 +53,25 @@ import com.datastax.driver.core.exceptions.DriverException;
  * @author Tony Piazza
  */
 @Repository
-public class UserDAOImpl extends CassandraDAO implements CassandraUserDAO {
+@Profile("cassandra")
+public class UserDAOImpl extends CassandraDAO implements CassandraUserDAO, 
+	AsyncUserDAO {
 	@Autowired
 	private CassandraWatchListDAO watchListDAO;
 
 	private PreparedStatement selectUserById;
 	private PreparedStatement selectUsers;
+	private PreparedStatement selectFirstUsers;
+	private PreparedStatement selectUsersAfter;
+	private PreparedStatement updateUserById;
 
 	@PostConstruct
 	public void init() {
 		selectUserById = prepare("SELECT user_id, first_name, last_name, display_name, postal_code, email_address, active, updated FROM User WHERE user_id=?");
 		selectUsers = prepare("SELECT user_id, first_name, last_name, display_name, postal_code, email_address, active, updated FROM User");
+		selectFirstUsers = prepare("SELECT user_id, first_name, last_name, display_name, postal_code, email_address, active, updated FROM User LIMIT ?");
+		selectUsersAfter = prepare("SELECT user_id, first_name, last_name, display_name, postal_code, email_address, active, updated FROM User WHERE token(user_id) > token(?) LIMIT ?");
+		updateUserById = prepare("UPDATE User SET first_name=?, last_name=?, display_name=?, email_address=?, postal_code=?, updated=? WHERE user_id=?");
 	}
 
 	@Override
@@ -80,6 +95,70 @@ public class UserDAOImpl extends CassandraDAO implements CassandraUserDAO {
 		return users;
 	}
 
+	@Override
+	public Page<User> getUsers(String pageToken, int pageSize) {
+		return getUsers(getDefaultOptions(), pageToken, pageSize);
+	}
+
+	@Override
+	public Page<User> getUsers(StatementOptions options, String pageToken, 
+		int pageSize) {
+		return getResult(getUsersAsync(options, pageToken, pageSize));
+	}
+
+	@Override
+	public ListenableFuture<Page<User>> getUsersAsync(String pageToken, 
+		int pageSize) {
+		return getUsersAsync(getDefaultOptions(), pageToken, pageSize);
+	}
+
+	private ListenableFuture<Page<User>> getUsersAsync(
+		final StatementOptions options, String pageToken, final int pageSize) {
+		if(pageSize < 1) {
+			throw new IllegalArgumentException("pageSize is less than 1");
+		}
+		// Users are returned in token order so the last user_id on a page 
+		// is all that is needed to read the next one. One more user than 
+		// fits on the page is read to tell whether there is a next page.
+		BoundStatement bs = pageToken == null ? 
+			selectFirstUsers.bind(pageSize + 1) : 
+			selectUsersAfter.bind(UUID.fromString(
+				Page.parseToken(pageToken, 1)[0]), pageSize + 1);
+		bs.setFetchSize(pageSize + 1);
+		return translateExceptions(transform(executeAsync(bs, options), 
+			new AsyncFunction<ResultSet, Page<User>>() {
+				@Override
+				public ListenableFuture<Page<User>> apply(ResultSet resultSet) {
+					List<Row> all = resultSet.all();
+					final boolean lastPage = all.size() <= pageSize;
+					final List<Row> rows = lastPage ? all : 
+						all.subList(0, pageSize);
+					// Count the watch lists of every user concurrently
+					List<ListenableFuture<Integer>> counts = 
+						new ArrayList<ListenableFuture<Integer>>(rows.size());
+					for(Row row : rows) {
+						counts.add(watchListDAO.getWatchListCountByUserIdAsync(
+							options, row.getUUID("user_id")));
+					}
+					return Futures.transform(Futures.allAsList(counts), 
+						new Function<List<Integer>, Page<User>>() {
+							@Override
+							public Page<User> apply(List<Integer> watchListCounts) {
+								List<User> users = new ArrayList<User>(rows.size());
+								for(int i = 0; i < rows.size(); i++) {
+									users.add(createUser(rows.get(i), 
+										watchListCounts.get(i)));
+								}
+								String nextPageToken = lastPage ? 
+									null : Page.createToken(
+										users.get(users.size() - 1).getId());
+								return new Page<User>(users, nextPageToken);
+							}
+						});
+				}
+			}));
+	}
+
 	@Override
 	public User getUser(UUID id) {
 		return getUser(getDefaultOptions(), id);
@@ -87,21 +166,40 @@ public class UserDAOImpl extends CassandraDAO implements CassandraUserDAO {
 
 	@Override
 	public User getUser(StatementOptions options, UUID id) {
+		return getResult(getUserAsync(options, id));
+	}
+
+	@Override
+	public ListenableFuture<User> getUserAsync(UUID id) {
+		return getUserAsync(getDefaultOptions(), id);
+	}
+
+	private ListenableFuture<User> getUserAsync(StatementOptions options, 
+		UUID id) {
 		if(id == null) {
 			throw new IllegalArgumentException("id is null");
 		}
-		try {
-			BoundStatement bs = selectUserById.bind();
-			bs.setUUID("user_id", id);
-			Row row = execute(bs, options).one();
-			if(row == null) {
-				throw new DAOException("no user found with specified id");
-			}
-			return createUser(row, 
-				watchListDAO.getWatchListCountByUserId(options, id));
-		} catch(DriverException e) {
-			throw new DAOException(e);
-		}
+		// The user and its watch list count are read at the same time
+		final ListenableFuture<Integer> count = 
+			watchListDAO.getWatchListCountByUserIdAsync(options, id);
+		BoundStatement bs = selectUserById.bind();
+		bs.setUUID("user_id", id);
+		return translateExceptions(transform(executeAsync(bs, options), 
+			new AsyncFunction<ResultSet, User>() {
+				@Override
+				public ListenableFuture<User> apply(ResultSet resultSet) {
+					final Row row = resultSet.one();
+					if(row == null) {
+						throw new DAOException("no user found with specified id");
+					}
+					return Futures.transform(count, new Function<Integer, User>() {
+						@Override
+						public User apply(Integer watchListCount) {
+							return createUser(row, watchListCount);
+						}
+					});
+				}
+			}));
 	}
 
 	@Override
@@ -123,15 +221,10 @@ public class UserDAOImpl extends CassandraDAO implements CassandraUserDAO {
 
 		Date now = new Date();
 		try {
-			Statement statement = update("User")
-				.with(set("first_name", user.getFirstName()))
-				.and(set("last_name", user.getLastName()))
-				.and(set("display_name", user.getDisplayName()))
-				.and(set("email_address", user.getEmailAddress()))
-				.and(set("postal_code", user.getPostalCode()))
-				.and(set("updated", now))
-				.where(eq("user_id", id));
-			execute(statement, options);
+			BoundStatement bs = updateUserById.bind(user.getFirstName(), 
+				user.getLastName(), user.getDisplayName(), 
+				user.getEmailAddress(), user.getPostalCode(), now, id);
+			execute(bs, idempotent(options));
 		} catch(DriverException e) {
 			throw new DAOException(e);
 		}
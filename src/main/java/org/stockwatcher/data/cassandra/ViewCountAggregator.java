@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.cassandra;
+
+import java.util.Date;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Class that coalesces stock view count increments in memory and writes 
+ * them to the StockCount table periodically, so that a page view does not 
+ * wait on a counter write and a popular stock costs one write per flush 
+ * instead of one per view.
+ * 
+ * Increments that have not been flushed are lost if the application stops 
+ * without shutting down cleanly. Counter updates are not idempotent, so a 
+ * failed write is only added back to the pending count and retried on the 
+ * next flush when it was certainly not applied: it was never sent, no host 
+ * was available or the coordinator reported too few live replicas. Other 
+ * failures, such as a write timeout, may have been applied, so their views 
+ * are dropped rather than risk counting them twice.
+ * 
+ * @author Tony Piazza
+ */
+@ManagedResource
+public class ViewCountAggregator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ViewCountAggregator.class);
+	private static final int MAX_REQUESTS_IN_FLIGHT = 64;
+
+	private final AtomicLongMap<String> pending = AtomicLongMap.create();
+	private final Semaphore permits = new Semaphore(MAX_REQUESTS_IN_FLIGHT);
+	private final AtomicLong viewCount = new AtomicLong();
+	private final AtomicLong writeCount = new AtomicLong();
+	private final AtomicLong failureCount = new AtomicLong();
+	private final AtomicLong droppedViewCount = new AtomicLong();
+	private volatile Date lastFlush = new Date(0);
+	private Session session;
+	private PreparedStatement updateStockViewCount;
+
+	@Autowired
+	private SessionFactory sessionFactory;
+
+	@PostConstruct
+	public void init() {
+		session = sessionFactory.getSession();
+		updateStockViewCount = session.prepare("UPDATE StockCount SET view_count = view_count + ? WHERE stock_symbol = ?");
+	}
+
+	public void increment(String symbol) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		pending.incrementAndGet(symbol);
+		viewCount.incrementAndGet();
+	}
+
+	@ManagedOperation(description="Writes the pending view counts")
+	public void flush() {
+		for(String symbol : pending.asMap().keySet()) {
+			long count = pending.remove(symbol);
+			if(count > 0) {
+				write(symbol, count);
+			}
+		}
+		lastFlush = new Date();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		flush();
+		// Wait for the outstanding writes to complete
+		permits.acquireUninterruptibly(MAX_REQUESTS_IN_FLIGHT);
+		permits.release(MAX_REQUESTS_IN_FLIGHT);
+	}
+
+	private void write(final String symbol, final long count) {
+		BoundStatement bs = updateStockViewCount.bind(count, symbol);
+		permits.acquireUninterruptibly();
+		try {
+			Futures.addCallback(session.executeAsync(bs), 
+				new FutureCallback<ResultSet>() {
+				@Override
+				public void onSuccess(ResultSet result) {
+					writeCount.incrementAndGet();
+					permits.release();
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					fail(symbol, count, t, t instanceof NoHostAvailableException || 
+						t instanceof UnavailableException);
+				}
+			});
+		} catch(RuntimeException e) {
+			// The statement was not sent
+			fail(symbol, count, e, true);
+		}
+	}
+
+	private void fail(String symbol, long count, Throwable t, boolean retry) {
+		LOGGER.error("Unable to write view count for " + symbol, t);
+		if(retry) {
+			// Try again on the next flush
+			pending.addAndGet(symbol, count);
+		} else {
+			droppedViewCount.addAndGet(count);
+		}
+		failureCount.incrementAndGet();
+		permits.release();
+	}
+
+	@ManagedAttribute(description="Number of symbols with unwritten views")
+	public int getPendingSymbolCount() {
+		return pending.size();
+	}
+
+	@ManagedAttribute(description="Number of views not yet written")
+	public long getPendingViewCount() {
+		return pending.sum();
+	}
+
+	@ManagedAttribute(description="Number of views recorded")
+	public long getViewCount() {
+		return viewCount.get();
+	}
+
+	@ManagedAttribute(description="Number of counter updates written")
+	public long getWriteCount() {
+		return writeCount.get();
+	}
+
+	@ManagedAttribute(description="Number of counter updates that failed")
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	@ManagedAttribute(description="Number of views dropped after a write that may have been applied")
+	public long getDroppedViewCount() {
+		return droppedViewCount.get();
+	}
+
+	@ManagedAttribute(description="Last time the view counts were flushed")
+	public Date getLastFlush() {
+		return lastFlush;
+	}
+}
@@ -17,16 +17,12 @@
  */
 package org.stockwatcher.data.cassandra;
 
-import static com.datastax.driver.core.querybuilder.QueryBuilder.batch;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.decr;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.delete;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
-import static com.datastax.driver.core.querybuilder.QueryBuilder.update;
+import static org.stockwatcher.data.DAOFutures.getResult;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -34,20 +30,27 @@ import java.util.UUID;
 import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
+import org.stockwatcher.data.AsyncStockDAO;
+import org.stockwatcher.data.AsyncWatchListDAO;
 import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.WatchCountLeaderboard;
 import org.stockwatcher.domain.Stock;
 import org.stockwatcher.domain.WatchList;
 import org.stockwatcher.domain.WatchListItem;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
-import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
-import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.exceptions.DriverException;
-import com.datastax.driver.core.querybuilder.Batch;
 import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Implementation of the WatchListDAO interface for Apache Cassandra.
@@ -60,11 +63,20 @@ import com.datastax.driver.core.utils.UUIDs;
  * @author Tony Piazza
  */
 @Repository
-public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchListDAO {
+@Profile("cassandra")
+public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchListDAO, 
+	AsyncWatchListDAO {
+	private static final String DECREMENT_WATCH_COUNTS = "UPDATE StockCount SET watch_count = watch_count-1 WHERE stock_symbol IN (%s)";
 
 	@Autowired
 	private CassandraStockDAO stockDAO;
 
+	// Primary StockDAO, which caches stocks when caching is configured
+	@Autowired
+	private AsyncStockDAO stockLookupDAO;
+	@Autowired
+	private WatchCountLeaderboard leaderboard;
+
 	private PreparedStatement insertWatchListItem;
 	private PreparedStatement selectWatchListById;
 	private PreparedStatement selectWatchListsByUserId;
@@ -73,6 +85,14 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 	private PreparedStatement selectWatchListCountByUserId;
 	private PreparedStatement updateWatchListCount;
 	private PreparedStatement updateWatchListById;
+	private PreparedStatement insertWatchList;
+	private PreparedStatement deleteWatchListById;
+	private PreparedStatement deleteWatchListItems;
+	private PreparedStatement deleteWatchListItem;
+	private PreparedStatement selectWatchListItem;
+	private PreparedStatement selectWatchListStockSymbols;
+	private PreparedStatement selectWatchCount;
+	private PreparedStatement decrementWatchCount;
 
 	@PostConstruct
 	public void init() {
@@ -84,7 +104,14 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 		selectWatchListCountByUserId = prepare("SELECT COUNT(*) FROM WatchList WHERE user_id=?");
 		updateWatchListCount = prepare("UPDATE StockCount SET watch_count = watch_count+1 WHERE stock_symbol = ?");
 		updateWatchListById = prepare("UPDATE WatchList SET display_name=?, visibility=?, active=?, updated=? WHERE watchlist_id=?");
-		
+		insertWatchList = prepare("INSERT INTO WatchList (watchlist_id, user_id, display_name, visibility, active, updated) VALUES (?, ?, ?, ?, ?, ?)");
+		deleteWatchListById = prepare("DELETE FROM WatchList WHERE watchlist_id=?");
+		deleteWatchListItems = prepare("DELETE FROM WatchListItem WHERE watchlist_id=?");
+		deleteWatchListItem = prepare("DELETE FROM WatchListItem WHERE watchlist_id=? AND stock_symbol=?");
+		selectWatchListItem = prepare("SELECT watchlist_id, stock_symbol, start_price, created FROM WatchListItem WHERE watchlist_id=? AND stock_symbol=?");
+		selectWatchListStockSymbols = prepare("SELECT stock_symbol FROM WatchListItem WHERE watchlist_id=?");
+		selectWatchCount = prepare("SELECT watch_count FROM StockCount WHERE stock_symbol=?");
+		decrementWatchCount = prepare("UPDATE StockCount SET watch_count = watch_count-1 WHERE stock_symbol=?");
 	}
 
 	@Override
@@ -100,32 +127,33 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 		try {
 			// Get the stock symbols before we delete them from the watch list
 			SortedSet<String> symbols = getWatchListStockSymbols(options, id);
-			RegularStatement statement1 = delete()
-				.from("WatchListItem")
-				.where(eq("watchlist_id", id));
-			Batch batch = batch(statement1);
-			RegularStatement statement2 = delete()
-				.from("WatchList")
-				.where(eq("watchlist_id", id));
-			batch.add(statement2);
+			BatchStatement batch = new BatchStatement();
+			batch.add(deleteWatchListItems.bind(id));
+			batch.add(deleteWatchListById.bind(id));
 			execute(batch, options);
 			// Statements with counter column families cannot be executed in a batch
 			if(!symbols.isEmpty()) {
-				Statement statement3 = update("StockCount")
-					.with(decr("watch_count"))
-					.where(in("stock_symbol", (Object[])symbols.toArray()));
-				execute(statement3, options);
+				for(BoundStatement bs : bindIn(DECREMENT_WATCH_COUNTS, 
+					symbols.toArray())) {
+					execute(bs, options);
+				}
+				for(String symbol : symbols) {
+					leaderboard.add(symbol, -1);
+				}
 			}
 		} catch(DriverException e) {
 			throw new DAOException(e);
 		}
 	}
 
-	private int getWatchListItemCount(StatementOptions options, UUID id) {
+	private BoundStatement bindWatchListItemCount(UUID id) {
 		BoundStatement bs = selectWatchListItemCount.bind();
 		bs.setUUID("watchlist_id", id);
-		Row row = execute(bs, options).one();
-		long count = row.getLong(0);
+		return bs;
+	}
+
+	private static int getCount(ResultSet resultSet) {
+		long count = resultSet.one().getLong(0);
 		if(count > Integer.MAX_VALUE) {
 			throw new IllegalStateException("count is too big");
 		}
@@ -139,21 +167,38 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 
 	@Override
 	public WatchList getWatchList(StatementOptions options, UUID id) {
+		return getResult(getWatchListAsync(options, id));
+	}
+
+	@Override
+	public ListenableFuture<WatchList> getWatchListAsync(UUID id) {
+		return getWatchListAsync(getDefaultOptions(), id);
+	}
+
+	private ListenableFuture<WatchList> getWatchListAsync(
+		StatementOptions options, UUID id) {
 		if(id == null) {
 			throw new IllegalArgumentException("id argument is null");
 		}
-		try {
-			BoundStatement bs = selectWatchListById.bind();
-			bs.setUUID("watchlist_id", id);
-			Row watchListRow = execute(bs, options).one();
-			if(watchListRow == null) {
-				throw new DAOException("no watch list found for specified id");
-			}
-			return WatchListHelper.createWatchList(watchListRow, 
-				getWatchListItemCount(options, id)); 
-		} catch(DriverException e) {
-			throw new DAOException(e);
-		}
+		// The watch list and its item count are read at the same time
+		BoundStatement bs = selectWatchListById.bind();
+		bs.setUUID("watchlist_id", id);
+		List<ListenableFuture<ResultSet>> futures = 
+			new ArrayList<ListenableFuture<ResultSet>>(2);
+		futures.add(executeAsync(bs, options));
+		futures.add(executeAsync(bindWatchListItemCount(id), options));
+		return translateExceptions(Futures.transform(Futures.allAsList(futures), 
+			new Function<List<ResultSet>, WatchList>() {
+				@Override
+				public WatchList apply(List<ResultSet> resultSets) {
+					Row watchListRow = resultSets.get(0).one();
+					if(watchListRow == null) {
+						throw new DAOException("no watch list found for specified id");
+					}
+					return WatchListHelper.createWatchList(watchListRow, 
+						getCount(resultSets.get(1)));
+				}
+			}));
 	}
 
 	@Override
@@ -163,18 +208,25 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 
 	@Override
 	public int getWatchListCountByUserId(StatementOptions options, UUID userId) {
-		try {
-			BoundStatement bs = selectWatchListCountByUserId.bind();
-			bs.setUUID("user_id", userId);
-			Row row = execute(bs, options).one();
-			long count = row.getLong(0);
-			if(count > Integer.MAX_VALUE) {
-				throw new IllegalStateException("count is too big");
+		return getResult(getWatchListCountByUserIdAsync(options, userId));
+	}
+
+	@Override
+	public ListenableFuture<Integer> getWatchListCountByUserIdAsync(UUID userId) {
+		return getWatchListCountByUserIdAsync(getDefaultOptions(), userId);
+	}
+
+	@Override
+	public ListenableFuture<Integer> getWatchListCountByUserIdAsync(
+		StatementOptions options, UUID userId) {
+		BoundStatement bs = selectWatchListCountByUserId.bind();
+		bs.setUUID("user_id", userId);
+		return executeAsync(bs, options, new Function<ResultSet, Integer>() {
+			@Override
+			public Integer apply(ResultSet resultSet) {
+				return getCount(resultSet);
 			}
-			return (int)count;
-		} catch(DriverException e) {
-			throw new DAOException(e);
-		}
+		});
 	}
 
 	@Override
@@ -184,22 +236,51 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 
 	@Override
 	public SortedSet<WatchList> getWatchListsByUserId(StatementOptions options, UUID userId) {
+		return getResult(getWatchListsByUserIdAsync(options, userId));
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<WatchList>> getWatchListsByUserIdAsync(
+		UUID userId) {
+		return getWatchListsByUserIdAsync(getDefaultOptions(), userId);
+	}
+
+	private ListenableFuture<SortedSet<WatchList>> getWatchListsByUserIdAsync(
+		final StatementOptions options, UUID userId) {
 		if(userId == null) {
 			throw new IllegalArgumentException("userId argument is null");
 		}
-		SortedSet<WatchList> watchLists = new TreeSet<WatchList>();
-		try {
-			BoundStatement bs = selectWatchListsByUserId.bind();
-			bs.setUUID("user_id", userId);
-			for(Row row : execute(bs, options)) {
-				UUID id = row.getUUID("watchlist_id"); 
-				watchLists.add(WatchListHelper.createWatchList(row, 
-					getWatchListItemCount(options, id))); 
-			}
-		} catch(DriverException e) {
-			throw new DAOException(e);
-		}
-		return watchLists;
+		BoundStatement bs = selectWatchListsByUserId.bind();
+		bs.setUUID("user_id", userId);
+		return translateExceptions(transform(executeAsync(bs, options), 
+			new AsyncFunction<ResultSet, SortedSet<WatchList>>() {
+				@Override
+				public ListenableFuture<SortedSet<WatchList>> apply(
+					ResultSet resultSet) {
+					// Count the items of every watch list concurrently
+					final List<Row> rows = resultSet.all();
+					List<ListenableFuture<ResultSet>> counts = 
+						new ArrayList<ListenableFuture<ResultSet>>(rows.size());
+					for(Row row : rows) {
+						counts.add(executeAsync(bindWatchListItemCount(
+							row.getUUID("watchlist_id")), options));
+					}
+					return Futures.transform(Futures.allAsList(counts), 
+						new Function<List<ResultSet>, SortedSet<WatchList>>() {
+							@Override
+							public SortedSet<WatchList> apply(
+								List<ResultSet> resultSets) {
+								SortedSet<WatchList> watchLists = 
+									new TreeSet<WatchList>();
+								for(int i = 0; i < rows.size(); i++) {
+									watchLists.add(WatchListHelper.createWatchList(
+										rows.get(i), getCount(resultSets.get(i))));
+								}
+								return watchLists;
+							}
+						});
+				}
+			}));
 	}
 
 	@Override
@@ -216,11 +297,7 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 		// We assume that the watchlist id is valid
 		SortedSet<String> stocks = new TreeSet<String>();
 		try {
-			Statement statement = select()
-					.column("stock_symbol")
-				.from("WatchListItem")
-				.where(eq("watchlist_id", id));
-			for(Row row : execute(statement, options)) {
+			for(Row row : execute(selectWatchListStockSymbols.bind(id), options)) {
 				stocks.add(row.getString("stock_symbol"));
 			}
 		} catch(DriverException e) {
@@ -236,24 +313,62 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 
 	@Override
 	public SortedSet<WatchListItem> getWatchListItems(StatementOptions options, UUID id) {
+		return getResult(getWatchListItemsAsync(options, id));
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<WatchListItem>> getWatchListItemsAsync(
+		UUID id) {
+		return getWatchListItemsAsync(getDefaultOptions(), id);
+	}
+
+	private ListenableFuture<SortedSet<WatchListItem>> getWatchListItemsAsync(
+		StatementOptions options, UUID id) {
 		if(id == null) {
 			throw new IllegalArgumentException("id argument is null");
 		}
 
 		// We assume that the watchlist id is valid
-		SortedSet<WatchListItem> items = new TreeSet<WatchListItem>();
-		try {
-			BoundStatement bs = selectWatchListItems.bind();
-			bs.setUUID("watchlist_id", id);
-			for(Row row : execute(bs, options)) {
-				items.add(WatchListHelper.createWatchListItem(row, 
-					stockDAO.getStockBySymbol(options, 
-						row.getString("stock_symbol"))));
-			}
-		} catch(DriverException e) {
-			throw new DAOException(e);
-		}
-		return items;
+		BoundStatement bs = selectWatchListItems.bind();
+		bs.setUUID("watchlist_id", id);
+		return translateExceptions(transform(executeAsync(bs, options), 
+			new AsyncFunction<ResultSet, SortedSet<WatchListItem>>() {
+				@Override
+				public ListenableFuture<SortedSet<WatchListItem>> apply(
+					ResultSet resultSet) {
+					final List<Row> rows = resultSet.all();
+					if(rows.isEmpty()) {
+						return Futures.immediateFuture(
+							(SortedSet<WatchListItem>)new TreeSet<WatchListItem>());
+					}
+					// Resolve all of the stocks in one batch instead of one at 
+					// a time
+					String[] symbols = new String[rows.size()];
+					for(int i = 0; i < symbols.length; i++) {
+						symbols[i] = rows.get(i).getString("stock_symbol");
+					}
+					return Futures.transform(
+						stockLookupDAO.getStocksBySymbolsAsync(symbols), 
+						new Function<Map<String, Stock>, SortedSet<WatchListItem>>() {
+							@Override
+							public SortedSet<WatchListItem> apply(
+								Map<String, Stock> stocks) {
+								SortedSet<WatchListItem> items = 
+									new TreeSet<WatchListItem>();
+								for(Row row : rows) {
+									Stock stock = stocks.get(
+										row.getString("stock_symbol"));
+									if(stock == null) {
+										throw new DAOException("no stock found with specified symbol");
+									}
+									items.add(WatchListHelper.createWatchListItem(
+										row, stock));
+								}
+								return items;
+							}
+						});
+				}
+			}));
 	}
 
 	@Override
@@ -273,14 +388,10 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 		UUID id = UUIDs.timeBased();
 		Date now = new Date(UUIDs.unixTimestamp(id));
 		try {
-			Statement statement = insertInto("WatchList")
-				.value("watchlist_id", id)
-				.value("user_id", watchList.getUserId())
-				.value("display_name", watchList.getDisplayName())
-				.value("visibility", watchList.getVisibility().name())
-				.value("active", watchList.isActive())
-				.value("updated", now);
-			execute(statement, options);
+			BoundStatement bs = insertWatchList.bind(id, watchList.getUserId(), 
+				watchList.getDisplayName(), watchList.getVisibility().name(), 
+				watchList.isActive(), now);
+			execute(bs, idempotent(options));
 		} catch(DriverException e) {
 			throw new DAOException(e);
 		}
@@ -313,7 +424,7 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 			bs.setBool("active", watchList.isActive());
 			bs.setDate("updated", now);
 			bs.setUUID("watchlist_id", id);
-			execute(bs, options);
+			execute(bs, idempotent(options));
 		} catch(DriverException e) {
 			throw new DAOException(e);
 		}
@@ -366,6 +477,7 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 				BoundStatement bs2 = updateWatchListCount.bind();
 				bs2.setString("stock_symbol", stockSymbol);
 				execute(bs2, options);
+				leaderboard.add(stockSymbol, 1);
 			}
 		} catch(DriverException e) {
 			throw new DAOException(e);
@@ -394,29 +506,16 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 		try {
 			// We need to know if the stock was actually on the watch list 
 			// before we decrement the counters.
-			Statement statement1 = select()
-					.column("watchlist_id")
-					.column("stock_symbol")
-					.column("start_price")
-					.column("created")
-				.from("WatchListItem")
-				.where(eq("watchlist_id", id))
-					.and(eq("stock_symbol", stockSymbol));
-			Row row = execute(statement1, options).one();
+			Row row = execute(selectWatchListItem.bind(id, stockSymbol), 
+				options).one();
 			if(row == null) {
 				throw new IllegalArgumentException(
 					"stock symbol is not on the specified watchList");
 			}
-			Statement statement2 = delete()
-					.from("WatchListItem")
-					.where(eq("watchlist_id", id))
-						.and(eq("stock_symbol",stockSymbol));
-			execute(statement2, options);
+			execute(deleteWatchListItem.bind(id, stockSymbol), idempotent(options));
 			// Statements with counter column families cannot be executed in a batch
-			Statement statement3 = update("StockCount")
-				.with(decr("watch_count"))
-				.where(eq("stock_symbol", stockSymbol));
-			execute(statement3, options);
+			execute(decrementWatchCount.bind(stockSymbol), options);
+			leaderboard.add(stockSymbol, -1);
 		} catch(DriverException e) {
 			throw new DAOException(e);
 		}
@@ -429,18 +528,26 @@ public class WatchListDAOImpl extends CassandraDAO implements CassandraWatchList
 
 	@Override
 	public int getWatchCount(StatementOptions options, String symbol) {
-		try {
-			Statement statement = select().column("watch_count")
-				.from("StockCount")
-				.where(eq("stock_symbol", symbol));
-			Row row = execute(statement, options).one();
-			long result = row == null ? 0 : row.getLong("watch_count");
-			if(result > Integer.MAX_VALUE) {
-				throw new IllegalStateException("watch count is too big");
+		return getResult(getWatchCountAsync(options, symbol));
+	}
+
+	@Override
+	public ListenableFuture<Integer> getWatchCountAsync(String symbol) {
+		return getWatchCountAsync(getDefaultOptions(), symbol);
+	}
+
+	private ListenableFuture<Integer> getWatchCountAsync(
+		StatementOptions options, String symbol) {
+		return executeAsync(selectWatchCount.bind(symbol), options, new Function<ResultSet, Integer>() {
+			@Override
+			public Integer apply(ResultSet resultSet) {
+				Row row = resultSet.one();
+				long result = row == null ? 0 : row.getLong("watch_count");
+				if(result > Integer.MAX_VALUE) {
+					throw new IllegalStateException("watch count is too big");
+				}
+				return (int)result;
 			}
-			return (int)result;
-		} catch(DriverException e) {
-			throw new DAOException(e);
-		}
+		});
 	}
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.csv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.DateUtils;
+import org.stockwatcher.data.DAOException;
+
+/**
+ * Provides access to the comma separated files in the csv folder. These are 
+ * the files used to seed the Cassandra schema (see cql/stockwatcher.cql) and
+ * the in-memory DAO implementations.
+ * 
+ * @author Tony Piazza
+ */
+public class CsvDataSource {
+	private static final String[] DATE_FORMATS = {"yyyy-MM-dd", 
+		"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm:ssZ"};
+
+	private File directory = new File("csv");
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public void setDirectory(File directory) {
+		if(directory == null) {
+			throw new IllegalArgumentException("directory is null");
+		}
+		this.directory = directory;
+	}
+
+	/**
+	 * Opens a reader for the specified file. The caller must close it.
+	 */
+	public CsvReader open(String fileName) throws IOException {
+		File file = new File(directory, fileName);
+		return new CsvReader(new InputStreamReader(new FileInputStream(file), 
+			"UTF-8"));
+	}
+
+	/**
+	 * Reads every record in the specified file. Intended for the smaller 
+	 * files; use open to stream the larger ones.
+	 */
+	public List<String[]> readAll(String fileName) throws DAOException {
+		List<String[]> records = new ArrayList<String[]>();
+		try {
+			CsvReader reader = open(fileName);
+			try {
+				String[] record;
+				while((record = reader.readRecord()) != null) {
+					records.add(record);
+				}
+			} finally {
+				reader.close();
+			}
+		} catch(IOException e) {
+			throw new DAOException(e);
+		}
+		return records;
+	}
+
+	/**
+	 * Parses a date or timestamp in one of the formats used by the csv files.
+	 */
+	public static Date parseDate(String text) throws DAOException {
+		try {
+			return DateUtils.parseDate(text, DATE_FORMATS);
+		} catch(ParseException e) {
+			throw new DAOException(e);
+		}
+	}
+
+	/**
+	 * Formats a timestamp in a format that parseDate accepts.
+	 */
+	public static String formatDate(Date date) {
+		return DateFormatUtils.format(date, DATE_FORMATS[2]);
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader for the comma separated files in the csv folder (the 
+ * format written and read by the cqlsh COPY command). Records are read one 
+ * at a time so that arbitrarily large files can be processed without being 
+ * loaded into memory. Fields may be enclosed in double quotes, in which case 
+ * they can contain commas, line breaks and doubled ("") quote characters.
+ * 
+ * @author Tony Piazza
+ */
+public class CsvReader implements Closeable {
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Reader reader;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private final StringBuilder field = new StringBuilder();
+	private int position;
+	private int limit;
+	private long recordNumber;
+
+	public CsvReader(Reader reader) {
+		if(reader == null) {
+			throw new IllegalArgumentException("reader is null");
+		}
+		this.reader = reader;
+	}
+
+	/**
+	 * Returns the fields of the next record, or null if the end of the input 
+	 * has been reached. Blank lines are skipped.
+	 */
+	public String[] readRecord() throws IOException {
+		List<String> fields = new ArrayList<String>();
+		int c = read();
+		while(c == '\r' || c == '\n') {
+			c = read();
+		}
+		if(c == -1) {
+			return null;
+		}
+		boolean quoted = false;
+		boolean wasQuoted = false;
+		while(true) {
+			if(quoted) {
+				if(c == -1) {
+					throw new IOException("unterminated quoted field in record " + 
+						(recordNumber + 1));
+				}
+				if(c == '"') {
+					c = read();
+					if(c == '"') {
+						field.append('"');
+					} else {
+						quoted = false;
+						continue;
+					}
+				} else {
+					field.append((char)c);
+				}
+			} else if(c == '"' && field.length() == 0 && !wasQuoted) {
+				quoted = true;
+				wasQuoted = true;
+			} else if(c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+				wasQuoted = false;
+			} else if(c == '\r' || c == '\n' || c == -1) {
+				fields.add(field.toString());
+				field.setLength(0);
+				break;
+			} else {
+				field.append((char)c);
+			}
+			c = read();
+		}
+		recordNumber++;
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	/**
+	 * Returns the number of records read so far.
+	 */
+	public long getRecordNumber() {
+		return recordNumber;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	private int read() throws IOException {
+		if(position == limit) {
+			limit = reader.read(buffer, 0, buffer.length);
+			position = 0;
+			if(limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position++];
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.memory;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.stockwatcher.data.ApplicationPropertyDAO;
+import org.stockwatcher.data.AsyncApplicationPropertyDAO;
+import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.csv.CsvDataSource;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * In-memory implementation of the ApplicationPropertyDAO interface. Property
+ * values are read as text from the applicationproperties file in the csv 
+ * folder and converted to the requested type on access.
+ * 
+ * @author Tony Piazza
+ */
+@Repository
+@Profile("memory")
+public class MemoryApplicationPropertyDAO implements ApplicationPropertyDAO, 
+	AsyncApplicationPropertyDAO {
+	@Autowired
+	private CsvDataSource dataSource;
+
+	private final ConcurrentMap<String, String> properties = 
+		new ConcurrentHashMap<String, String>();
+
+	@PostConstruct
+	public void init() {
+		for(String[] record : dataSource.readAll("applicationproperties.csv")) {
+			properties.put(record[0], record[1]);
+		}
+	}
+
+	/**
+	 * Sets the value of a property, replacing any existing value.
+	 */
+	public void setProperty(String propertyName, String value) {
+		if(propertyName == null || propertyName.length() == 0) {
+			throw new IllegalArgumentException("propertyName is null or zero length");
+		}
+		if(value == null) {
+			throw new IllegalArgumentException("value is null");
+		}
+		properties.put(propertyName, value);
+	}
+
+	private String getValue(String propertyName) {
+		String value = properties.get(propertyName);
+		if(value == null) {
+			throw new DAOException("no property found with specified name");
+		}
+		return value;
+	}
+
+	@Override
+	public boolean getBoolean(String propertyName) {
+		return Boolean.parseBoolean(getValue(propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Boolean> getBooleanAsync(String propertyName) {
+		try {
+			return Futures.immediateFuture(getBoolean(propertyName));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public int getInt(String propertyName) {
+		return Integer.parseInt(getValue(propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Integer> getIntAsync(String propertyName) {
+		try {
+			return Futures.immediateFuture(getInt(propertyName));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public long getLong(String propertyName) {
+		return Long.parseLong(getValue(propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Long> getLongAsync(String propertyName) {
+		try {
+			return Futures.immediateFuture(getLong(propertyName));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public Date getDate(String propertyName) {
+		return CsvDataSource.parseDate(getValue(propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Date> getDateAsync(String propertyName) {
+		try {
+			return Futures.immediateFuture(getDate(propertyName));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public float getFloat(String propertyName) {
+		return Float.parseFloat(getValue(propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Float> getFloatAsync(String propertyName) {
+		try {
+			return Futures.immediateFuture(getFloat(propertyName));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public double getDouble(String propertyName) {
+		return Double.parseDouble(getValue(propertyName));
+	}
+
+	@Override
+	public ListenableFuture<Double> getDoubleAsync(String propertyName) {
+		try {
+			return Futures.immediateFuture(getDouble(propertyName));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public BigDecimal getDecimal(String propertyName) {
+		return new BigDecimal(getValue(propertyName));
+	}
+
+	@Override
+	public ListenableFuture<BigDecimal> getDecimalAsync(String propertyName) {
+		try {
+			return Futures.immediateFuture(getDecimal(propertyName));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public UUID getUUID(String propertyName) {
+		return UUID.fromString(getValue(propertyName));
+	}
+
+	@Override
+	public ListenableFuture<UUID> getUUIDAsync(String propertyName) {
+		try {
+			return Futures.immediateFuture(getUUID(propertyName));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public String getString(String propertyName) {
+		return getValue(propertyName);
+	}
+
+	@Override
+	public ListenableFuture<String> getStringAsync(String propertyName) {
+		try {
+			return Futures.immediateFuture(getString(propertyName));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public void setBoolean(String propertyName, boolean value) {
+		setProperty(propertyName, String.valueOf(value));
+	}
+
+	@Override
+	public void setDate(String propertyName, Date value) {
+		if(value == null) {
+			throw new IllegalArgumentException("value is null");
+		}
+		setProperty(propertyName, CsvDataSource.formatDate(value));
+	}
+}
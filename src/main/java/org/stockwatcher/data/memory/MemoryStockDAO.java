@@ -0,0 +1,575 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.memory;
+
+import static org.stockwatcher.data.csv.CsvDataSource.parseDate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.stockwatcher.data.AsyncStockDAO;
+import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.Page;
+import org.stockwatcher.data.StockCriteria;
+import org.stockwatcher.data.StockDAO;
+import org.stockwatcher.data.StockScreener;
+import org.stockwatcher.data.StockSearchIndex;
+import org.stockwatcher.data.TradeListener;
+import org.stockwatcher.data.WatchCountLeaderboard;
+import org.stockwatcher.data.csv.CsvDataSource;
+import org.stockwatcher.domain.Comment;
+import org.stockwatcher.domain.Exchange;
+import org.stockwatcher.domain.Industry;
+import org.stockwatcher.domain.Price;
+import org.stockwatcher.domain.Sector;
+import org.stockwatcher.domain.Stock;
+import org.stockwatcher.domain.Trade;
+
+import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * In-memory implementation of the StockDAO interface, seeded from the files
+ * in the csv folder. Used with the "memory" profile to exercise the web tier 
+ * without a Cassandra cluster.
+ * 
+ * @author Tony Piazza
+ */
+@Repository
+@Profile("memory")
+public class MemoryStockDAO implements StockDAO, AsyncStockDAO {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MemoryStockDAO.class);
+
+	private static final UUID LAST_UUID = 
+		new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+	/**
+	 * Orders trades by timestamp, then by id, which is the order they are 
+	 * stored in within a Trade partition.
+	 */
+	static final Comparator<Trade> TRADE_TIME_ORDER = new Comparator<Trade>() {
+		@Override
+		public int compare(Trade t1, Trade t2) {
+			int result = t1.getTimestamp().compareTo(t2.getTimestamp());
+			return result == 0 ? t1.getId().compareTo(t2.getId()) : result;
+		}
+	};
+
+	@Autowired
+	private CsvDataSource dataSource;
+	@Autowired
+	private WatchCountLeaderboard leaderboard;
+	@Autowired(required=false)
+	private List<TradeListener> tradeListeners = Collections.emptyList();
+
+	private final SortedSet<Industry> industries = new TreeSet<Industry>();
+	private final SortedSet<Exchange> exchanges = new TreeSet<Exchange>();
+	private final ConcurrentMap<String, Stock> stocks = 
+		new ConcurrentHashMap<String, Stock>();
+	private final StockScreener screener = new StockScreener();
+	private final StockSearchIndex searchIndex = new StockSearchIndex();
+	private final ConcurrentMap<String, NavigableMap<Date, Long>> closePrices = 
+		new ConcurrentHashMap<String, NavigableMap<Date, Long>>();
+	private final ConcurrentMap<TradeKey, NavigableSet<Trade>> trades = 
+		new ConcurrentHashMap<TradeKey, NavigableSet<Trade>>();
+	private final ConcurrentMap<String, NavigableMap<UUID, Comment>> comments = 
+		new ConcurrentHashMap<String, NavigableMap<UUID, Comment>>();
+	private final AtomicLongMap<String> watchCounts = AtomicLongMap.create();
+	private final AtomicLongMap<String> viewCounts = AtomicLongMap.create();
+
+	@PostConstruct
+	public void init() {
+		Map<Integer, Sector> sectors = new HashMap<Integer, Sector>();
+		Map<Integer, Industry> industryMap = new HashMap<Integer, Industry>();
+		for(String[] record : dataSource.readAll("industries.csv")) {
+			Integer sectorId = Integer.valueOf(record[2]);
+			Sector sector = sectors.get(sectorId);
+			if(sector == null) {
+				sector = new Sector(sectorId, record[3]);
+				sectors.put(sectorId, sector);
+			}
+			Industry industry = new Industry(Integer.valueOf(record[0]), 
+				record[1], sector);
+			industryMap.put(industry.getId(), industry);
+			industries.add(industry);
+		}
+		for(String[] record : dataSource.readAll("exchanges.csv")) {
+			if(Boolean.parseBoolean(record[2])) {
+				exchanges.add(new Exchange(record[0], record[1], 
+					Currency.getInstance(record[3])));
+			}
+		}
+		for(String[] record : dataSource.readAll("stocks.csv")) {
+			Integer industryId = Integer.valueOf(record[5]);
+			Industry industry = industryMap.get(industryId);
+			if(industry == null) {
+				industry = new Industry(industryId, record[6], new Sector(
+					Integer.valueOf(record[8]), record[9]));
+			}
+			Stock stock = new Stock(record[0], record[2], record[4], industry, 
+				Price.parse(record[3]), parseDate(record[7]), 
+				Boolean.parseBoolean(record[1]));
+			stocks.put(stock.getSymbol(), stock);
+		}
+		screener.rebuild(stocks.values());
+		searchIndex.rebuild(stocks.values());
+		for(String[] record : dataSource.readAll("dailysummaries.csv")) {
+			getClosePrices(record[0]).put(parseDate(record[1]), 
+				Price.parse(record[2]));
+		}
+		LOGGER.info("Loaded {} stocks and {} industries", stocks.size(), 
+			industries.size());
+	}
+
+	/**
+	 * Adjusts the number of watch lists a stock is on. Called by the 
+	 * MemoryWatchListDAO, standing in for the StockCount table.
+	 */
+	void addWatchCount(String symbol, long delta) {
+		watchCounts.addAndGet(symbol, delta);
+		leaderboard.add(symbol, delta);
+	}
+
+	long getWatchCount(String symbol) {
+		return watchCounts.get(symbol);
+	}
+
+	long getViewCount(String symbol) {
+		return viewCounts.get(symbol);
+	}
+
+	private NavigableMap<Date, Long> getClosePrices(String symbol) {
+		NavigableMap<Date, Long> prices = closePrices.get(symbol);
+		if(prices == null) {
+			prices = new ConcurrentSkipListMap<Date, Long>(
+				Collections.reverseOrder());
+			NavigableMap<Date, Long> existing = 
+				closePrices.putIfAbsent(symbol, prices);
+			if(existing != null) {
+				prices = existing;
+			}
+		}
+		return prices;
+	}
+
+	@Override
+	public Stock getStockBySymbol(String symbol) {
+		if(symbol == null) {
+			throw new IllegalArgumentException("symbol is null");
+		}
+		Stock stock = stocks.get(symbol);
+		if(stock == null) {
+			throw new DAOException("no stock found with specified symbol");
+		}
+		return stock;
+	}
+
+	@Override
+	public ListenableFuture<Stock> getStockBySymbolAsync(String symbol) {
+		try {
+			return Futures.immediateFuture(getStockBySymbol(symbol));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public Map<String, Stock> getStocksBySymbols(String... symbols) {
+		if(symbols == null || symbols.length == 0) {
+			throw new IllegalArgumentException("symbols argument is null or zero length");
+		}
+		Map<String, Stock> stockMap = new TreeMap<String, Stock>();
+		for(String symbol : symbols) {
+			Stock stock = stocks.get(symbol);
+			if(stock != null) {
+				stockMap.put(symbol, stock);
+			}
+		}
+		return stockMap;
+	}
+
+	@Override
+	public ListenableFuture<Map<String, Stock>> getStocksBySymbolsAsync(
+		String... symbols) {
+		try {
+			return Futures.immediateFuture(getStocksBySymbols(symbols));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public SortedSet<Industry> getIndustries() {
+		return new TreeSet<Industry>(industries);
+	}
+
+	@Override
+	public SortedSet<Exchange> getExchanges() {
+		if(exchanges.isEmpty()) {
+			throw new DAOException("no active exchanges found");
+		}
+		return new TreeSet<Exchange>(exchanges);
+	}
+
+	@Override
+	public SortedSet<Stock> findStocks(StockCriteria criteria) {
+		validateCriteria(criteria);
+		SortedSet<Stock> result = new TreeSet<Stock>();
+		for(String symbol : screener.screen(criteria)) {
+			result.add(stocks.get(symbol));
+		}
+		return result;
+	}
+
+	@Override
+	public Page<Stock> findStocks(StockCriteria criteria, String pageToken, 
+		int pageSize) {
+		validateCriteria(criteria);
+		Page<String> symbols = screener.screen(criteria, pageToken, pageSize);
+		List<Stock> page = new ArrayList<Stock>(symbols.getItems().size());
+		for(String symbol : symbols) {
+			page.add(stocks.get(symbol));
+		}
+		return new Page<Stock>(page, symbols.getNextPageToken());
+	}
+
+	@Override
+	public List<Stock> searchStocks(String prefix, int limit) {
+		return searchIndex.search(prefix, limit);
+	}
+
+	private static void validateCriteria(StockCriteria criteria) {
+		if(criteria == null) {
+			throw new IllegalArgumentException("criteria is null");
+		}
+		Integer[] industryIds = criteria.getIndustryIds();
+		if(industryIds == null || industryIds.length == 0) {
+			throw new IllegalArgumentException("industryIds is null or empty");
+		}
+		String[] exchangeIds = criteria.getExchangeIds();
+		if(exchangeIds == null || exchangeIds.length == 0) {
+			throw new IllegalArgumentException("exchangeIds is null or empty");
+		}
+	}
+
+	@Override
+	public SortedSet<Trade> getTradesBySymbolAndDate(String symbol, Date tradeDate) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		if(tradeDate == null) {
+			throw new IllegalArgumentException("tradeDate is null");
+		}
+		NavigableSet<Trade> partition = trades.get(new TradeKey(symbol, tradeDate));
+		return partition == null ? new TreeSet<Trade>() : 
+			new TreeSet<Trade>(partition);
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<Trade>> getTradesBySymbolAndDateAsync(
+		String symbol, Date tradeDate) {
+		try {
+			return Futures.immediateFuture(getTradesBySymbolAndDate(symbol, tradeDate));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public List<Trade> getTradesAfter(String symbol, Date tradeDate, 
+		Date timestamp, UUID tradeId, int limit) {
+		if(symbol == null || symbol.length() == 0) {
+			throw new IllegalArgumentException("symbol is null or zero length");
+		}
+		if(tradeDate == null) {
+			throw new IllegalArgumentException("tradeDate is null");
+		}
+		if(timestamp == null) {
+			throw new IllegalArgumentException("timestamp is null");
+		}
+		if(limit < 1) {
+			throw new IllegalArgumentException("limit is less than 1");
+		}
+		List<Trade> page = new ArrayList<Trade>();
+		NavigableSet<Trade> partition = trades.get(new TradeKey(symbol, tradeDate));
+		if(partition != null) {
+			// Without a trade id every trade at the cursor's timestamp is skipped
+			Trade cursor = new Trade(tradeId == null ? LAST_UUID : tradeId, 
+				timestamp, "-", symbol, 0L, 0);
+			for(Trade trade : partition.tailSet(cursor, false)) {
+				if(page.size() == limit) {
+					break;
+				}
+				page.add(trade);
+			}
+		}
+		return page;
+	}
+
+	@Override
+	public ListenableFuture<List<Trade>> getTradesAfterAsync(String symbol, 
+		Date tradeDate, Date timestamp, UUID tradeId, int limit) {
+		try {
+			return Futures.immediateFuture(getTradesAfter(symbol, tradeDate, timestamp, 
+				tradeId, limit));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public Map<String, BigDecimal> getCurrentPriceForSymbols(String... symbols) {
+		if(symbols == null || symbols.length == 0) {
+			throw new IllegalArgumentException("symbols argument is null or zero length");
+		}
+		Map<String, BigDecimal> priceMap = new TreeMap<String, BigDecimal>();
+		for(String symbol : symbols) {
+			Stock stock = stocks.get(symbol);
+			if(stock != null && stock.isActive()) {
+				priceMap.put(symbol, stock.getCurrentPrice());
+			}
+		}
+		return priceMap;
+	}
+
+	@Override
+	public BigDecimal getLastClosePriceForSymbol(String symbol) {
+		NavigableMap<Date, Long> prices = closePrices.get(symbol);
+		if(prices == null || prices.isEmpty()) {
+			throw new DAOException("no daily summary found for specified symbol");
+		}
+		return Price.toBigDecimal(prices.firstEntry().getValue());
+	}
+
+	@Override
+	public ListenableFuture<BigDecimal> getLastClosePriceForSymbolAsync(
+		String symbol) {
+		try {
+			return Futures.immediateFuture(getLastClosePriceForSymbol(symbol));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public List<Stock> getMostWatchedStocks(int limit) {
+		List<Stock> result = new ArrayList<Stock>(limit);
+		for(String symbol : leaderboard.getMostWatchedSymbols(limit)) {
+			result.add(getStockBySymbol(symbol));
+		}
+		return result;
+	}
+
+	@Override
+	public ListenableFuture<List<Stock>> getMostWatchedStocksAsync(int limit) {
+		try {
+			return Futures.immediateFuture(getMostWatchedStocks(limit));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public SortedSet<Comment> getStockCommentsBySymbol(String symbol, int limit) {
+		SortedSet<Comment> result = new TreeSet<Comment>();
+		NavigableMap<UUID, Comment> partition = comments.get(symbol);
+		if(partition != null) {
+			Iterator<Comment> iter = partition.values().iterator();
+			while(iter.hasNext() && result.size() < limit) {
+				Comment comment = iter.next();
+				if(comment.isActive()) {
+					result.add(copy(comment));
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<Comment>> getStockCommentsBySymbolAsync(
+		String symbol, int limit) {
+		try {
+			return Futures.immediateFuture(getStockCommentsBySymbol(symbol, limit));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public void insertStockComment(String symbol, Comment comment) {
+		UUID commentId = UUIDs.timeBased();
+		comment.setId(commentId);
+		comment.setCreated(new Date(UUIDs.unixTimestamp(commentId)));
+		NavigableMap<UUID, Comment> partition = comments.get(symbol);
+		if(partition == null) {
+			// newest first, as with the StockCommentBySymbol clustering order
+			partition = new ConcurrentSkipListMap<UUID, Comment>(
+				TIMEUUID_DESCENDING);
+			NavigableMap<UUID, Comment> existing = 
+				comments.putIfAbsent(symbol, partition);
+			if(existing != null) {
+				partition = existing;
+			}
+		}
+		partition.put(commentId, copy(comment));
+	}
+
+	@Override
+	public void deleteStockComment(String symbol, UUID userId, UUID commentId) {
+		NavigableMap<UUID, Comment> partition = comments.get(symbol);
+		if(partition != null) {
+			Comment comment = partition.get(commentId);
+			if(comment != null && comment.getUserId().equals(userId)) {
+				Comment deleted = copy(comment);
+				deleted.setActive(false);
+				partition.put(commentId, deleted);
+			}
+		}
+	}
+
+	@Override
+	public void incrementStockViewCount(String symbol) {
+		viewCounts.incrementAndGet(symbol);
+	}
+
+	@Override
+	public void insertTrade(Trade trade) {
+		if(trade == null) {
+			throw new IllegalArgumentException("trade is null");
+		}
+		Date tradeDate = trade.getTradeDate();
+		TradeKey key = new TradeKey(trade.getStockSymbol(), tradeDate);
+		NavigableSet<Trade> partition = trades.get(key);
+		if(partition == null) {
+			partition = new ConcurrentSkipListSet<Trade>(TRADE_TIME_ORDER);
+			NavigableSet<Trade> existing = trades.putIfAbsent(key, partition);
+			if(existing != null) {
+				partition = existing;
+			}
+		}
+		partition.add(trade);
+		// the last trade of the day is the closing price
+		getClosePrices(trade.getStockSymbol()).put(tradeDate, 
+			partition.last().getSharePriceUnits());
+		updateCurrentPrice(trade);
+		for(TradeListener listener : tradeListeners) {
+			try {
+				listener.tradeInserted(trade);
+			} catch(RuntimeException e) {
+				LOGGER.warn("TradeListener threw exception for trade " + 
+					trade.getId(), e);
+			}
+		}
+	}
+
+	/**
+	 * Makes the price of the trade the current price of its stock, unless a 
+	 * later trade has already done so.
+	 */
+	private void updateCurrentPrice(Trade trade) {
+		// Stock.equals ignores the price, so replace(key, old, new) cannot 
+		// tell concurrent updates apart
+		synchronized(stocks) {
+			Stock stock = stocks.get(trade.getStockSymbol());
+			if(stock != null && (stock.getPriceUpdated() == null || 
+				!stock.getPriceUpdated().after(trade.getTimestamp()))) {
+				stocks.put(stock.getSymbol(), new Stock(stock.getSymbol(), 
+					stock.getCompanyName(), stock.getExchangeId(), 
+					stock.getIndustry(), trade.getSharePriceUnits(), 
+					trade.getTimestamp(), stock.isActive()));
+				screener.updatePrice(stock.getSymbol(), trade.getSharePriceUnits());
+			}
+		}
+	}
+
+	private static Comment copy(Comment comment) {
+		Comment copy = new Comment();
+		copy.setId(comment.getId());
+		copy.setUserId(comment.getUserId());
+		copy.setUserDisplayName(comment.getUserDisplayName());
+		copy.setCreated(comment.getCreated());
+		copy.setText(comment.getText());
+		copy.setActive(comment.isActive());
+		return copy;
+	}
+
+	private static final Comparator<UUID> TIMEUUID_DESCENDING = new Comparator<UUID>() {
+		@Override
+		public int compare(UUID u1, UUID u2) {
+			int result = Long.compare(u2.timestamp(), u1.timestamp());
+			return result == 0 ? u2.compareTo(u1) : result;
+		}
+	};
+
+	/**
+	 * Key of a trade partition: the stock symbol and the trade date.
+	 */
+	private static final class TradeKey {
+		private final String symbol;
+		private final long tradeDate;
+
+		TradeKey(String symbol, Date tradeDate) {
+			this.symbol = symbol;
+			this.tradeDate = tradeDate.getTime();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(this == other) {
+				return true;
+			}
+			if(!(other instanceof TradeKey)) {
+				return false;
+			}
+			TradeKey that = (TradeKey)other;
+			return tradeDate == that.tradeDate && symbol.equals(that.symbol);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * symbol.hashCode() + (int)(tradeDate ^ (tradeDate >>> 32));
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.memory;
+
+import static org.stockwatcher.data.csv.CsvDataSource.parseDate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.stockwatcher.data.AsyncUserDAO;
+import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.Page;
+import org.stockwatcher.data.UserDAO;
+import org.stockwatcher.data.WatchListDAO;
+import org.stockwatcher.data.csv.CsvDataSource;
+import org.stockwatcher.domain.User;
+
+import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * In-memory implementation of the UserDAO interface, seeded from the users 
+ * file in the csv folder.
+ * 
+ * @author Tony Piazza
+ */
+@Repository
+@Profile("memory")
+public class MemoryUserDAO implements UserDAO, AsyncUserDAO {
+	@Autowired
+	private CsvDataSource dataSource;
+	@Autowired
+	private WatchListDAO watchListDAO;
+
+	private final ConcurrentNavigableMap<UUID, User> users = 
+		new ConcurrentSkipListMap<UUID, User>();
+
+	@PostConstruct
+	public void init() {
+		for(String[] record : dataSource.readAll("users.csv")) {
+			User user = new User();
+			UUID userId = UUID.fromString(record[0]);
+			user.setId(userId);
+			user.setFirstName(record[1]);
+			user.setLastName(record[2]);
+			user.setDisplayName(record[3]);
+			user.setEmailAddress(record[4]);
+			user.setPostalCode(record[5]);
+			user.setActive(Boolean.parseBoolean(record[6]));
+			user.setCreated(new Date(UUIDs.unixTimestamp(userId)));
+			user.setUpdated(parseDate(record[7]));
+			users.put(userId, user);
+		}
+	}
+
+	private User copy(User source) {
+		User user = new User();
+		user.setId(source.getId());
+		user.setFirstName(source.getFirstName());
+		user.setLastName(source.getLastName());
+		user.setDisplayName(source.getDisplayName());
+		user.setEmailAddress(source.getEmailAddress());
+		user.setPostalCode(source.getPostalCode());
+		user.setActive(source.isActive());
+		user.setCreated(source.getCreated());
+		user.setUpdated(source.getUpdated());
+		user.setWatchListCount(
+			watchListDAO.getWatchListCountByUserId(source.getId()));
+		return user;
+	}
+
+	@Override
+	public SortedSet<User> getUsers() {
+		SortedSet<User> result = new TreeSet<User>();
+		for(User user : users.values()) {
+			result.add(copy(user));
+		}
+		return result;
+	}
+
+	@Override
+	public Page<User> getUsers(String pageToken, int pageSize) {
+		if(pageSize < 1) {
+			throw new IllegalArgumentException("pageSize is less than 1");
+		}
+		Map<UUID, User> remaining = pageToken == null ? users : 
+			users.tailMap(UUID.fromString(Page.parseToken(pageToken, 1)[0]), 
+				false);
+		List<User> page = new ArrayList<User>(pageSize);
+		for(User user : remaining.values()) {
+			if(page.size() == pageSize) {
+				return new Page<User>(page, Page.createToken(
+					page.get(pageSize - 1).getId()));
+			}
+			page.add(copy(user));
+		}
+		return new Page<User>(page, null);
+	}
+
+	@Override
+	public ListenableFuture<Page<User>> getUsersAsync(String pageToken, 
+		int pageSize) {
+		try {
+			return Futures.immediateFuture(getUsers(pageToken, pageSize));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public User getUser(UUID id) {
+		if(id == null) {
+			throw new IllegalArgumentException("id is null");
+		}
+		User user = users.get(id);
+		if(user == null) {
+			throw new DAOException("no user found with specified id");
+		}
+		return copy(user);
+	}
+
+	@Override
+	public ListenableFuture<User> getUserAsync(UUID id) {
+		try {
+			return Futures.immediateFuture(getUser(id));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public User updateUser(User user) {
+		if(user == null) {
+			throw new IllegalArgumentException("user is null");
+		}
+		UUID id = user.getId();
+		if(id == null) {
+			throw new IllegalStateException("id property is null");
+		}
+		User existing = users.get(id);
+		if(existing == null) {
+			throw new DAOException("no user found with specified id");
+		}
+		Date now = new Date();
+		User updated = copy(existing);
+		updated.setFirstName(user.getFirstName());
+		updated.setLastName(user.getLastName());
+		updated.setDisplayName(user.getDisplayName());
+		updated.setEmailAddress(user.getEmailAddress());
+		updated.setPostalCode(user.getPostalCode());
+		updated.setUpdated(now);
+		users.replace(id, updated);
+		user.setUpdated(now);
+		return user;
+	}
+}
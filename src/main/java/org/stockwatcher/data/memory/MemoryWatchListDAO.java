@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.data.memory;
+
+import static org.stockwatcher.data.csv.CsvDataSource.parseDate;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.stockwatcher.data.AsyncWatchListDAO;
+import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.WatchListDAO;
+import org.stockwatcher.data.csv.CsvDataSource;
+import org.stockwatcher.domain.Stock;
+import org.stockwatcher.domain.WatchList;
+import org.stockwatcher.domain.WatchList.Visibility;
+import org.stockwatcher.domain.WatchListItem;
+
+import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * In-memory implementation of the WatchListDAO interface, seeded from the 
+ * files in the csv folder. Watch lists are indexed by user and their items 
+ * by symbol; watch counts are kept by the MemoryStockDAO.
+ * 
+ * @author Tony Piazza
+ */
+@Repository
+@Profile("memory")
+public class MemoryWatchListDAO implements WatchListDAO, AsyncWatchListDAO {
+	@Autowired
+	private CsvDataSource dataSource;
+	@Autowired
+	private MemoryStockDAO stockDAO;
+
+	private final ConcurrentMap<UUID, WatchList> watchLists = 
+		new ConcurrentHashMap<UUID, WatchList>();
+	private final ConcurrentMap<UUID, Set<UUID>> watchListsByUser = 
+		new ConcurrentHashMap<UUID, Set<UUID>>();
+	private final ConcurrentMap<UUID, ConcurrentMap<String, Item>> items = 
+		new ConcurrentHashMap<UUID, ConcurrentMap<String, Item>>();
+
+	@PostConstruct
+	public void init() {
+		for(String[] record : dataSource.readAll("watchlists.csv")) {
+			WatchList watchList = new WatchList();
+			watchList.setId(UUID.fromString(record[0]));
+			watchList.setUserId(UUID.fromString(record[1]));
+			watchList.setDisplayName(record[2]);
+			watchList.setVisibility(Visibility.valueOf(record[3]));
+			watchList.setActive(Boolean.parseBoolean(record[4]));
+			watchList.setCreated(new Date(UUIDs.unixTimestamp(watchList.getId())));
+			watchList.setUpdated(parseDate(record[5]));
+			store(watchList);
+		}
+		for(String[] record : dataSource.readAll("watchlistitems.csv")) {
+			addItem(UUID.fromString(record[0]), record[1], 
+				new Item(new BigDecimal(record[2]), parseDate(record[3])));
+		}
+	}
+
+	private void store(WatchList watchList) {
+		watchLists.put(watchList.getId(), watchList);
+		items.putIfAbsent(watchList.getId(), 
+			new ConcurrentSkipListMap<String, Item>());
+		Set<UUID> ids = watchListsByUser.get(watchList.getUserId());
+		if(ids == null) {
+			ids = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+			Set<UUID> existing = watchListsByUser.putIfAbsent(
+				watchList.getUserId(), ids);
+			if(existing != null) {
+				ids = existing;
+			}
+		}
+		ids.add(watchList.getId());
+	}
+
+	private boolean addItem(UUID id, String stockSymbol, Item item) {
+		ConcurrentMap<String, Item> watchListItems = items.get(id);
+		if(watchListItems == null) {
+			throw new DAOException("no watch list found for specified id");
+		}
+		// only count the stock once, as with the IF NOT EXISTS insert
+		if(watchListItems.putIfAbsent(stockSymbol, item) == null) {
+			stockDAO.addWatchCount(stockSymbol, 1);
+			return true;
+		}
+		return false;
+	}
+
+	private WatchList copy(WatchList source) {
+		WatchList watchList = new WatchList();
+		watchList.setId(source.getId());
+		watchList.setUserId(source.getUserId());
+		watchList.setDisplayName(source.getDisplayName());
+		watchList.setVisibility(source.getVisibility());
+		watchList.setActive(source.isActive());
+		watchList.setCreated(source.getCreated());
+		watchList.setUpdated(source.getUpdated());
+		Map<String, Item> watchListItems = items.get(source.getId());
+		watchList.setItemCount(watchListItems == null ? 0 : 
+			watchListItems.size());
+		return watchList;
+	}
+
+	@Override
+	public void insertWatchList(WatchList watchList) {
+		if(watchList == null) {
+			throw new IllegalArgumentException("watchList argument is null");
+		}
+		if(watchList.getUserId() == null) {
+			throw new IllegalArgumentException("userId property is null");
+		}
+		UUID id = UUIDs.timeBased();
+		Date now = new Date(UUIDs.unixTimestamp(id));
+		watchList.setId(id);
+		watchList.setCreated(now);
+		watchList.setUpdated(now);
+		store(copy(watchList));
+	}
+
+	@Override
+	public void deleteWatchList(UUID id) {
+		if(id == null) {
+			throw new IllegalArgumentException("id argument is null");
+		}
+		WatchList watchList = watchLists.remove(id);
+		if(watchList != null) {
+			Set<UUID> ids = watchListsByUser.get(watchList.getUserId());
+			if(ids != null) {
+				ids.remove(id);
+			}
+		}
+		Map<String, Item> watchListItems = items.remove(id);
+		if(watchListItems != null) {
+			for(String symbol : watchListItems.keySet()) {
+				stockDAO.addWatchCount(symbol, -1);
+			}
+		}
+	}
+
+	@Override
+	public void updateWatchList(WatchList watchList) {
+		if(watchList == null) {
+			throw new IllegalArgumentException("watchList is null");
+		}
+		UUID id = watchList.getId();
+		if(id == null) {
+			throw new IllegalArgumentException("id property is null");
+		}
+		WatchList existing = watchLists.get(id);
+		if(existing == null) {
+			throw new DAOException("no watch list found for specified id");
+		}
+		Date now = new Date();
+		WatchList updated = copy(existing);
+		updated.setDisplayName(watchList.getDisplayName());
+		updated.setVisibility(watchList.getVisibility());
+		updated.setActive(watchList.isActive());
+		updated.setUpdated(now);
+		watchLists.replace(id, updated);
+		watchList.setUpdated(now);
+	}
+
+	@Override
+	public WatchList getWatchList(UUID id) {
+		if(id == null) {
+			throw new IllegalArgumentException("id argument is null");
+		}
+		WatchList watchList = watchLists.get(id);
+		if(watchList == null) {
+			throw new DAOException("no watch list found for specified id");
+		}
+		return copy(watchList);
+	}
+
+	@Override
+	public ListenableFuture<WatchList> getWatchListAsync(UUID id) {
+		try {
+			return Futures.immediateFuture(getWatchList(id));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public SortedSet<WatchList> getWatchListsByUserId(UUID userId) {
+		if(userId == null) {
+			throw new IllegalArgumentException("userId argument is null");
+		}
+		SortedSet<WatchList> result = new TreeSet<WatchList>();
+		Set<UUID> ids = watchListsByUser.get(userId);
+		if(ids != null) {
+			for(UUID id : ids) {
+				WatchList watchList = watchLists.get(id);
+				if(watchList != null) {
+					result.add(copy(watchList));
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<WatchList>> getWatchListsByUserIdAsync(
+		UUID userId) {
+		try {
+			return Futures.immediateFuture(getWatchListsByUserId(userId));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public SortedSet<String> getWatchListStockSymbols(UUID id) {
+		if(id == null) {
+			throw new IllegalArgumentException("id argument is null");
+		}
+		Map<String, Item> watchListItems = items.get(id);
+		return watchListItems == null ? new TreeSet<String>() : 
+			new TreeSet<String>(watchListItems.keySet());
+	}
+
+	@Override
+	public SortedSet<WatchListItem> getWatchListItems(UUID id) {
+		if(id == null) {
+			throw new IllegalArgumentException("id argument is null");
+		}
+		SortedSet<WatchListItem> result = new TreeSet<WatchListItem>();
+		Map<String, Item> watchListItems = items.get(id);
+		if(watchListItems != null) {
+			for(Map.Entry<String, Item> entry : watchListItems.entrySet()) {
+				WatchListItem item = new WatchListItem(
+					stockDAO.getStockBySymbol(entry.getKey()));
+				item.setWatchListId(id);
+				item.setCreated(entry.getValue().created);
+				item.setStartPrice(entry.getValue().startPrice);
+				result.add(item);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public ListenableFuture<SortedSet<WatchListItem>> getWatchListItemsAsync(
+		UUID id) {
+		try {
+			return Futures.immediateFuture(getWatchListItems(id));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public void addWatchListStock(UUID id, String stockSymbol) {
+		if(id == null) {
+			throw new IllegalArgumentException("id argument is null");
+		}
+		Stock stock = stockDAO.getStockBySymbol(stockSymbol);
+		addItem(id, stockSymbol, new Item(stock.getCurrentPrice(), new Date()));
+	}
+
+	@Override
+	public void removeWatchListStock(UUID id, String stockSymbol) {
+		if(id == null) {
+			throw new IllegalArgumentException("id argument is null");
+		}
+		Map<String, Item> watchListItems = items.get(id);
+		if(watchListItems == null || watchListItems.remove(stockSymbol) == null) {
+			throw new IllegalArgumentException(
+				"stock symbol is not on the specified watchList");
+		}
+		stockDAO.addWatchCount(stockSymbol, -1);
+	}
+
+	@Override
+	public int getWatchCount(String symbol) {
+		long result = stockDAO.getWatchCount(symbol);
+		if(result > Integer.MAX_VALUE) {
+			throw new IllegalStateException("watch count is too big");
+		}
+		return (int)result;
+	}
+
+	@Override
+	public ListenableFuture<Integer> getWatchCountAsync(String symbol) {
+		try {
+			return Futures.immediateFuture(getWatchCount(symbol));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public int getWatchListCountByUserId(UUID userId) {
+		Set<UUID> ids = watchListsByUser.get(userId);
+		return ids == null ? 0 : ids.size();
+	}
+
+	@Override
+	public ListenableFuture<Integer> getWatchListCountByUserIdAsync(UUID userId) {
+		try {
+			return Futures.immediateFuture(getWatchListCountByUserId(userId));
+		} catch(DAOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	/**
+	 * The columns of a WatchListItem row that are not part of the stock.
+	 */
+	private static final class Item {
+		private final BigDecimal startPrice;
+		private final Date created;
+
+		Item(BigDecimal startPrice, Date created) {
+			this.startPrice = startPrice;
+			this.created = created;
+		}
+	}
+}
@@ -17,13 +17,11 @@
  */
 package org.stockwatcher.domain;
 
-import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
-import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
-import static org.apache.commons.lang.builder.ToStringBuilder.reflectionToString;
-
 import java.util.Date;
+import java.util.Objects;
 import java.util.UUID;
 
+import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
@@ -103,16 +101,41 @@ public class Comment implements Comparable<Comment> {
 
 	@Override
 	public boolean equals(Object other) {
-		return reflectionEquals(this, other, false);
+		if(this == other) {
+			return true;
+		}
+		if(other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		Comment that = (Comment)other;
+		return Objects.equals(id, that.id) &&
+			Objects.equals(userId, that.userId) &&
+			Objects.equals(created, that.created) &&
+			active == that.active &&
+			Objects.equals(text, that.text) &&
+			Objects.equals(userDisplayName, that.userDisplayName);
 	}
 
 	@Override
 	public int hashCode() {
-		return reflectionHashCode(this, false);
+		int result = Objects.hashCode(id);
+		result = 31 * result + Objects.hashCode(userId);
+		result = 31 * result + Objects.hashCode(created);
+		result = 31 * result + (active ? 1 : 0);
+		result = 31 * result + Objects.hashCode(text);
+		result = 31 * result + Objects.hashCode(userDisplayName);
+		return result;
 	}
 
 	@Override
 	public String toString() {
-		return reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE, true);
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+			.append("id", id)
+			.append("userId", userId)
+			.append("created", created)
+			.append("active", active)
+			.append("text", text)
+			.append("userDisplayName", userDisplayName)
+			.toString();
 	}
 }
\ No newline at end of file
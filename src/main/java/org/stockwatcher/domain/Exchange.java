@@ -17,11 +17,10 @@
  */
 package org.stockwatcher.domain;
 
-import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
-import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
-import static org.apache.commons.lang.builder.ToStringBuilder.reflectionToString;
-
 import java.util.Currency;
+import java.util.Objects;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
  * A domain class that represents a service where investors can buy and sell 
@@ -74,16 +73,35 @@ public class Exchange implements Comparable<Exchange> {
 
 	@Override
 	public boolean equals(Object other) {
-		return reflectionEquals(this, other, false);
+		if(this == other) {
+			return true;
+		}
+		if(other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		Exchange that = (Exchange)other;
+		return Objects.equals(exchangeId, that.exchangeId) &&
+			Objects.equals(name, that.name) &&
+			Objects.equals(currency, that.currency) &&
+			active == that.active;
 	}
 
 	@Override
 	public int hashCode() {
-		return reflectionHashCode(this, false);
+		int result = Objects.hashCode(exchangeId);
+		result = 31 * result + Objects.hashCode(name);
+		result = 31 * result + Objects.hashCode(currency);
+		result = 31 * result + (active ? 1 : 0);
+		return result;
 	}
 
 	@Override
 	public String toString() {
-		return reflectionToString(this);
+		return new ToStringBuilder(this)
+			.append("exchangeId", exchangeId)
+			.append("name", name)
+			.append("currency", currency)
+			.append("active", active)
+			.toString();
 	}
 }
\ No newline at end of file
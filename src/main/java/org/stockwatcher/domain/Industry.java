@@ -17,9 +17,7 @@
  */
 package org.stockwatcher.domain;
 
-import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
-import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
-import static org.apache.commons.lang.builder.ToStringBuilder.reflectionToString;
+import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
  * A domain class that represents the industry stocks are categorized under. 
@@ -67,16 +65,32 @@ public class Industry implements Comparable<Industry> {
 
 	@Override
 	public boolean equals(Object other) {
-		return reflectionEquals(this, other, false);
+		if(this == other) {
+			return true;
+		}
+		if(other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		Industry that = (Industry)other;
+		return id.equals(that.id) &&
+			sector.equals(that.sector) &&
+			name.equals(that.name);
 	}
 
 	@Override
 	public int hashCode() {
-		return reflectionHashCode(this, false);
+		int result = id.hashCode();
+		result = 31 * result + sector.hashCode();
+		result = 31 * result + name.hashCode();
+		return result;
 	}
 
 	@Override
 	public String toString() {
-		return reflectionToString(this);
+		return new ToStringBuilder(this)
+			.append("id", id)
+			.append("sector", sector)
+			.append("name", name)
+			.toString();
 	}
 }
\ No newline at end of file
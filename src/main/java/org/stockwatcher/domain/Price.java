@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.stockwatcher.domain;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Utility class for working with share prices as fixed-point long values. A 
+ * price is stored as a number of units, where one unit is 1/10000th of the 
+ * currency (four decimal places). Comparing and aggregating prices this way 
+ * avoids allocating a BigDecimal for every trade. Conversion to and from 
+ * BigDecimal is only needed at the database and user interface boundaries.
+ * 
+ * @author Tony Piazza
+ */
+public final class Price {
+	public static final int SCALE = 4;
+	public static final long UNITS_PER_DOLLAR = 10000L;
+
+	/**
+	 * Value used when no price is available (the equivalent of null).
+	 */
+	public static final long NONE = Long.MIN_VALUE;
+
+	private static final long[] POWERS_OF_TEN = {
+		1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 
+		100000000L, 1000000000L, 10000000000L, 100000000000L, 
+		1000000000000L, 10000000000000L, 100000000000000L, 
+		1000000000000000L, 10000000000000000L, 100000000000000000L, 
+		1000000000000000000L
+	};
+	private static final BigInteger MIN_UNITS = BigInteger.valueOf(NONE + 1);
+	private static final BigInteger MAX_UNITS = BigInteger.valueOf(Long.MAX_VALUE);
+
+	private Price() {
+		// prevents instantiation
+	}
+
+	/**
+	 * Converts the specified BigDecimal to price units, rounding half up. 
+	 * Values outside the range of a long are clamped, so a BigDecimal that 
+	 * is used as an open-ended bound (e.g. Long.MAX_VALUE dollars) still 
+	 * compares as expected.
+	 */
+	public static long valueOf(BigDecimal price) {
+		if(price == null) {
+			return NONE;
+		}
+		BigInteger units = price.setScale(SCALE, RoundingMode.HALF_UP)
+			.unscaledValue();
+		if(units.compareTo(MAX_UNITS) > 0) {
+			return Long.MAX_VALUE;
+		}
+		if(units.compareTo(MIN_UNITS) < 0) {
+			return NONE + 1;
+		}
+		return units.longValue();
+	}
+
+	/**
+	 * Converts an unscaled value with the specified scale (as stored by the 
+	 * database for a DECIMAL column) to price units, rounding half up.
+	 */
+	public static long valueOf(long unscaled, int scale) {
+		if(scale == SCALE) {
+			return unscaled;
+		}
+		if(scale < SCALE) {
+			return unscaled * POWERS_OF_TEN[SCALE - scale];
+		}
+		if(scale - SCALE >= POWERS_OF_TEN.length) {
+			return 0;
+		}
+		long divisor = POWERS_OF_TEN[scale - SCALE];
+		long quotient = unscaled / divisor;
+		long remainder = Math.abs(unscaled % divisor);
+		if(remainder * 2 >= divisor) {
+			quotient += unscaled < 0 ? -1 : 1;
+		}
+		return quotient;
+	}
+
+	/**
+	 * Parses a plain decimal string such as "46.9600" to price units without 
+	 * creating a BigDecimal.
+	 */
+	public static long parse(CharSequence text) {
+		if(text == null || text.length() == 0) {
+			throw new IllegalArgumentException("text is null or zero length");
+		}
+		int length = text.length();
+		int index = 0;
+		boolean negative = false;
+		char first = text.charAt(0);
+		if(first == '-' || first == '+') {
+			negative = first == '-';
+			index++;
+		}
+		long unscaled = 0;
+		int scale = -1;
+		int digits = 0;
+		for(; index < length; index++) {
+			char c = text.charAt(index);
+			if(c == '.' && scale < 0) {
+				scale = 0;
+			} else if(c >= '0' && c <= '9') {
+				if(scale < SCALE + 1) {
+					unscaled = unscaled * 10 + (c - '0');
+					if(scale >= 0) {
+						scale++;
+					}
+				}
+				digits++;
+			} else {
+				throw new NumberFormatException("invalid price: " + text);
+			}
+		}
+		if(digits == 0 || digits > 18) {
+			return valueOf(new BigDecimal(text.toString()));
+		}
+		long units = valueOf(unscaled, scale < 0 ? 0 : scale);
+		return negative ? -units : units;
+	}
+
+	public static BigDecimal toBigDecimal(long units) {
+		return units == NONE ? null : BigDecimal.valueOf(units, SCALE);
+	}
+
+	public static double toDouble(long units) {
+		return (double)units / UNITS_PER_DOLLAR;
+	}
+
+	/**
+	 * Formats the specified price with at least two and at most four decimal 
+	 * places (trailing zeros beyond the second decimal are dropped).
+	 */
+	public static String toString(long units) {
+		if(units == NONE) {
+			return "";
+		}
+		StringBuilder text = new StringBuilder(24);
+		if(units < 0) {
+			text.append('-');
+		}
+		long dollars = Math.abs(units / UNITS_PER_DOLLAR);
+		int fraction = (int)Math.abs(units % UNITS_PER_DOLLAR);
+		text.append(dollars);
+		text.append('.');
+		text.append((char)('0' + fraction / 1000));
+		text.append((char)('0' + fraction / 100 % 10));
+		if(fraction % 100 != 0) {
+			text.append((char)('0' + fraction / 10 % 10));
+			if(fraction % 10 != 0) {
+				text.append((char)('0' + fraction % 10));
+			}
+		}
+		return text.toString();
+	}
+}
@@ -17,9 +17,7 @@
  */
 package org.stockwatcher.domain;
 
-import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
-import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
-import static org.apache.commons.lang.builder.ToStringBuilder.reflectionToString;
+import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
  * A domain class that represents the sector that industries are categorized 
@@ -58,16 +56,29 @@ public class Sector implements Comparable<Sector> {
 
 	@Override
 	public boolean equals(Object other) {
-		return reflectionEquals(this, other, false);
+		if(this == other) {
+			return true;
+		}
+		if(other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		Sector that = (Sector)other;
+		return id.equals(that.id) &&
+			name.equals(that.name);
 	}
 
 	@Override
 	public int hashCode() {
-		return reflectionHashCode(this, false);
+		int result = id.hashCode();
+		result = 31 * result + name.hashCode();
+		return result;
 	}
 
 	@Override
 	public String toString() {
-		return reflectionToString(this);
+		return new ToStringBuilder(this)
+			.append("id", id)
+			.append("name", name)
+			.toString();
 	}
 }
\ No newline at end of file
@@ -17,13 +17,11 @@
  */
 package org.stockwatcher.domain;
 
-import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
-import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
-import static org.apache.commons.lang.builder.ToStringBuilder.reflectionToString;
-
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.Objects;
 
+import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
@@ -38,7 +36,7 @@ public class Stock implements Comparable<Stock> {
 	private String companyName;
 	private String exchangeId;
 	private Industry industry;
-	private transient BigDecimal currentPrice;
+	private transient long currentPrice;
 	private transient Date priceUpdated;
 	private boolean active;
 
@@ -51,6 +49,18 @@ public class Stock implements Comparable<Stock> {
 	public Stock(String symbol, String companyName, String exchangeId, 
 		Industry industry, BigDecimal currentPrice, Date priceUpdated, 
 		boolean active) {
+		this(symbol, companyName, exchangeId, industry, 
+			Price.valueOf(currentPrice), priceUpdated, active);
+	}
+
+	/**
+	 * Creates a stock with a current price expressed in fixed-point units.
+	 * 
+	 * @see Price
+	 */
+	public Stock(String symbol, String companyName, String exchangeId, 
+		Industry industry, long currentPrice, Date priceUpdated, 
+		boolean active) {
 		this.symbol = symbol;
 		this.companyName = companyName;
 		this.exchangeId = exchangeId;
@@ -87,6 +97,14 @@ public class Stock implements Comparable<Stock> {
 	}
 
 	public BigDecimal getCurrentPrice() {
+		return Price.toBigDecimal(currentPrice);
+	}
+
+	/**
+	 * @return current price in fixed-point units, or Price.NONE if unknown
+	 * @see Price
+	 */
+	public long getCurrentPriceUnits() {
 		return currentPrice;
 	}
 
@@ -105,16 +123,40 @@ public class Stock implements Comparable<Stock> {
 
 	@Override
 	public boolean equals(Object other) {
-		return reflectionEquals(this, other, false);
+		if(this == other) {
+			return true;
+		}
+		if(other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		Stock that = (Stock)other;
+		return Objects.equals(symbol, that.symbol) &&
+			Objects.equals(companyName, that.companyName) &&
+			Objects.equals(exchangeId, that.exchangeId) &&
+			Objects.equals(industry, that.industry) &&
+			active == that.active;
 	}
 
 	@Override
 	public int hashCode() {
-		return reflectionHashCode(this, false);
+		int result = Objects.hashCode(symbol);
+		result = 31 * result + Objects.hashCode(companyName);
+		result = 31 * result + Objects.hashCode(exchangeId);
+		result = 31 * result + Objects.hashCode(industry);
+		result = 31 * result + (active ? 1 : 0);
+		return result;
 	}
 
 	@Override
 	public String toString() {
-		return reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE, true);
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+			.append("symbol", symbol)
+			.append("companyName", companyName)
+			.append("exchangeId", exchangeId)
+			.append("industry", industry)
+			.append("currentPrice", Price.toString(currentPrice))
+			.append("priceUpdated", priceUpdated)
+			.append("active", active)
+			.toString();
 	}
 }
\ No newline at end of file
@@ -17,14 +17,13 @@
  */
 package org.stockwatcher.domain;
 
-import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
-import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
-import static org.apache.commons.lang.builder.ToStringBuilder.reflectionToString;
-
 import java.math.BigDecimal;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.UUID;
 
+import org.apache.commons.lang.builder.ToStringBuilder;
+
 /**
  * A domain class that represents a transaction on a stock exchange. 
  * 
@@ -35,11 +34,22 @@ public class Trade implements Comparable<Trade> {
 	private Date timestamp;
 	private String exchangeId;
 	private String stockSymbol;
-	private BigDecimal sharePrice;
+	private long sharePrice;
 	private int shareQuantity;
 
 	public Trade(UUID id, Date timestamp, String exchangeId, 
 		String stockSymbol, BigDecimal sharePrice, int shareQuantity) {
+		this(id, timestamp, exchangeId, stockSymbol, Price.valueOf(sharePrice), 
+			shareQuantity);
+	}
+
+	/**
+	 * Creates a trade with a share price expressed in fixed-point units.
+	 * 
+	 * @see Price
+	 */
+	public Trade(UUID id, Date timestamp, String exchangeId, 
+		String stockSymbol, long sharePrice, int shareQuantity) {
 		if(id == null) {
 			throw new IllegalArgumentException("id is null");
 		}
@@ -56,7 +66,7 @@ public class Trade implements Comparable<Trade> {
 			throw new IllegalArgumentException("stockSymbol is null or zero length");
 		}
 		this.stockSymbol = stockSymbol;
-		if(sharePrice == null) {
+		if(sharePrice == Price.NONE) {
 			throw new IllegalArgumentException("sharePrice is null");
 		}
 		this.sharePrice = sharePrice;
@@ -71,6 +81,20 @@ public class Trade implements Comparable<Trade> {
 		return timestamp;
 	}
 
+	/**
+	 * Returns the trading day (midnight, local time) the timestamp falls on. 
+	 * This is the value stored in the trade_date column.
+	 */
+	public Date getTradeDate() {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(timestamp);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		return calendar.getTime();
+	}
+
 	public String getExchangeId() {
 		return exchangeId;
 	}
@@ -80,9 +104,21 @@ public class Trade implements Comparable<Trade> {
 	}
 
 	public BigDecimal getSharePrice() {
+		return Price.toBigDecimal(sharePrice);
+	}
+
+	/**
+	 * @return share price in fixed-point units
+	 * @see Price
+	 */
+	public long getSharePriceUnits() {
 		return sharePrice;
 	}
 
+	public String getSharePriceText() {
+		return Price.toString(sharePrice);
+	}
+
 	public int getShareQuantity() {
 		return shareQuantity;
 	}
@@ -94,16 +130,41 @@ public class Trade implements Comparable<Trade> {
 
 	@Override
 	public boolean equals(Object other) {
-		return reflectionEquals(this, other, false);
+		if(this == other) {
+			return true;
+		}
+		if(other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		Trade that = (Trade)other;
+		return id.equals(that.id) &&
+			timestamp.equals(that.timestamp) &&
+			exchangeId.equals(that.exchangeId) &&
+			stockSymbol.equals(that.stockSymbol) &&
+			sharePrice == that.sharePrice &&
+			shareQuantity == that.shareQuantity;
 	}
 
 	@Override
 	public int hashCode() {
-		return reflectionHashCode(this, false);
+		int result = id.hashCode();
+		result = 31 * result + timestamp.hashCode();
+		result = 31 * result + exchangeId.hashCode();
+		result = 31 * result + stockSymbol.hashCode();
+		result = 31 * result + (int)(sharePrice ^ (sharePrice >>> 32));
+		result = 31 * result + shareQuantity;
+		return result;
 	}
 
 	@Override
 	public String toString() {
-		return reflectionToString(this);
+		return new ToStringBuilder(this)
+			.append("id", id)
+			.append("timestamp", timestamp)
+			.append("exchangeId", exchangeId)
+			.append("stockSymbol", stockSymbol)
+			.append("sharePrice", Price.toString(sharePrice))
+			.append("shareQuantity", shareQuantity)
+			.toString();
 	}
 }
\ No newline at end of file
@@ -17,13 +17,11 @@
  */
 package org.stockwatcher.domain;
 
-import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
-import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
-import static org.apache.commons.lang.builder.ToStringBuilder.reflectionToString;
-
 import java.util.Date;
+import java.util.Objects;
 import java.util.UUID;
 
+import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
@@ -137,16 +135,51 @@ public class User implements Comparable<User> {
 
 	@Override
 	public boolean equals(Object other) {
-		return reflectionEquals(this, other, false);
+		if(this == other) {
+			return true;
+		}
+		if(other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		User that = (User)other;
+		return Objects.equals(id, that.id) &&
+			Objects.equals(firstName, that.firstName) &&
+			Objects.equals(lastName, that.lastName) &&
+			Objects.equals(displayName, that.displayName) &&
+			Objects.equals(emailAddress, that.emailAddress) &&
+			Objects.equals(postalCode, that.postalCode) &&
+			Objects.equals(created, that.created) &&
+			Objects.equals(updated, that.updated) &&
+			active == that.active;
 	}
 
 	@Override
 	public int hashCode() {
-		return reflectionHashCode(this, false);
+		int result = Objects.hashCode(id);
+		result = 31 * result + Objects.hashCode(firstName);
+		result = 31 * result + Objects.hashCode(lastName);
+		result = 31 * result + Objects.hashCode(displayName);
+		result = 31 * result + Objects.hashCode(emailAddress);
+		result = 31 * result + Objects.hashCode(postalCode);
+		result = 31 * result + Objects.hashCode(created);
+		result = 31 * result + Objects.hashCode(updated);
+		result = 31 * result + (active ? 1 : 0);
+		return result;
 	}
 
 	@Override
 	public String toString() {
-		return reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE, true);
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+			.append("id", id)
+			.append("firstName", firstName)
+			.append("lastName", lastName)
+			.append("displayName", displayName)
+			.append("emailAddress", emailAddress)
+			.append("postalCode", postalCode)
+			.append("created", created)
+			.append("updated", updated)
+			.append("active", active)
+			.append("watchListCount", watchListCount)
+			.toString();
 	}
 }
\ No newline at end of file
@@ -18,14 +18,13 @@
 package org.stockwatcher.domain;
 
 import static java.math.BigDecimal.ZERO;
-import static org.apache.commons.lang.builder.EqualsBuilder.reflectionEquals;
-import static org.apache.commons.lang.builder.HashCodeBuilder.reflectionHashCode;
-import static org.apache.commons.lang.builder.ToStringBuilder.reflectionToString;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.Objects;
 import java.util.UUID;
 
+import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
@@ -82,12 +81,12 @@ public class WatchListItem extends Stock {
 		if(startPrice == null || startPrice.equals(ZERO)) {
 			throw new IllegalStateException("startPrice is null or zero");
 		}
-		BigDecimal currentPrice = getCurrentPrice();
-		if(currentPrice == null || currentPrice.equals(ZERO)) {
+		long currentPrice = getCurrentPriceUnits();
+		if(currentPrice == Price.NONE || currentPrice == 0) {
 			throw new IllegalStateException("currentPrice is null or zero");
 		}
-		return currentPrice.subtract(startPrice).doubleValue() /
-			startPrice.doubleValue();
+		double start = startPrice.doubleValue();
+		return (Price.toDouble(currentPrice) - start) / start;
 	}
 
 	@Override
@@ -105,16 +104,41 @@ public class WatchListItem extends Stock {
 
 	@Override
 	public boolean equals(Object other) {
-		return reflectionEquals(this, other, false);
+		if(this == other) {
+			return true;
+		}
+		if(other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		WatchListItem that = (WatchListItem)other;
+		return super.equals(that) &&
+			Objects.equals(watchListId, that.watchListId) &&
+			Objects.equals(startPrice, that.startPrice) &&
+			Objects.equals(created, that.created);
 	}
 
 	@Override
 	public int hashCode() {
-		return reflectionHashCode(this, false);
+		int result = super.hashCode();
+		result = 31 * result + Objects.hashCode(watchListId);
+		result = 31 * result + Objects.hashCode(startPrice);
+		result = 31 * result + Objects.hashCode(created);
+		return result;
 	}
 
 	@Override
 	public String toString() {
-		return reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE, true);
+		return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+			.append("symbol", getSymbol())
+			.append("companyName", getCompanyName())
+			.append("exchangeId", getExchangeId())
+			.append("industry", getIndustry())
+			.append("currentPrice", Price.toString(getCurrentPriceUnits()))
+			.append("priceUpdated", getPriceUpdated())
+			.append("active", isActive())
+			.append("watchListId", watchListId)
+			.append("startPrice", startPrice)
+			.append("created", created)
+			.toString();
 	}
 }
\ No newline at end of file
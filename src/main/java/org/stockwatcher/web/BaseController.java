@@ -24,9 +24,14 @@ import javax.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.stockwatcher.data.UserDAO;
 import org.stockwatcher.domain.User;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 /**
  * Base controller class that provides common functionality for all controller
  * classes.
@@ -52,6 +57,31 @@ public abstract class BaseController {
 		return user;
 	}
 
+	/**
+	 * Returns a DeferredResult that is set from the specified future, so the 
+	 * container thread can be released while the DAO reads are in flight. A 
+	 * failed future is handled like an exception thrown by the handler.
+	 * 
+	 * @param future ListenableFuture that produces the result
+	 * @return DeferredResult
+	 */
+	protected static <T> DeferredResult<T> toDeferredResult(
+		ListenableFuture<T> future) {
+		final DeferredResult<T> result = new DeferredResult<T>();
+		Futures.addCallback(future, new FutureCallback<T>() {
+			@Override
+			public void onSuccess(T value) {
+				result.setResult(value);
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				result.setErrorResult(t);
+			}
+		});
+		return result;
+	}
+
 	protected String getRequestParameter(HttpServletRequest request, String name) {
 		String parameter = request.getParameter(name);
 		if(parameter == null || parameter.length() == 0) {
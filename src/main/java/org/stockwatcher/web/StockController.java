@@ -17,11 +17,16 @@
  */
 package org.stockwatcher.web;
 
+import static org.stockwatcher.data.DAOFutures.getResult;
+
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
@@ -42,15 +47,29 @@ import org.springframework.web.bind.ServletRequestDataBinder;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.ModelAndView;
 import org.stockwatcher.data.ApplicationProperties;
+import org.stockwatcher.data.AsyncStockDAO;
+import org.stockwatcher.data.AsyncWatchListDAO;
+import org.stockwatcher.data.DAOException;
+import org.stockwatcher.data.Page;
 import org.stockwatcher.data.StockCriteria;
 import org.stockwatcher.data.StockDAO;
-import org.stockwatcher.data.WatchListDAO;
+import org.stockwatcher.data.TradeFeed;
 import org.stockwatcher.domain.Comment;
 import org.stockwatcher.domain.Industry;
+import org.stockwatcher.domain.Stock;
 import org.stockwatcher.domain.Trade;
 import org.stockwatcher.domain.User;
+import org.stockwatcher.domain.WatchList;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Controller class for all Stock-related web requests. Uses DAO classes to 
@@ -64,12 +83,20 @@ public class StockController extends BaseController {
 	private static final Logger LOGGER = LoggerFactory.getLogger(StockController.class);
 	private static final int MOST_WATCHED_LIMIT = 25;
 	private static final int COMMENT_LIMIT = 100;
+	private static final long TRADE_UPDATE_TIMEOUT = 30000;
+	private static final int TRADE_PAGE_LIMIT = 1000;
+	private static final int STOCK_PAGE_SIZE = 100;
+	private static final int SEARCH_LIMIT = 25;
 	@Autowired
 	private StockDAO dao;
 	@Autowired
-	private WatchListDAO watchListDao;
+	private AsyncStockDAO asyncDao;
+	@Autowired
+	private AsyncWatchListDAO asyncWatchListDao;
 	@Autowired
 	private ApplicationProperties applicationProps;
+	@Autowired
+	private TradeFeed tradeFeed;
 	
 	@RequestMapping(method=RequestMethod.GET)
 	public String displayStockSearch(Model model) {
@@ -82,12 +109,28 @@ public class StockController extends BaseController {
 	}
 
 	@RequestMapping(value="/find", method=RequestMethod.POST)
-	public String findStocks(Model model, HttpServletRequest request) {
+	public String findStocks(Model model, HttpServletRequest request, 
+		@RequestParam(required=false) String pageToken) {
 		StockCriteria criteria = getCriteria(request);
-		model.addAttribute("stocks", dao.findStocks(criteria));
+		Page<Stock> page = dao.findStocks(criteria, 
+			pageToken == null || pageToken.length() == 0 ? null : pageToken, 
+			STOCK_PAGE_SIZE);
+		model.addAttribute("stocks", page.getItems());
+		model.addAttribute("nextPageToken", page.getNextPageToken());
 		return "matchingStocks";
 	}
 
+	/**
+	 * Typeahead search for stocks by a prefix of their symbol or of a word 
+	 * in their company name, answered from memory. Returns JSON.
+	 */
+	@RequestMapping(value="/search", method=RequestMethod.GET)
+	public ModelAndView searchStocks(@RequestParam String prefix, 
+		@RequestParam(defaultValue="10") int limit) {
+		return new ModelAndView("stockSearch", "stocks", dao.searchStocks(
+			prefix, Math.max(1, Math.min(limit, SEARCH_LIMIT))));
+	}
+
 	private StockCriteria getCriteria(HttpServletRequest request) {
 		StockCriteria criteria = new StockCriteria();
 		ServletRequestDataBinder binder = new ServletRequestDataBinder(criteria);
@@ -97,39 +140,194 @@ public class StockController extends BaseController {
 		return criteria;
 	}
 
+	/**
+	 * Renders the stock detail page once all of its reads have completed. 
+	 * Only the trades depend on another read (the trade date), so every read 
+	 * is issued up front and the container thread is released until the 
+	 * last one finishes.
+	 */
 	@RequestMapping(value="/{symbol}", method=RequestMethod.GET)
-	public String displayStockDetail(@PathVariable String symbol, Model model, 
-		HttpServletRequest request) {
-		model.addAttribute("stock", dao.getStockBySymbol(symbol));
-		Date tradeDate = applicationProps.getLastTradeDate();
-		SortedSet<Trade> trades = dao.getTradesBySymbolAndDate(symbol, tradeDate);
-		model.addAttribute("trades", getUniqueTrades(trades));
-		long elapsedTime = trades.size() == 0 ? 0 : 
-			getElapsedTime(trades.first().getTimestamp(), 
-				trades.last().getTimestamp());
+	public DeferredResult<ModelAndView> displayStockDetail(
+		@PathVariable final String symbol, HttpServletRequest request) {
+		final ListenableFuture<Stock> stock = asyncDao.getStockBySymbolAsync(symbol);
+		final ListenableFuture<SortedSet<Trade>> tradesFuture = 
+			getTradesAsync(symbol);
 		User user = (User)request.getSession().getAttribute("user");
-		model.addAttribute("watchLists", user == null ? Collections.EMPTY_SET :
-			watchListDao.getWatchListsByUserId(user.getId()));
-		model.addAttribute("lastClosePrice", dao.getLastClosePriceForSymbol(symbol));
-		model.addAttribute("elapsedTime", elapsedTime);
-		model.addAttribute("liveTrading", applicationProps.isTradingLive());
-		model.addAttribute("watchCount", watchListDao.getWatchCount(symbol));
-		dao.incrementStockViewCount(symbol);
-		return "stock";
+		final ListenableFuture<SortedSet<WatchList>> watchLists = user == null ? 
+			Futures.immediateFuture((SortedSet<WatchList>)new TreeSet<WatchList>()) :
+			asyncWatchListDao.getWatchListsByUserIdAsync(user.getId());
+		final ListenableFuture<BigDecimal> lastClosePrice = 
+			asyncDao.getLastClosePriceForSymbolAsync(symbol);
+		final ListenableFuture<Boolean> liveTrading = 
+			applicationProps.isTradingLiveAsync();
+		final ListenableFuture<Integer> watchCount = 
+			asyncWatchListDao.getWatchCountAsync(symbol);
+		return toDeferredResult(Futures.transform(Futures.successfulAsList(
+			Arrays.<ListenableFuture<?>>asList(stock, tradesFuture, watchLists, 
+			lastClosePrice, liveTrading, watchCount)), 
+			new Function<List<Object>, ModelAndView>() {
+				@Override
+				public ModelAndView apply(List<Object> results) {
+					// Every future has completed, so none of these block and the 
+					// first one that failed fails the request
+					ModelAndView mav = new ModelAndView("stock");
+					mav.addObject("stock", getResult(stock));
+					// Only count views of stocks that exist
+					dao.incrementStockViewCount(symbol);
+					SortedSet<Trade> trades = getResult(tradesFuture);
+					mav.addObject("trades", getUniqueTrades(trades));
+					long elapsedTime = trades.size() == 0 ? 0 : 
+						getElapsedTime(trades.first().getTimestamp(), 
+							trades.last().getTimestamp());
+					mav.addObject("watchLists", getResult(watchLists));
+					mav.addObject("lastClosePrice", getResult(lastClosePrice));
+					mav.addObject("elapsedTime", elapsedTime);
+					Trade lastTrade = getLastTrade(trades);
+					mav.addObject("lastTradeTime", lastTrade == null ? 0 : 
+						lastTrade.getTimestamp().getTime());
+					mav.addObject("lastTradeId", lastTrade == null ? null : 
+						lastTrade.getId());
+					mav.addObject("liveTrading", getResult(liveTrading));
+					mav.addObject("watchCount", getResult(watchCount));
+					return mav;
+				}
+			}));
 	}
 
 	@RequestMapping(value="/{symbol}/trades", method=RequestMethod.GET)
-	public String getStockTrades(@PathVariable String symbol, Model model) {
+	public DeferredResult<ModelAndView> getStockTrades(
+		@PathVariable String symbol) {
+		return toDeferredResult(Futures.transform(getTradesAsync(symbol), 
+			new Function<SortedSet<Trade>, ModelAndView>() {
+				@Override
+				public ModelAndView apply(SortedSet<Trade> trades) {
+					return new ModelAndView("trades", "trades", 
+						getUniqueTrades(trades));
+				}
+			}));
+	}
+
+	/**
+	 * Reads the trade date and then the stock's trades for that date.
+	 */
+	private ListenableFuture<SortedSet<Trade>> getTradesAsync(
+		final String symbol) {
+		return Futures.transform(applicationProps.getLastTradeDateAsync(), 
+			new AsyncFunction<Date, SortedSet<Trade>>() {
+				@Override
+				public ListenableFuture<SortedSet<Trade>> apply(Date tradeDate) {
+					return asyncDao.getTradesBySymbolAndDateAsync(symbol, 
+						tradeDate);
+				}
+			});
+	}
+
+	/**
+	 * Returns a page of the trades that come after the client's cursor, which 
+	 * is the timestamp and optionally the id of the last trade it has seen.
+	 * The response includes the cursor to use for the next page.
+	 */
+	@RequestMapping(value="/{symbol}/trades", params="after", 
+		method=RequestMethod.GET)
+	public ModelAndView getStockTradesAfter(@PathVariable String symbol, 
+		@RequestParam long after, @RequestParam(required=false) UUID tradeId, 
+		@RequestParam(defaultValue="1000") int limit) {
+		Date since = new Date(after);
+		return getTradeUpdates(since, tradeId, 
+			getTradesAfter(symbol, since, tradeId, 
+				Math.max(1, Math.min(limit, TRADE_PAGE_LIMIT))));
+	}
+
+	/**
+	 * Long-poll request for the trades newer than the last one the client 
+	 * has seen. The response is sent as soon as the trade feed has at least 
+	 * one. Trades recorded by other processes never reach the feed, so when 
+	 * the request times out they are read from the database instead.
+	 */
+	@RequestMapping(value="/{symbol}/trades/updates", method=RequestMethod.GET)
+	public DeferredResult<ModelAndView> getStockTradeUpdates(
+		@PathVariable final String symbol, @RequestParam long after, 
+		@RequestParam(required=false) final UUID tradeId) {
+		final Date since = new Date(after);
+		final DeferredResult<ModelAndView> result = 
+			new DeferredResult<ModelAndView>(TRADE_UPDATE_TIMEOUT, 
+				getTradeUpdates(since, tradeId, new ArrayList<Trade>()));
+		if(!tradeFeed.isComplete(symbol, since)) {
+			List<Trade> trades = 
+				getTradesAfter(symbol, since, tradeId, TRADE_PAGE_LIMIT);
+			if(!trades.isEmpty()) {
+				result.setResult(getTradeUpdates(since, tradeId, trades));
+				return result;
+			}
+		}
+		final TradeFeed.Subscriber subscriber = new TradeFeed.Subscriber() {
+			@Override
+			public void tradesReceived(SortedSet<Trade> trades) {
+				result.setResult(getTradeUpdates(since, tradeId, trades));
+			}
+		};
+		result.onTimeout(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result.setResult(getTradeUpdates(since, tradeId, 
+						getTradesAfter(symbol, since, tradeId, TRADE_PAGE_LIMIT)));
+				} catch(DAOException e) {
+					LOGGER.warn("Unable to read trades for {}", symbol, e);
+				}
+			}
+		});
+		result.onCompletion(new Runnable() {
+			@Override
+			public void run() {
+				tradeFeed.unsubscribe(symbol, subscriber);
+			}
+		});
+		tradeFeed.subscribe(symbol, since, tradeId, subscriber);
+		return result;
+	}
+
+	private List<Trade> getTradesAfter(String symbol, Date since, UUID tradeId, 
+		int limit) {
 		Date tradeDate = applicationProps.getLastTradeDate();
-		SortedSet<Trade> trades = dao.getTradesBySymbolAndDate(symbol, tradeDate);
-		model.addAttribute("trades", getUniqueTrades(trades));
-		return "trades";
+		return dao.getTradesAfter(symbol, tradeDate, since, tradeId, limit);
+	}
+
+	private static ModelAndView getTradeUpdates(Date since, UUID tradeId, 
+		Collection<Trade> trades) {
+		ModelAndView mav = new ModelAndView("tradeUpdates");
+		mav.addObject("trades", getUniqueTrades(trades));
+		Trade last = getLastTrade(trades);
+		mav.addObject("lastTradeTime", 
+			last == null ? since.getTime() : last.getTimestamp().getTime());
+		mav.addObject("lastTradeId", last == null ? tradeId : last.getId());
+		return mav;
+	}
+
+	/**
+	 * Returns the trade with the latest timestamp, or null if there are none.
+	 */
+	private static Trade getLastTrade(Collection<Trade> trades) {
+		Trade last = null;
+		for(Trade trade : trades) {
+			if(last == null || 
+				!trade.getTimestamp().before(last.getTimestamp())) {
+				last = trade;
+			}
+		}
+		return last;
 	}
 
 	@RequestMapping(value="/mostwatched/rss", method=RequestMethod.GET)
-	public String getMostWatchedStocks(Model model) {
-		model.addAttribute("stocks", dao.getMostWatchedStocks(MOST_WATCHED_LIMIT));
-		return "mostWatched.rss";
+	public DeferredResult<ModelAndView> getMostWatchedStocks() {
+		return toDeferredResult(Futures.transform(
+			asyncDao.getMostWatchedStocksAsync(MOST_WATCHED_LIMIT), 
+			new Function<List<Stock>, ModelAndView>() {
+				@Override
+				public ModelAndView apply(List<Stock> stocks) {
+					return new ModelAndView("mostWatched.rss", "stocks", stocks);
+				}
+			}));
 	}
 
 	@RequestMapping(value="/{symbol}/getcomments", method=RequestMethod.GET)
@@ -176,7 +374,12 @@ public class StockController extends BaseController {
 		return (last.getTime() - first.getTime()) / 1000;
 	}
 
-	private Collection<Trade> getUniqueTrades(SortedSet<Trade> source) {
+	/**
+	 * Returns the trades in timestamp order, keeping only the last trade for 
+	 * each distinct timestamp (the chart cannot plot two points at the same 
+	 * instant).
+	 */
+	public static Collection<Trade> getUniqueTrades(Collection<Trade> source) {
 		Map<Date, Trade> trades = new TreeMap<Date, Trade>();
 		for(Trade trade : source) {
 			trades.put(trade.getTimestamp(), trade);
@@ -28,6 +28,8 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.stockwatcher.data.Page;
 import org.stockwatcher.data.UserDAO;
 import org.stockwatcher.domain.User;
 
@@ -41,12 +43,19 @@ import org.stockwatcher.domain.User;
 @RequestMapping("/users")
 public class UserController extends BaseController {
 	private static final Logger LOGGER = LoggerFactory.getLogger(UserController.class);
+	private static final int USER_PAGE_SIZE = 100;
 	@Autowired
 	private UserDAO dao;
 
 	@RequestMapping(method=RequestMethod.GET)
-	public String allUsers(Model model) {
-		model.addAttribute("users", dao.getUsers());
+	public String allUsers(Model model, 
+		@RequestParam(required=false) String pageToken) {
+		boolean firstPage = pageToken == null || pageToken.length() == 0;
+		Page<User> page = 
+			dao.getUsers(firstPage ? null : pageToken, USER_PAGE_SIZE);
+		model.addAttribute("users", page.getItems());
+		model.addAttribute("firstPage", firstPage);
+		model.addAttribute("nextPageToken", page.getNextPageToken());
 		return "users";
 	}
 
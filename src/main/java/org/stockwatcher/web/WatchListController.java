@@ -17,8 +17,13 @@
  */
 package org.stockwatcher.web;
 
+import static org.stockwatcher.data.DAOFutures.getResult;
+
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
 import java.util.UUID;
 
 import javax.servlet.http.HttpServletRequest;
@@ -33,15 +38,24 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
-import org.stockwatcher.data.UserDAO;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.ModelAndView;
+import org.stockwatcher.data.AsyncUserDAO;
+import org.stockwatcher.data.AsyncWatchListDAO;
+import org.stockwatcher.data.WatchListDAO;
 import org.stockwatcher.data.cassandra.StatementOptions;
 import org.stockwatcher.data.cassandra.CassandraWatchListDAO;
 import org.stockwatcher.domain.User;
 import org.stockwatcher.domain.WatchList;
+import org.stockwatcher.domain.WatchListItem;
 
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.policies.DowngradingConsistencyRetryPolicy;
 import com.datastax.driver.core.policies.LoggingRetryPolicy;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Controller class for all WatchList-related web requests. Uses DAO classes to 
@@ -55,13 +69,17 @@ public class WatchListController extends BaseController {
 	private static final Logger LOGGER = LoggerFactory.getLogger(WatchListController.class);
 	private static final String CREATE_NEW = "0";
 	private static final StatementOptions DELETE_WATCHLIST_QUERYOPTIONS = 
-		new StatementOptions(ConsistencyLevel.QUORUM, new LoggingRetryPolicy(
-			DowngradingConsistencyRetryPolicy.INSTANCE));
+		StatementOptions.DEFAULT
+			.withConsistencyLevel(ConsistencyLevel.QUORUM)
+			.withRetryPolicy(new LoggingRetryPolicy(
+				DowngradingConsistencyRetryPolicy.INSTANCE));
 
 	@Autowired
-	private CassandraWatchListDAO watchListDAO;
+	private WatchListDAO watchListDAO;
+	@Autowired
+	private AsyncWatchListDAO asyncWatchListDAO;
 	@Autowired
-	private UserDAO userDAO;
+	private AsyncUserDAO asyncUserDAO;
 
 	@RequestMapping(method=RequestMethod.GET)
 	public String watchListsForUser(Model model, HttpServletRequest request) {
@@ -72,23 +90,56 @@ public class WatchListController extends BaseController {
 	}
 
 	@RequestMapping(value="/{watchListId}", method=RequestMethod.GET)
-	public String displayWatchListDetail(@PathVariable String watchListId, 
-		Model model, HttpServletRequest request) {
+	public DeferredResult<ModelAndView> displayWatchListDetail(
+		@PathVariable String watchListId) {
 		UUID id = UUID.fromString(watchListId);
-		model.addAttribute("watchList", watchListDAO.getWatchList(id));
-		model.addAttribute("watchListItems", watchListDAO.getWatchListItems(id));
-		return "watchList";
+		final ListenableFuture<WatchList> watchList = 
+			asyncWatchListDAO.getWatchListAsync(id);
+		final ListenableFuture<SortedSet<WatchListItem>> watchListItems = 
+			asyncWatchListDAO.getWatchListItemsAsync(id);
+		return toDeferredResult(Futures.transform(
+			Futures.successfulAsList(Arrays.<ListenableFuture<?>>asList(
+				watchList, watchListItems)), 
+			new Function<List<Object>, ModelAndView>() {
+				@Override
+				public ModelAndView apply(List<Object> results) {
+					ModelAndView mav = new ModelAndView("watchList");
+					mav.addObject("watchList", getResult(watchList));
+					mav.addObject("watchListItems", getResult(watchListItems));
+					return mav;
+				}
+			}));
 	}
 
 	@RequestMapping(value="/{watchListId}/rss", method=RequestMethod.GET)
-	public String displayWatchListDetailRss(@PathVariable String watchListId, 
-		Model model, HttpServletRequest request) {
+	public DeferredResult<ModelAndView> displayWatchListDetailRss(
+		@PathVariable String watchListId) {
 		UUID id = UUID.fromString(watchListId);
-		model.addAttribute("watchListItems", watchListDAO.getWatchListItems(id));
-		WatchList watchList = watchListDAO.getWatchList(id);
-		model.addAttribute("watchList", watchList); 
-		model.addAttribute("user", userDAO.getUser(watchList.getUserId()));
-		return "watchList.rss";
+		final ListenableFuture<SortedSet<WatchListItem>> watchListItems = 
+			asyncWatchListDAO.getWatchListItemsAsync(id);
+		final ListenableFuture<WatchList> watchList = 
+			asyncWatchListDAO.getWatchListAsync(id);
+		// The owner can only be read once the watch list has been
+		final ListenableFuture<User> user = Futures.transform(watchList, 
+			new AsyncFunction<WatchList, User>() {
+				@Override
+				public ListenableFuture<User> apply(WatchList watchList) {
+					return asyncUserDAO.getUserAsync(watchList.getUserId());
+				}
+			});
+		return toDeferredResult(Futures.transform(
+			Futures.successfulAsList(Arrays.<ListenableFuture<?>>asList(
+				watchListItems, watchList, user)), 
+			new Function<List<Object>, ModelAndView>() {
+				@Override
+				public ModelAndView apply(List<Object> results) {
+					ModelAndView mav = new ModelAndView("watchList.rss");
+					mav.addObject("watchListItems", getResult(watchListItems));
+					mav.addObject("watchList", getResult(watchList));
+					mav.addObject("user", getResult(user));
+					return mav;
+				}
+			}));
 	}
 
 	@ResponseBody
@@ -100,9 +151,13 @@ public class WatchListController extends BaseController {
 		WatchList watchList = watchListDAO.getWatchList(watchListId);
 		User user = (User)request.getSession().getAttribute("user");
 		if(watchList.getUserId().equals(user.getId())) {
-			// Notice we are using the Cassandra-specific DAO method
-			watchListDAO.deleteWatchList(DELETE_WATCHLIST_QUERYOPTIONS, 
-				watchListId);
+			if(watchListDAO instanceof CassandraWatchListDAO) {
+				// Notice we are using the Cassandra-specific DAO method
+				((CassandraWatchListDAO)watchListDAO).deleteWatchList(
+					DELETE_WATCHLIST_QUERYOPTIONS, watchListId);
+			} else {
+				watchListDAO.deleteWatchList(watchListId);
+			}
 			LOGGER.info("Deleted watchList {}", watchListId);
 		}
 	}
@@ -28,6 +28,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Required;
+import org.stockwatcher.domain.Price;
 import org.stockwatcher.domain.Stock;
 
 import com.sun.syndication.feed.rss.Channel;
@@ -75,7 +76,7 @@ public class MostWatchedStocksRssView extends BaseRssView {
 			String symbol = stock.getSymbol();
             Item item = new Item();
             item.setTitle(format("%s $%8.2f", symbol, 
-            	stock.getCurrentPrice().floatValue()));
+            	Price.toDouble(stock.getCurrentPriceUnits())));
             item.setAuthor(itemAuthor);
             item.setPubDate(now);
             item.setLink(getStockLink(request, symbol));
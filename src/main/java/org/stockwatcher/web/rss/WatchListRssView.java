@@ -29,6 +29,7 @@ import java.util.SortedSet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.stockwatcher.domain.Price;
 import org.stockwatcher.domain.User;
 import org.stockwatcher.domain.WatchList;
 import org.stockwatcher.domain.WatchListItem;
@@ -133,7 +134,7 @@ public class WatchListRssView extends BaseRssView {
         html.append("<tr>");
         html.append("<td>Current Price:</td>");
         html.append("<td>$&nbsp;");
-        html.append(item.getCurrentPrice());
+        html.append(Price.toString(item.getCurrentPriceUnits()));
         html.append("</td>");
         html.append("</tr>");
         html.append("<tr>");
@@ -22,4 +22,7 @@
 		</tr>
 		</c:forEach>
 	</tbody>
-</table>
\ No newline at end of file
+</table>
+<c:if test="${!empty nextPageToken}">
+<button type="button" class="btn btn-inverse btn-mini pull-right next-page" data-token="${nextPageToken}">Next Page</button>
+</c:if>
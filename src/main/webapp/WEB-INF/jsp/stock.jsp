@@ -106,13 +106,10 @@
     		return setInterval('refreshComments();', 10000);
     	}
 
-		var refreshRate = 10;
-
-		function startChartRefreshTimer() {
-			return setInterval('refreshChart();', refreshRate * 1000);
-		}
-
-		var chartRefreshTimer = startChartRefreshTimer();
+		var liveUpdates = true;
+		var lastTradeTime = ${lastTradeTime};
+		var lastTradeId = '${lastTradeId}';
+		var tradeRequest = null;
 
     	var trades = <c:import url="trades.jsp"/>;
     	var chart1 = null;
@@ -146,25 +143,62 @@
     		        }
     			},
     			cursor: {
-    		        show: refreshRate == 0,
-    		        zoom: refreshRate == 0,
+    		        show: !liveUpdates,
+    		        zoom: !liveUpdates,
     		        showTooltip: false
     		    }
     		} );
 		}
 
-    	function refreshChart() {
-    		var get = $.get( 'main/stocks/${stock.symbol}/trades');
-			get.done(function(data) {
-				trades = eval(data);
-				if(trades[0].length > 0) {
-					if(chart1) {
-						chart1.destroy();
+    	function redrawChart() {
+			if(trades[0].length > 0) {
+				if(chart1) {
+					chart1.destroy();
+				}
+				createChart();
+    			$('#refresh-dropdown').show();
+			} else {
+    			$('#refresh-dropdown').hide();
+			}
+		}
+
+    	function addTrades(newTrades) {
+    		var series = trades[0];
+    		for(var i = 0; i < newTrades.length; i++) {
+    			// the chart cannot plot two points at the same instant
+    			if(series.length > 0 && 
+    				series[series.length - 1][0] == newTrades[i][0]) {
+    				series.pop();
+    			}
+    			series.push(newTrades[i]);
+    		}
+    		redrawChart();
+		}
+
+    	function pollTrades() {
+    		tradeRequest = $.ajax({
+    			url: 'main/stocks/${stock.symbol}/trades/updates',
+    			data: { after: lastTradeTime, tradeId: lastTradeId },
+    			dataType: 'json',
+    			cache: false
+    		});
+			tradeRequest.done(function(data) {
+				tradeRequest = null;
+				lastTradeTime = data.lastTradeTime;
+				lastTradeId = data.lastTradeId;
+				if(data.trades.length > 0) {
+					addTrades(data.trades);
+				}
+				if(liveUpdates) {
+					pollTrades();
+				}
+			} );
+			tradeRequest.fail(function(xhr, status) {
+				if(status != 'abort') {
+					tradeRequest = null;
+					if(liveUpdates) {
+						setTimeout(pollTrades, 10000);
 					}
-					createChart();
-	    			$('#refresh-dropdown').show();
-				} else {
-	    			$('#refresh-dropdown').hide();
 				}
 			} );
 		}
@@ -181,6 +215,7 @@
 			$('#refresh-dropdown').hide();
 			</c:if>
 			$('#reset-zoom').hide();	    			
+			pollTrades();
  	    	$(window).resize(function() { chart1.replot( { resetAxes: true } ); });
  	    	$('#reset-zoom').click(function() { chart1.resetZoom(); } );
  	    	$("#watchListId").change(function() {
@@ -207,21 +242,22 @@
 	    		displayName.val('');
     		});
 	    	$('.refresh').click(function() {
-	    		if(refreshRate > 0) {
-		    		clearInterval(chartRefreshTimer);
-	    		}
-	    		$('#refresh-' + refreshRate).removeClass('active');
-	    		refreshRate = $(this).attr('data-confirm');
-				console.log('set refreshRate = ' + refreshRate);
-    			refreshChart();
+	    		$('#refresh-' + (liveUpdates ? 'live' : 'off')).removeClass('active');
+	    		liveUpdates = $(this).attr('data-confirm') == 'live';
+				console.log('set liveUpdates = ' + liveUpdates);
 	    		$('#refresh-button').html( $(this).html() );
 	    		$(this).addClass('active');
-	    		if(refreshRate > 0) {
-	    			chartRefreshTimer = startChartRefreshTimer();
+	    		if(tradeRequest) {
+	    			tradeRequest.abort();
+	    			tradeRequest = null;
+	    		}
+	    		if(liveUpdates) {
+	    			pollTrades();
 					$('#reset-zoom').hide();	    			
 	    		} else {
 					$('#reset-zoom').show();
 	    		}
+    			redrawChart();
 	    		$(this).removeClass('open');
  	    	});
             $("#commentSection").comments({
@@ -324,17 +360,14 @@
 					<a id="watchlists" data-toggle="modal" href="#modalAdd" class="btn btn-inverse btn-mini">Add to Watch List</a>
 				</c:if>
 				<div id="refresh-dropdown" class="btn-group dropup center-horizontal" data-toggle="dropdown">
-					<button id="refresh-button" type="button" class="btn btn-inverse btn-mini">Refresh: 10 seconds</button>
+					<button id="refresh-button" type="button" class="btn btn-inverse btn-mini">Refresh: Live</button>
 					<button type="button" class="btn btn-inverse btn-mini dropdown-toggle" data-toggle="dropdown">
 						<span class="caret"></span>
 					</button>
 					<ul class="dropdown-menu">
-						<li id="refresh-10"><a href="#" class="refresh" data-confirm="10">Refresh: 10 seconds</a></li>
-						<li id="refresh-20"><a href="#" class="refresh" data-confirm="20">Refresh: 20 seconds</a></li>
-						<li id="refresh-30"><a href="#" class="refresh" data-confirm="30">Refresh: 30 seconds</a></li>
-						<li id="refresh-60"><a href="#" class="refresh" data-confirm="60">Refresh: 1 minute</a></li>
+						<li id="refresh-live"><a href="#" class="refresh" data-confirm="live">Refresh: Live</a></li>
 						<li class="divider"></li>
-						<li id="refresh-0"><a href="#" class="refresh" data-confirm="0">Refresh: Off</a></li>
+						<li id="refresh-off"><a href="#" class="refresh" data-confirm="off">Refresh: Off</a></li>
 					</ul>
 				</div>
 				<button id="reset-zoom" type="button" class="btn btn-inverse btn-mini pull-right hide">Reset Zoom</button>
@@ -0,0 +1,6 @@
+<%@ page contentType="application/json" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core"%>
+<%@ taglib prefix="fn" uri="http://java.sun.com/jsp/jstl/functions"%>
+[<c:forEach var="stock" varStatus="status" items="${stocks}">
+	{"symbol": "${stock.symbol}", "companyName": "${fn:replace(fn:replace(stock.companyName, '\\', '\\\\'), '"', '\\"')}", "exchangeId": "${stock.exchangeId}"}${status.last ? "" : ","}
+</c:forEach>]
@@ -75,8 +75,21 @@
 	    	} );
     	}
 
+    	function findStocks(pageToken) {
+    		$('#matchingstocks').empty().append('<h4>Searching...</h4>');
+    		var posting = $.post( 'main/stocks/find', 
+    			$("#searchForm").serialize() + '&pageToken=' + pageToken);
+			posting.done(function(data) {
+				$('#matchingstocks').empty().append('<h3>Matching Stocks</h3>').append(data);
+				styleStockTable();
+			} );
+    	}
+
  	    $(document).ready(function() {
 	    	styleStockTable();
+	    	$('#matchingstocks').on('click', '.next-page', function() {
+	    		findStocks($(this).attr('data-token'));
+	    	} );
 	    	$("#searchForm").submit(function(event) {
 	    		event.preventDefault();
 	    		if($("input[name='exchangeIds']:checked").length == 0) {
@@ -105,12 +118,7 @@
 	    			alert('The minimum price must be less than the maximum price');
 	    			return;
 	    		}
-	    		$('#matchingstocks').empty().append('<h4>Searching...</h4>');
-	    		var posting = $.post( 'main/stocks/find', $(this).serialize());
-				posting.done(function(data) {
-					$('#matchingstocks').empty().append('<h3>Matching Stocks</h3>').append(data);
-					styleStockTable();
-				} );	    		
+	    		findStocks('');
 	    	} );
 	    } );
 
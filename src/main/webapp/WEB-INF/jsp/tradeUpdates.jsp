@@ -0,0 +1,6 @@
+<%@ page contentType="application/json" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core"%>
+<%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt"%>
+{"lastTradeTime": ${lastTradeTime}, "lastTradeId": "${lastTradeId}", "trades": [<c:forEach var="trade" varStatus="status" items="${trades}">
+	["<fmt:formatDate pattern="hh:mm:ss a" value="${trade.timestamp}"/>", ${trade.sharePriceText}]${status.last ? "" : ","}
+</c:forEach>]}
@@ -1,5 +1,5 @@
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core"%>
 <%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt"%>
 [[<c:forEach var="trade" varStatus="status" items="${trades}">
-	['<fmt:formatDate pattern="hh:mm:ss a" value="${trade.timestamp}"/>', ${trade.sharePrice}]${status.last ? "" : ","}
+	['<fmt:formatDate pattern="hh:mm:ss a" value="${trade.timestamp}"/>', ${trade.sharePriceText}]${status.last ? "" : ","}
 </c:forEach>]]
\ No newline at end of file
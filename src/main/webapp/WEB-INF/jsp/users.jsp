@@ -103,6 +103,12 @@
 					</c:forEach>
 				</tbody>
 			</table>
+			<c:if test="${!firstPage}">
+			<a href="main/users" class="btn btn-inverse btn-mini">First Page</a>
+			</c:if>
+			<c:if test="${!empty nextPageToken}">
+			<a href="main/users?pageToken=${nextPageToken}" class="btn btn-inverse btn-mini pull-right">Next Page</a>
+			</c:if>
         </div>
       </div>
 